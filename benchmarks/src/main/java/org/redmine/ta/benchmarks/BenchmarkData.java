@@ -0,0 +1,142 @@
+package org.redmine.ta.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.redmine.ta.beans.Issue;
+import org.redmine.ta.beans.IssueStatus;
+import org.redmine.ta.beans.News;
+import org.redmine.ta.beans.Project;
+import org.redmine.ta.beans.TimeEntry;
+import org.redmine.ta.beans.User;
+
+/**
+ * XML payloads shared by the benchmarks: the samples used by the unit tests plus
+ * synthetic "big page" responses.
+ */
+public class BenchmarkData {
+
+    /**
+     * Number of objects in the synthetic payloads. Redmine returns at most 100 objects
+     * per page, bigger numbers model a server with a raised limit or a long sync.
+     */
+    public static final int SYNTHETIC_OBJECTS_NUMBER = 2000;
+
+    public enum Payload {
+        ISSUES(Issue.class, "redmine_1_1_issues.xml"),
+        ISSUES_WITH_CUSTOM_FIELDS(Issue.class, "redmine_1.2.2_dev_issues.xml"),
+        PROJECTS(Project.class, "redmine_1_1_projects.xml"),
+        USERS(User.class, "redmine_1_1_users.xml"),
+        TIME_ENTRIES(TimeEntry.class, "redmine_1_1_time_entries.xml"),
+        ISSUE_STATUSES(IssueStatus.class, "redmine_1.3.0_issue_statuses.xml"),
+        NEWS(News.class, "redmine_1_3_0_news_2_items.xml"),
+        SYNTHETIC_ISSUES(Issue.class, null),
+        SYNTHETIC_TIME_ENTRIES(TimeEntry.class, null);
+
+        private final Class<?> objectClass;
+        private final String resource;
+
+        private Payload(Class<?> objectClass, String resource) {
+            this.objectClass = objectClass;
+            this.resource = resource;
+        }
+
+        public Class<?> getObjectClass() {
+            return objectClass;
+        }
+
+        public String load() throws IOException {
+            if (this == SYNTHETIC_ISSUES) {
+                return createIssuesXML(SYNTHETIC_OBJECTS_NUMBER);
+            }
+            if (this == SYNTHETIC_TIME_ENTRIES) {
+                return createTimeEntriesXML(SYNTHETIC_OBJECTS_NUMBER);
+            }
+            return loadResource(resource);
+        }
+    }
+
+    public static String loadResource(String resource) throws IOException {
+        InputStream in = BenchmarkData.class.getClassLoader().getResourceAsStream(resource);
+        if (in == null) {
+            throw new IOException("resource \"" + resource + "\" not found");
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            return out.toString("UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+
+    public static String createIssuesXML(int count) {
+        StringBuilder b = new StringBuilder(count * 1024);
+        b.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        b.append("<issues type=\"array\" total_count=\"").append(count * 10)
+                .append("\" offset=\"0\" limit=\"").append(count).append("\">\n");
+        for (int i = 0; i < count; i++) {
+            int id = 100000 + i;
+            b.append("<issue>");
+            b.append("<id>").append(id).append("</id>");
+            b.append("<project name=\"Synthetic project\" id=\"").append(1 + i % 7).append("\"/>");
+            b.append("<tracker name=\"Bug\" id=\"1\"/>");
+            b.append("<status name=\"New\" id=\"1\"/>");
+            b.append("<priority name=\"Normal\" id=\"4\"/>");
+            b.append("<author name=\"Redmine Admin\" id=\"1\"/>");
+            b.append("<assigned_to name=\"Developer ").append(i % 13).append("\" id=\"").append(10 + i % 13)
+                    .append("\"/>");
+            if (i % 3 == 0) {
+                b.append("<parent id=\"").append(id - 1).append("\"/>");
+            }
+            b.append("<subject>Synthetic issue number ").append(i).append(" &amp; some &lt;escaped&gt; text</subject>");
+            b.append("<description>");
+            for (int line = 0; line < 5; line++) {
+                b.append("Line ").append(line).append(": the description of a synthetic issue, with some text in it. ");
+            }
+            b.append("</description>");
+            b.append("<start_date>2011-09-08</start_date>");
+            b.append("<due_date>2011-09-").append(10 + i % 20).append("</due_date>");
+            b.append("<done_ratio>").append(i % 100).append("</done_ratio>");
+            b.append("<estimated_hours>").append(i % 40).append(".5</estimated_hours>");
+            b.append("<custom_fields type=\"array\">");
+            b.append("<custom_field name=\"my_custom_1\" id=\"1\"><value>value ").append(i).append("</value></custom_field>");
+            b.append("<custom_field name=\"custom_boolean_1\" id=\"2\"><value>").append(i % 2).append("</value></custom_field>");
+            b.append("</custom_fields>");
+            b.append("<created_on>2011-12-06T18:33:43-08:00</created_on>");
+            b.append("<updated_on>2012-01-").append(10 + i % 20).append("T10:").append(10 + i % 50)
+                    .append(":43-08:00</updated_on>");
+            b.append("</issue>\n");
+        }
+        b.append("</issues>");
+        return b.toString();
+    }
+
+    public static String createTimeEntriesXML(int count) {
+        StringBuilder b = new StringBuilder(count * 512);
+        b.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        b.append("<time_entries type=\"array\" total_count=\"").append(count)
+                .append("\" offset=\"0\" limit=\"").append(count).append("\">\n");
+        for (int i = 0; i < count; i++) {
+            b.append("<time_entry>");
+            b.append("<id>").append(i + 1).append("</id>");
+            b.append("<project name=\"Synthetic project\" id=\"").append(1 + i % 7).append("\"/>");
+            b.append("<issue id=\"").append(100000 + i / 4).append("\"/>");
+            b.append("<user name=\"Developer ").append(i % 13).append("\" id=\"").append(10 + i % 13).append("\"/>");
+            b.append("<activity name=\"Development\" id=\"9\"/>");
+            b.append("<hours>").append(1 + i % 8).append(".25</hours>");
+            b.append("<comments>synthetic time entry ").append(i).append("</comments>");
+            b.append("<spent_on>2011-01-").append(10 + i % 20).append("</spent_on>");
+            b.append("<created_on>2011-01-31T11:11:07-08:00</created_on>");
+            b.append("<updated_on>2011-01-31T11:11:07-08:00</updated_on>");
+            b.append("</time_entry>\n");
+        }
+        b.append("</time_entries>");
+        return b.toString();
+    }
+}
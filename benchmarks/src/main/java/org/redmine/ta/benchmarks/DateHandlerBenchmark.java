@@ -0,0 +1,80 @@
+package org.redmine.ta.benchmarks;
+
+import java.text.ParseException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.redmine.ta.internal.RedmineDateHandler;
+import org.redmine.ta.internal.RedmineLongDateHandler;
+import org.redmine.ta.internal.RedmineShortDateHandler;
+
+/**
+ * Conversion of "created_on" (long) and "start_date" (short) values. Every issue in a
+ * response has several of them, so these are on the hot path of the parser.
+ * The handlers are shared between threads, like the Castor mapping shares them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DateHandlerBenchmark {
+
+    private static final String LONG_DATE = "2011-01-20T18:33:29-08:00";
+    private static final String SHORT_DATE = "2011-09-08";
+
+    private RedmineDateHandler longHandler;
+    private RedmineDateHandler shortHandler;
+    private Date date;
+
+    @Setup
+    public void setUp() throws ParseException {
+        longHandler = new RedmineLongDateHandler();
+        shortHandler = new RedmineShortDateHandler();
+        date = longHandler.getDate(LONG_DATE);
+    }
+
+    @Benchmark
+    public Date parseLongDate() throws ParseException {
+        return longHandler.getDate(LONG_DATE);
+    }
+
+    @Benchmark
+    public String formatLongDate() {
+        return longHandler.getString(date);
+    }
+
+    @Benchmark
+    public Date parseShortDate() throws ParseException {
+        return shortHandler.getDate(SHORT_DATE);
+    }
+
+    @Benchmark
+    public String formatShortDate() {
+        return shortHandler.getString(date);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Date parseLongDateConcurrently() throws ParseException {
+        return longHandler.getDate(LONG_DATE);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Date parseShortDateConcurrently() throws ParseException {
+        return shortHandler.getDate(SHORT_DATE);
+    }
+}
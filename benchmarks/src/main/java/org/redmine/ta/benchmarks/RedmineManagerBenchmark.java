@@ -0,0 +1,105 @@
+package org.redmine.ta.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.redmine.ta.FakeRedmineServer;
+import org.redmine.ta.RedmineException;
+import org.redmine.ta.RedmineManager;
+import org.redmine.ta.beans.Issue;
+import org.redmine.ta.beans.Project;
+import org.redmine.ta.beans.User;
+
+/**
+ * End-to-end throughput of RedmineManager against {@link FakeRedmineServer}: pagination,
+ * connection reuse and concurrent requests, with the given server latency.
+ * <p>The server statistics (requests and opened connections) are printed on tear down.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+// without "nodelay" the JDK HTTP server adds a delayed ACK wait (~40ms) to every response
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+@State(Scope.Benchmark)
+public class RedmineManagerBenchmark {
+
+    @Param({"0", "10"})
+    public long latencyMillis;
+
+    @Param({"1", "4"})
+    public int pageFetchParallelism;
+
+    @Param({"1000"})
+    public int issuesNumber;
+
+    private FakeRedmineServer server;
+    private RedmineManager manager;
+
+    @Setup
+    public void setUp() throws IOException {
+        server = new FakeRedmineServer();
+        server.setIssuesNumber(issuesNumber);
+        server.setProjectsNumber(10);
+        server.setUsersNumber(100);
+        server.setLatencyMillis(latencyMillis);
+        server.start();
+        manager = new RedmineManager.Builder(server.getURI())
+                .apiAccessKey("key")
+                .objectsPerPage(FakeRedmineServer.DEFAULT_MAX_PAGE_SIZE)
+                .pageFetchParallelism(pageFetchParallelism)
+                .maxConnectionsPerHost(16)
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.println();
+        System.out.println("requests: " + server.getRequestsCount() + ", connections: "
+                + server.getConnectionsCount());
+        manager.shutdown();
+        server.stop();
+    }
+
+    /**
+     * All issues, page by page.
+     */
+    @Benchmark
+    public List<Issue> getAllIssues() throws RedmineException {
+        return manager.getIssues(null, null);
+    }
+
+    @Benchmark
+    public List<Project> getProjects() throws RedmineException {
+        return manager.getProjects();
+    }
+
+    @Benchmark
+    public List<User> getUsers() throws RedmineException {
+        return manager.getUsers();
+    }
+
+    /**
+     * Single issues requested from many threads sharing one manager and its connection pool.
+     */
+    @Benchmark
+    @Threads(8)
+    public Issue getIssueByIdConcurrently() throws RedmineException {
+        return manager.getIssueById(1 + ThreadLocalRandom.current().nextInt(issuesNumber));
+    }
+}
@@ -0,0 +1,94 @@
+package org.redmine.ta.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.redmine.ta.beans.Issue;
+import org.redmine.ta.beans.Project;
+import org.redmine.ta.beans.TimeEntry;
+import org.redmine.ta.beans.User;
+import org.redmine.ta.internal.RedmineXMLGenerator;
+import org.redmine.ta.internal.RedmineXMLParser;
+
+/**
+ * Generation of request bodies. The beans are loaded from the sample responses, so they
+ * have all the fields a real "update" call would send.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class XMLGeneratorBenchmark {
+
+    private static final String PROJECT_KEY = "test";
+
+    private List<Issue> issues;
+    private List<Issue> syntheticIssues;
+    private List<Project> projects;
+    private List<User> users;
+    private List<TimeEntry> timeEntries;
+
+    @Setup
+    public void setUp() throws IOException {
+        issues = RedmineXMLParser.parseObjectsFromXML(Issue.class,
+                BenchmarkData.loadResource("redmine_1.2.2_dev_issues.xml"));
+        syntheticIssues = RedmineXMLParser.parseObjectsFromXML(Issue.class,
+                BenchmarkData.createIssuesXML(BenchmarkData.SYNTHETIC_OBJECTS_NUMBER));
+        projects = RedmineXMLParser.parseObjectsFromXML(Project.class,
+                BenchmarkData.loadResource("redmine_1_1_projects.xml"));
+        users = RedmineXMLParser.parseObjectsFromXML(User.class,
+                BenchmarkData.loadResource("redmine_1_1_users.xml"));
+        timeEntries = new ArrayList<TimeEntry>(RedmineXMLParser.parseObjectsFromXML(TimeEntry.class,
+                BenchmarkData.loadResource("redmine_1_1_time_entries.xml")));
+    }
+
+    @Benchmark
+    public void issueToXML(Blackhole blackhole) {
+        for (Issue issue : issues) {
+            blackhole.consume(RedmineXMLGenerator.toXML(PROJECT_KEY, issue));
+        }
+    }
+
+    @Benchmark
+    public void syntheticIssueToXML(Blackhole blackhole) {
+        for (Issue issue : syntheticIssues) {
+            blackhole.consume(RedmineXMLGenerator.toXML(null, issue));
+        }
+    }
+
+    @Benchmark
+    public void projectToXML(Blackhole blackhole) {
+        for (Project project : projects) {
+            blackhole.consume(RedmineXMLGenerator.toXML(project));
+        }
+    }
+
+    @Benchmark
+    public void userToXML(Blackhole blackhole) {
+        for (User user : users) {
+            blackhole.consume(RedmineXMLGenerator.toXML(user));
+        }
+    }
+
+    @Benchmark
+    public void timeEntryToXML(Blackhole blackhole) {
+        for (TimeEntry timeEntry : timeEntries) {
+            blackhole.consume(RedmineXMLGenerator.toXML(timeEntry));
+        }
+    }
+}
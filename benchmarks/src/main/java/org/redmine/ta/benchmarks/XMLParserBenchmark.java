@@ -0,0 +1,65 @@
+package org.redmine.ta.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.redmine.ta.internal.ObjectsPage;
+import org.redmine.ta.internal.RedmineXMLParser;
+
+/**
+ * Parsing of "list" responses, for every bean type the API reads in lists.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class XMLParserBenchmark {
+
+    @Param({"ISSUES", "ISSUES_WITH_CUSTOM_FIELDS", "PROJECTS", "USERS", "TIME_ENTRIES", "ISSUE_STATUSES", "NEWS",
+            "SYNTHETIC_ISSUES", "SYNTHETIC_TIME_ENTRIES"})
+    public BenchmarkData.Payload payload;
+
+    private Class<?> objectClass;
+    private String xml;
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectClass = payload.getObjectClass();
+        xml = payload.load();
+        bytes = xml.getBytes("UTF-8");
+    }
+
+    @Benchmark
+    public List<?> parseObjectsFromXML() {
+        return RedmineXMLParser.parseObjectsFromXML(objectClass, xml);
+    }
+
+    /**
+     * The path used by RedmineManager: objects and total count read from the response stream.
+     */
+    @Benchmark
+    public ObjectsPage<?> parseObjectsPage() throws IOException {
+        return RedmineXMLParser.parseObjectsPage(objectClass, new ByteArrayInputStream(bytes));
+    }
+
+    @Benchmark
+    public int parseObjectsTotalCount() {
+        return RedmineXMLParser.parseObjectsTotalCount(xml);
+    }
+}
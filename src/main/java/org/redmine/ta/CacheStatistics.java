@@ -0,0 +1,47 @@
+package org.redmine.ta;
+
+/**
+ * Snapshot of {@link ReferenceDataCache} counters.
+ */
+public final class CacheStatistics {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+
+    public CacheStatistics(long hits, long misses, long evictions) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of lookups of absent or expired values.
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return number of values removed because the cache was full.
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return hits / (hits + misses) or 0 if there were no lookups.
+     */
+    public double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStatistics{hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + '}';
+    }
+}
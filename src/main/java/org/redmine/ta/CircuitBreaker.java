@@ -0,0 +1,307 @@
+package org.redmine.ta;
+
+import org.redmine.ta.internal.logging.Logger;
+import org.redmine.ta.internal.logging.LoggerFactory;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops sending requests to a server which is failing, so callers get
+ * {@link RedmineCircuitOpenException} at once instead of waiting for timeouts.
+ * <p>The results of the last <code>windowSize</code> requests are kept. When at least
+ * <code>minimumCalls</code> of them are known and the share of failed requests or the share of
+ * slow requests reaches its threshold, the circuit becomes {@link State#OPEN OPEN} and all
+ * requests are rejected. After <code>openDuration</code> it becomes {@link State#HALF_OPEN HALF_OPEN}
+ * and lets <code>halfOpenCalls</code> trial requests through: if all of them succeed, it's
+ * {@link State#CLOSED CLOSED} again, otherwise it's open for another <code>openDuration</code>.
+ * <p>Requests failed with an I/O error, a temporary server error like "503" or an unexpected
+ * exception are failures. Errors reported by a working server, like "404 Not Found", are not.
+ * <p>The state is kept for each server (protocol, host and port) separately, so one breaker can be
+ * shared by several {@link RedmineManager}s.
+ *
+ * @see RedmineManager#setCircuitBreaker(CircuitBreaker)
+ */
+public final class CircuitBreaker {
+
+    public static enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    public static final int DEFAULT_MINIMUM_CALLS = 10;
+    public static final int DEFAULT_HALF_OPEN_CALLS = 3;
+
+    private final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long slowCallDurationNanos;
+    private final int windowSize;
+    private final long openDurationNanos;
+    private volatile int minimumCalls;
+    private volatile int halfOpenCalls = DEFAULT_HALF_OPEN_CALLS;
+    private final ConcurrentMap<String, Circuit> circuits = new ConcurrentHashMap<String, Circuit>();
+
+    /**
+     * Creates a breaker which does not check slow requests.
+     *
+     * @see #CircuitBreaker(double, double, long, int, long)
+     */
+    public CircuitBreaker(double failureRateThreshold, int windowSize, long openDurationMillis) {
+        this(failureRateThreshold, 1, 0, windowSize, openDurationMillis);
+    }
+
+    /**
+     * @param failureRateThreshold   share of failed requests from 0 to 1 which opens the circuit.
+     * @param slowCallRateThreshold  share of slow requests from 0 to 1 which opens the circuit.
+     * @param slowCallDurationMillis requests taking at least this time are slow, 0 to not check them.
+     * @param windowSize             number of last requests the shares are computed for.
+     * @param openDurationMillis     how long requests are rejected before trial requests are sent.
+     */
+    public CircuitBreaker(double failureRateThreshold, double slowCallRateThreshold, long slowCallDurationMillis,
+                          int windowSize, long openDurationMillis) {
+        if (failureRateThreshold <= 0 || failureRateThreshold > 1
+                || slowCallRateThreshold <= 0 || slowCallRateThreshold > 1) {
+            throw new IllegalArgumentException("Thresholds must be greater than 0 and not greater than 1: "
+                    + failureRateThreshold + ", " + slowCallRateThreshold);
+        }
+        if (windowSize < 1 || slowCallDurationMillis < 0 || openDurationMillis < 0) {
+            throw new IllegalArgumentException("Illegal window size " + windowSize + ", slow call duration "
+                    + slowCallDurationMillis + " ms or open duration " + openDurationMillis + " ms");
+        }
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallDurationNanos = TimeUnit.MILLISECONDS.toNanos(slowCallDurationMillis);
+        this.windowSize = windowSize;
+        this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(openDurationMillis);
+        this.minimumCalls = Math.min(DEFAULT_MINIMUM_CALLS, windowSize);
+    }
+
+    /**
+     * @param minimumCalls number of known results needed to open the circuit, default is 10
+     *                     or the window size if it's smaller.
+     */
+    public void setMinimumCalls(int minimumCalls) {
+        if (minimumCalls < 1 || minimumCalls > windowSize) {
+            throw new IllegalArgumentException("Minimum calls number must be from 1 to " + windowSize
+                    + ": " + minimumCalls);
+        }
+        this.minimumCalls = minimumCalls;
+    }
+
+    /**
+     * @param halfOpenCalls number of trial requests in {@link State#HALF_OPEN} state, default is 3.
+     */
+    public void setHalfOpenCalls(int halfOpenCalls) {
+        if (halfOpenCalls < 1) {
+            throw new IllegalArgumentException("Half-open calls number must be positive: " + halfOpenCalls);
+        }
+        this.halfOpenCalls = halfOpenCalls;
+    }
+
+    /**
+     * @param uri any URI on the server.
+     * @return the state for the server, {@link State#CLOSED} if no requests were sent to it.
+     */
+    public State getState(URI uri) {
+        Circuit circuit = circuits.get(getServerKey(uri));
+        return circuit == null ? State.CLOSED : circuit.getState(System.nanoTime());
+    }
+
+    /**
+     * @return states of all servers requests were sent to, by "protocol://host:port".
+     */
+    public Map<String, State> getStates() {
+        long now = System.nanoTime();
+        Map<String, State> states = new TreeMap<String, State>();
+        for (Map.Entry<String, Circuit> entry : circuits.entrySet()) {
+            states.put(entry.getKey(), entry.getValue().getState(now));
+        }
+        return states;
+    }
+
+    /**
+     * Checks that a request to the server can be sent now. Every successful call must be followed
+     * by {@link #onResult(URI, long, boolean, long)} or, if the request was not sent,
+     * by {@link #cancel(URI, long)}.
+     *
+     * @param uri the request URI.
+     * @return the permission to pass to {@link #onResult(URI, long, boolean, long)}.
+     * @throws RedmineCircuitOpenException the request must not be sent.
+     */
+    public long acquirePermission(URI uri) throws RedmineCircuitOpenException {
+        return getCircuit(uri).acquirePermission(System.nanoTime());
+    }
+
+    /**
+     * @param uri           the request URI.
+     * @param permission    the value returned by {@link #acquirePermission(URI)}.
+     * @param failed        whether the request failed, see the class description.
+     * @param durationNanos time the request took.
+     */
+    public void onResult(URI uri, long permission, boolean failed, long durationNanos) {
+        boolean slow = slowCallDurationNanos > 0 && durationNanos >= slowCallDurationNanos;
+        getCircuit(uri).onResult(permission, failed, slow, System.nanoTime());
+    }
+
+    /**
+     * Returns the permission of a request which was not sent.
+     *
+     * @param uri        the request URI.
+     * @param permission the value returned by {@link #acquirePermission(URI)}.
+     */
+    public void cancel(URI uri, long permission) {
+        getCircuit(uri).cancel(permission);
+    }
+
+    private Circuit getCircuit(URI uri) {
+        String key = getServerKey(uri);
+        Circuit circuit = circuits.get(key);
+        if (circuit == null) {
+            Circuit newCircuit = new Circuit(key);
+            circuit = circuits.putIfAbsent(key, newCircuit);
+            if (circuit == null) {
+                circuit = newCircuit;
+            }
+        }
+        return circuit;
+    }
+
+    private static String getServerKey(URI uri) {
+        return uri.getScheme() + "://" + uri.getAuthority();
+    }
+
+    @Override
+    public String toString() {
+        return "CircuitBreaker{failureRateThreshold=" + failureRateThreshold
+                + ", slowCallRateThreshold=" + slowCallRateThreshold
+                + ", slowCallDurationMillis=" + TimeUnit.NANOSECONDS.toMillis(slowCallDurationNanos)
+                + ", windowSize=" + windowSize + ", openDurationMillis=" + TimeUnit.NANOSECONDS.toMillis(openDurationNanos)
+                + ", states=" + getStates() + '}';
+    }
+
+    /**
+     * State of one server. Results of requests permitted before the last state change are ignored,
+     * so they can't close the circuit or use up the trial requests.
+     */
+    private final class Circuit {
+        private static final byte FAILED = 1;
+        private static final byte SLOW = 2;
+
+        private final String server;
+        private State state = State.CLOSED;
+        private long generation;
+        private long openedNanos;
+        private int trialCallsLeft;
+        private int trialCallsSucceeded;
+        private final byte[] window = new byte[windowSize];
+        private int windowPosition;
+        private int callsNumber;
+        private int failedCallsNumber;
+        private int slowCallsNumber;
+
+        private Circuit(String server) {
+            this.server = server;
+        }
+
+        synchronized State getState(long now) {
+            if (state == State.OPEN && now - openedNanos >= openDurationNanos) {
+                return State.HALF_OPEN;
+            }
+            return state;
+        }
+
+        synchronized long acquirePermission(long now) throws RedmineCircuitOpenException {
+            if (state == State.OPEN) {
+                long remainingNanos = openDurationNanos - (now - openedNanos);
+                if (remainingNanos > 0) {
+                    throw new RedmineCircuitOpenException("Circuit breaker is open for " + server,
+                            TimeUnit.NANOSECONDS.toMillis(remainingNanos));
+                }
+                changeState(State.HALF_OPEN, now);
+            }
+            if (state == State.HALF_OPEN) {
+                if (trialCallsLeft == 0) {
+                    throw new RedmineCircuitOpenException("Circuit breaker for " + server
+                            + " is waiting for trial requests", 0);
+                }
+                trialCallsLeft--;
+            }
+            return generation;
+        }
+
+        synchronized void onResult(long permission, boolean failed, boolean slow, long now) {
+            if (permission != generation) {
+                return;
+            }
+            if (state == State.HALF_OPEN) {
+                if (failed || slow) {
+                    changeState(State.OPEN, now);
+                } else if (++trialCallsSucceeded == halfOpenCalls) {
+                    changeState(State.CLOSED, now);
+                }
+            } else if (state == State.CLOSED) {
+                record((byte) ((failed ? FAILED : 0) | (slow ? SLOW : 0)));
+                if (callsNumber >= minimumCalls
+                        && (failedCallsNumber >= failureRateThreshold * callsNumber
+                        || slowCallsNumber >= slowCallRateThreshold * callsNumber)) {
+                    changeState(State.OPEN, now);
+                }
+            }
+        }
+
+        synchronized void cancel(long permission) {
+            if (permission == generation && state == State.HALF_OPEN) {
+                trialCallsLeft++;
+            }
+        }
+
+        private void record(byte result) {
+            if (callsNumber == windowSize) {
+                forget(window[windowPosition]);
+            } else {
+                callsNumber++;
+            }
+            window[windowPosition] = result;
+            windowPosition = (windowPosition + 1) % windowSize;
+            if ((result & FAILED) != 0) {
+                failedCallsNumber++;
+            }
+            if ((result & SLOW) != 0) {
+                slowCallsNumber++;
+            }
+        }
+
+        private void forget(byte result) {
+            if ((result & FAILED) != 0) {
+                failedCallsNumber--;
+            }
+            if ((result & SLOW) != 0) {
+                slowCallsNumber--;
+            }
+        }
+
+        private void changeState(State newState, long now) {
+            logger.info("Circuit breaker for " + server + " changed from " + state + " to " + newState
+                    + " (" + failedCallsNumber + " failed and " + slowCallsNumber + " slow of "
+                    + callsNumber + " requests)");
+            state = newState;
+            generation++;
+            if (newState == State.OPEN) {
+                openedNanos = now;
+            } else if (newState == State.HALF_OPEN) {
+                trialCallsLeft = halfOpenCalls;
+                trialCallsSucceeded = 0;
+            } else {
+                callsNumber = 0;
+                failedCallsNumber = 0;
+                slowCallsNumber = 0;
+                windowPosition = 0;
+            }
+        }
+    }
+}
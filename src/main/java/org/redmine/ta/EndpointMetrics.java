@@ -0,0 +1,146 @@
+package org.redmine.ta;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Statistics of all requests to one endpoint collected by {@link InMemoryRedmineMetrics}.
+ * Instances returned by the metrics are snapshots and are not changed later.
+ *
+ * @see RequestStatistics
+ */
+public final class EndpointMetrics {
+
+    private final String endpoint;
+    private long requestsCount;
+    private long errorsCount;
+    private final Map<Integer, Long> errorsByStatus;
+    private long wireBytes;
+    private long contentBytes;
+    private final LatencyHistogram queueTime;
+    private final LatencyHistogram connectTime;
+    private final LatencyHistogram waitTime;
+    private final LatencyHistogram transferTime;
+    private final LatencyHistogram parseTime;
+    private final LatencyHistogram totalTime;
+
+    EndpointMetrics(String endpoint) {
+        this.endpoint = endpoint;
+        this.errorsByStatus = new TreeMap<Integer, Long>();
+        this.queueTime = new LatencyHistogram();
+        this.connectTime = new LatencyHistogram();
+        this.waitTime = new LatencyHistogram();
+        this.transferTime = new LatencyHistogram();
+        this.parseTime = new LatencyHistogram();
+        this.totalTime = new LatencyHistogram();
+    }
+
+    private EndpointMetrics(EndpointMetrics other) {
+        this.endpoint = other.endpoint;
+        this.requestsCount = other.requestsCount;
+        this.errorsCount = other.errorsCount;
+        this.errorsByStatus = Collections.unmodifiableMap(new TreeMap<Integer, Long>(other.errorsByStatus));
+        this.wireBytes = other.wireBytes;
+        this.contentBytes = other.contentBytes;
+        this.queueTime = other.queueTime.copy();
+        this.connectTime = other.connectTime.copy();
+        this.waitTime = other.waitTime.copy();
+        this.transferTime = other.transferTime.copy();
+        this.parseTime = other.parseTime.copy();
+        this.totalTime = other.totalTime.copy();
+    }
+
+    void record(RequestStatistics statistics) {
+        requestsCount++;
+        if (!statistics.isSuccessful()) {
+            errorsCount++;
+            Long count = errorsByStatus.get(statistics.getStatusCode());
+            errorsByStatus.put(statistics.getStatusCode(), count == null ? 1 : count + 1);
+        }
+        wireBytes += statistics.getWireBytes();
+        contentBytes += statistics.getContentBytes();
+        queueTime.record(statistics.getQueueNanos());
+        connectTime.record(statistics.getConnectNanos());
+        waitTime.record(statistics.getWaitNanos());
+        transferTime.record(statistics.getTransferNanos());
+        parseTime.record(statistics.getParseNanos());
+        totalTime.record(statistics.getTotalNanos());
+    }
+
+    EndpointMetrics copy() {
+        return new EndpointMetrics(this);
+    }
+
+    /**
+     * @see RequestStatistics#getEndpoint()
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public long getRequestsCount() {
+        return requestsCount;
+    }
+
+    public long getErrorsCount() {
+        return errorsCount;
+    }
+
+    /**
+     * @return number of failed requests by HTTP status code. Code 0 is used for requests
+     *         failed without a response, like connection errors.
+     */
+    public Map<Integer, Long> getErrorsByStatus() {
+        return errorsByStatus;
+    }
+
+    /**
+     * @see RequestStatistics#getWireBytes()
+     */
+    public long getWireBytes() {
+        return wireBytes;
+    }
+
+    /**
+     * @see RequestStatistics#getContentBytes()
+     */
+    public long getContentBytes() {
+        return contentBytes;
+    }
+
+    /**
+     * @see RequestStatistics#getQueueNanos()
+     */
+    public LatencyHistogram getQueueTime() {
+        return queueTime;
+    }
+
+    public LatencyHistogram getConnectTime() {
+        return connectTime;
+    }
+
+    public LatencyHistogram getWaitTime() {
+        return waitTime;
+    }
+
+    public LatencyHistogram getTransferTime() {
+        return transferTime;
+    }
+
+    public LatencyHistogram getParseTime() {
+        return parseTime;
+    }
+
+    public LatencyHistogram getTotalTime() {
+        return totalTime;
+    }
+
+    @Override
+    public String toString() {
+        return "EndpointMetrics{" + endpoint + ", requests=" + requestsCount + ", errors=" + errorsByStatus
+                + ", wireBytes=" + wireBytes + ", contentBytes=" + contentBytes
+                + ", queue=" + queueTime + ", connect=" + connectTime + ", wait=" + waitTime + ", transfer=" + transferTime
+                + ", parse=" + parseTime + ", total=" + totalTime + '}';
+    }
+}
@@ -0,0 +1,90 @@
+package org.redmine.ta;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Default {@link ReferenceDataCache}: keeps at most the given number of values, removing the
+ * least recently used ones first. Each value expires after the given time.
+ */
+public class ExpiringReferenceDataCache implements ReferenceDataCache {
+
+    private final long timeToLiveMillis;
+    private final Map<String, Entry> entries;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param maxEntries       maximum number of cached lists. Versions and categories are cached per project.
+     * @param timeToLiveMillis how long a value is used before it's loaded from the server again.
+     */
+    public ExpiringReferenceDataCache(final int maxEntries, long timeToLiveMillis) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Max entries number must be positive: " + maxEntries);
+        }
+        if (timeToLiveMillis <= 0) {
+            throw new IllegalArgumentException("Time to live must be positive: " + timeToLiveMillis);
+        }
+        this.timeToLiveMillis = timeToLiveMillis;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public synchronized Object get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (entry.expirationTime <= System.currentTimeMillis()) {
+            entries.remove(key);
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    @Override
+    public synchronized void put(String key, Object value) {
+        entries.put(key, new Entry(value, System.currentTimeMillis() + timeToLiveMillis));
+    }
+
+    @Override
+    public synchronized void invalidate(String key) {
+        entries.remove(key);
+    }
+
+    @Override
+    public synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    @Override
+    public synchronized CacheStatistics getStatistics() {
+        return new CacheStatistics(hits, misses, evictions);
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private final long expirationTime;
+
+        private Entry(Object value, long expirationTime) {
+            this.value = value;
+            this.expirationTime = expirationTime;
+        }
+    }
+}
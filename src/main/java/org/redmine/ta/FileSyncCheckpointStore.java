@@ -0,0 +1,108 @@
+package org.redmine.ta;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Date;
+import java.util.Properties;
+
+/**
+ * Keeps checkpoints in a properties file. The file is replaced as a whole on every save,
+ * so a crash during the save leaves the previous checkpoints intact. On platforms where a file
+ * can't be renamed over an existing one, the previous file is kept with ".bak" suffix until the
+ * new one is in place and is read when the main file is missing.
+ */
+public class FileSyncCheckpointStore implements SyncCheckpointStore {
+
+    private static final String UPDATED_ON_SUFFIX = ".updated_on";
+    private static final String LAST_ID_SUFFIX = ".last_id";
+
+    private final File file;
+
+    public FileSyncCheckpointStore(File file) {
+        this.file = file;
+    }
+
+    @Override
+    public synchronized SyncCheckpoint load(String name) throws RedmineException {
+        Properties properties = read();
+        String updatedOn = properties.getProperty(name + UPDATED_ON_SUFFIX);
+        String lastId = properties.getProperty(name + LAST_ID_SUFFIX);
+        if (updatedOn == null || lastId == null) {
+            return null;
+        }
+        try {
+            return new SyncCheckpoint(new Date(Long.parseLong(updatedOn)), Integer.parseInt(lastId));
+        } catch (NumberFormatException e) {
+            throw new RedmineException("Invalid checkpoint '" + name + "' in " + file, e);
+        }
+    }
+
+    @Override
+    public synchronized void save(String name, SyncCheckpoint checkpoint) throws RedmineException {
+        Properties properties = read();
+        properties.setProperty(name + UPDATED_ON_SUFFIX, String.valueOf(checkpoint.getUpdatedOn().getTime()));
+        properties.setProperty(name + LAST_ID_SUFFIX, String.valueOf(checkpoint.getLastId()));
+        write(properties);
+    }
+
+    private Properties read() throws RedmineException {
+        Properties properties = new Properties();
+        File source = file;
+        if (!source.exists()) {
+            // the save was interrupted between the renames
+            source = getBackupFile();
+            if (!source.exists()) {
+                return properties;
+            }
+        }
+        try {
+            InputStream in = new FileInputStream(source);
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            throw new RedmineException("Can't read checkpoints from " + source, e);
+        }
+        return properties;
+    }
+
+    private void write(Properties properties) throws RedmineException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            FileOutputStream out = new FileOutputStream(tmp);
+            try {
+                properties.store(out, "Redmine sync checkpoints");
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            throw new RedmineException("Can't write checkpoints to " + tmp, e);
+        }
+        if (tmp.renameTo(file)) {
+            return;
+        }
+        // rename does not replace existing files on some platforms
+        File backup = getBackupFile();
+        if (file.exists()) {
+            backup.delete();
+            if (!file.renameTo(backup)) {
+                throw new RedmineException("Can't rename " + file + " to " + backup);
+            }
+        }
+        if (!tmp.renameTo(file)) {
+            backup.renameTo(file);
+            throw new RedmineException("Can't replace " + file + " with " + tmp);
+        }
+        backup.delete();
+    }
+
+    private File getBackupFile() {
+        return new File(file.getPath() + ".bak");
+    }
+}
@@ -0,0 +1,48 @@
+package org.redmine.ta;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Collects request statistics per endpoint in memory, see {@link #getEndpointMetrics()}.
+ * Helps to tell whether slow calls are caused by the server (connect and wait time) or
+ * by the client (transfer and parse time).
+ */
+public class InMemoryRedmineMetrics implements RedmineMetrics {
+
+    private final Map<String, EndpointMetrics> endpoints = new TreeMap<String, EndpointMetrics>();
+
+    @Override
+    public synchronized void requestCompleted(RequestStatistics statistics) {
+        EndpointMetrics metrics = endpoints.get(statistics.getEndpoint());
+        if (metrics == null) {
+            metrics = new EndpointMetrics(statistics.getEndpoint());
+            endpoints.put(statistics.getEndpoint(), metrics);
+        }
+        metrics.record(statistics);
+    }
+
+    /**
+     * @return snapshot of the statistics of all used endpoints, sorted by endpoint name.
+     */
+    public synchronized Map<String, EndpointMetrics> getEndpointMetrics() {
+        Map<String, EndpointMetrics> result = new TreeMap<String, EndpointMetrics>();
+        for (Map.Entry<String, EndpointMetrics> entry : endpoints.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().copy());
+        }
+        return result;
+    }
+
+    /**
+     * @param endpoint name like "GET Issue", see {@link RequestStatistics#getEndpoint()}
+     * @return snapshot of the endpoint statistics or NULL if it was not used.
+     */
+    public synchronized EndpointMetrics getEndpointMetrics(String endpoint) {
+        EndpointMetrics metrics = endpoints.get(endpoint);
+        return metrics == null ? null : metrics.copy();
+    }
+
+    public synchronized void reset() {
+        endpoints.clear();
+    }
+}
@@ -0,0 +1,187 @@
+package org.redmine.ta;
+
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.http.NameValuePair;
+import org.apache.http.message.BasicNameValuePair;
+import org.redmine.ta.beans.Issue;
+import org.redmine.ta.beans.TimeEntry;
+import org.redmine.ta.internal.ObjectsPage;
+import org.redmine.ta.internal.RedmineDateUtils;
+
+/**
+ * Loads only the objects created or changed since the previous run. Objects are requested with
+ * "updated_on>=checkpoint" filter sorted by "updated_on" and ID, and the checkpoint is saved
+ * after each page. A run which was interrupted continues from the last saved checkpoint.
+ * Each page starts with the last object of the previous one: when it's not there, objects were
+ * moved by updates made during the run, and the objects are requested again from the checkpoint.
+ * <p/>
+ * Timestamp filters are supported by Redmine 2.0+. Time entries can be filtered by
+ * "updated_on" starting from Redmine 3.x.
+ * <p/>
+ * Sample usage:
+ * <pre>
+ * {@code
+ *   IncrementalSync sync = new IncrementalSync(mgr, new FileSyncCheckpointStore(new File("sync.properties")));
+ *   sync.syncIssues("project-key", new SyncHandler<Issue>() {
+ *       public void onUpdated(Issue issue) { mirror.save(issue); }
+ *   });
+ * }
+ * </pre>
+ */
+public class IncrementalSync {
+
+    private final RedmineManager manager;
+    private final SyncCheckpointStore store;
+
+    public IncrementalSync(RedmineManager manager, SyncCheckpointStore store) {
+        this.manager = manager;
+        this.store = store;
+    }
+
+    /**
+     * Passes issues (including closed ones) of the project, which were changed since the last run,
+     * to the handler. The first run passes all issues.
+     *
+     * @param projectKey project "identifier" or NULL for issues of all projects.
+     * @return number of objects passed to the handler.
+     */
+    public int syncIssues(String projectKey, SyncHandler<Issue> handler) throws RedmineException {
+        Set<NameValuePair> params = new HashSet<NameValuePair>();
+        params.add(new BasicNameValuePair("status_id", "*"));
+        String name = "issues";
+        if (projectKey != null) {
+            params.add(new BasicNameValuePair("project_id", projectKey));
+            name += ":" + projectKey;
+        }
+        return sync(name, Issue.class, params, handler);
+    }
+
+    /**
+     * Passes time entries, which were changed since the last run, to the handler.
+     *
+     * @return number of objects passed to the handler.
+     */
+    public int syncTimeEntries(SyncHandler<TimeEntry> handler) throws RedmineException {
+        return sync("time_entries", TimeEntry.class, new HashSet<NameValuePair>(), handler);
+    }
+
+    private <T> int sync(String name, Class<T> objectClass, Set<NameValuePair> baseParams, SyncHandler<T> handler)
+            throws RedmineException {
+        SyncCheckpoint checkpoint = store.load(name);
+        SyncCheckpoint savedCheckpoint = checkpoint;
+        // one object of each page is requested again to check that the objects were not moved
+        int limit = Math.max(2, manager.getObjectsPerPage());
+        Date filterTime = checkpoint == null ? null : checkpoint.getUpdatedOn();
+        int offset = 0;
+        // the last object of the previous page, which is requested again as the first one, or NULL
+        SyncCheckpoint expected = null;
+        // set when the server filter is less precise than "updated_on" values, then the filter is not moved
+        boolean fixedFilter = false;
+        int processed = 0;
+        try {
+            while (true) {
+                Set<NameValuePair> params = new HashSet<NameValuePair>(baseParams);
+                params.add(new BasicNameValuePair("sort", "updated_on,id"));
+                params.add(new BasicNameValuePair("limit", String.valueOf(limit)));
+                if (filterTime != null) {
+                    params.add(new BasicNameValuePair("updated_on",
+                            ">=" + RedmineDateUtils.formatTimestampUTC(filterTime)));
+                }
+                ObjectsPage<T> page = manager.getObjectsPage(objectClass, params, offset);
+                List<T> objects = page.getObjects();
+                if (expected != null && (objects.isEmpty() || isAfter(getKey(objects.get(0)), expected))) {
+                    // an object updated during the run has moved to the end and the following objects
+                    // have moved back, so the offset could skip some of them
+                    filterTime = checkpoint == null ? null : checkpoint.getUpdatedOn();
+                    offset = 0;
+                    expected = null;
+                    continue;
+                }
+                if (objects.isEmpty()) {
+                    break;
+                }
+                for (T object : objects) {
+                    SyncCheckpoint key = getKey(object);
+                    // the server filter has seconds (or days for old versions) precision
+                    if (checkpoint == null || checkpoint.precedes(key.getUpdatedOn(), key.getLastId())) {
+                        handler.onUpdated(object);
+                        checkpoint = key;
+                        processed++;
+                    }
+                }
+                if (checkpoint != null && !checkpoint.equals(savedCheckpoint)) {
+                    store.save(name, checkpoint);
+                    savedCheckpoint = checkpoint;
+                }
+                // the server may send less objects than requested, e.g. Redmine sends not more than 100
+                boolean lastPage = page.getTotalCount() < 0 ? objects.size() < limit
+                        : offset + objects.size() >= page.getTotalCount();
+                if (lastPage) {
+                    break;
+                }
+                if (objects.size() < 2) {
+                    throw new RedmineInternalError("Server sends one object per page, the sync can't overlap pages");
+                }
+                SyncCheckpoint last = getKey(objects.get(objects.size() - 1));
+                if (expected != null && !isAfter(last, expected)) {
+                    fixedFilter = true;
+                }
+                expected = last;
+                if (!fixedFilter && (filterTime == null || !last.getUpdatedOn().equals(filterTime))) {
+                    // the objects updated at the last time of the page start the next filtered list
+                    filterTime = expected.getUpdatedOn();
+                    offset = countUpdatedAt(objects, filterTime) - 1;
+                } else {
+                    offset += objects.size() - 1;
+                }
+            }
+        } finally {
+            if (checkpoint != null && !checkpoint.equals(savedCheckpoint)) {
+                store.save(name, checkpoint);
+            }
+        }
+        return processed;
+    }
+
+    private static boolean isAfter(SyncCheckpoint key, SyncCheckpoint other) {
+        return other.precedes(key.getUpdatedOn(), key.getLastId());
+    }
+
+    private static SyncCheckpoint getKey(Object object) {
+        return new SyncCheckpoint(getUpdatedOn(object), getId(object));
+    }
+
+    private static <T> int countUpdatedAt(List<T> objects, Date updatedOn) {
+        int count = 0;
+        for (T object : objects) {
+            if (updatedOn.equals(getUpdatedOn(object))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static Date getUpdatedOn(Object object) {
+        Date updatedOn;
+        if (object instanceof Issue) {
+            updatedOn = ((Issue) object).getUpdatedOn();
+        } else {
+            updatedOn = ((TimeEntry) object).getUpdatedOn();
+        }
+        if (updatedOn == null) {
+            throw new RedmineInternalError("Server response has no updated_on value for " + object);
+        }
+        return updatedOn;
+    }
+
+    private static int getId(Object object) {
+        if (object instanceof Issue) {
+            return ((Issue) object).getId();
+        }
+        return ((TimeEntry) object).getId();
+    }
+}
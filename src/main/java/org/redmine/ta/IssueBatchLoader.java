@@ -0,0 +1,202 @@
+package org.redmine.ta;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.redmine.ta.beans.Issue;
+import org.redmine.ta.internal.DaemonThreadFactory;
+
+/**
+ * Coalesces single issue lookups: all IDs requested within a short time window are loaded
+ * together with one {@link RedmineManager#getIssuesByIds(java.util.Collection)} call.
+ * Useful when many threads (or one thread walking issue relations asynchronously) need
+ * issues one by one.
+ * <p>The batches are loaded on the manager's virtual threads when it {@link RedmineManager#isUsingVirtualThreads()
+ * uses them}, otherwise on an internal pool, so a slow batch does not delay the next ones.
+ * <p/>
+ * Sample usage:
+ * <pre>
+ * {@code
+ *   IssueBatchLoader loader = new IssueBatchLoader(mgr, 10);
+ *   RedmineFuture<Issue> first = loader.load(1);
+ *   RedmineFuture<Issue> second = loader.load(2);
+ *   // both issues are loaded with one request
+ * }
+ * </pre>
+ */
+public class IssueBatchLoader {
+
+    private final RedmineManager manager;
+    private final long windowMillis;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService loadingExecutor;
+    private final boolean ownLoadingExecutor;
+
+    private Batch pendingBatch;
+
+    /**
+     * @param windowMillis how long to wait for more IDs after the first one was requested.
+     */
+    public IssueBatchLoader(RedmineManager manager, long windowMillis) {
+        if (windowMillis < 0) {
+            throw new IllegalArgumentException("Window can't be negative: " + windowMillis);
+        }
+        this.manager = manager;
+        this.windowMillis = windowMillis;
+        this.scheduler = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory("redmine-batch-loader"));
+        this.ownLoadingExecutor = !manager.isUsingVirtualThreads();
+        this.loadingExecutor = ownLoadingExecutor
+                ? Executors.newCachedThreadPool(new DaemonThreadFactory("redmine-batch-loader-worker"))
+                : manager.getVirtualThreadExecutor();
+    }
+
+    /**
+     * @return future, which fails with {@link NotFoundException} if the issue is not found or is not
+     *         visible to the current user.
+     */
+    public RedmineFuture<Issue> load(Integer id) {
+        if (id == null) {
+            throw new IllegalArgumentException("Issue ID can't be NULL");
+        }
+        // the batch can't be started while an ID is being added to it
+        synchronized (this) {
+            if (pendingBatch == null) {
+                pendingBatch = new Batch();
+                scheduleLoading(pendingBatch);
+            }
+            return pendingBatch.add(id);
+        }
+    }
+
+    /**
+     * Same as {@link #load(Integer)}, but waits for the result.
+     */
+    public Issue get(Integer id) throws RedmineException {
+        return RedmineManager.getResult(load(id));
+    }
+
+    /**
+     * Stops the loader threads. The issues requested, but not loaded yet, are not loaded.
+     */
+    public void shutdown() {
+        scheduler.shutdownNow();
+        if (ownLoadingExecutor) {
+            loadingExecutor.shutdownNow();
+        }
+    }
+
+    private void scheduleLoading(final Batch batch) {
+        try {
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (IssueBatchLoader.this) {
+                        pendingBatch = null;
+                    }
+                    // the timer thread only starts batches, so a slow batch does not delay the next one
+                    try {
+                        loadingExecutor.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                batch.load();
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        batch.fail(new IllegalStateException("The loader is shut down", e));
+                    }
+                }
+            }, windowMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            throw new IllegalStateException("The loader is shut down", e);
+        }
+    }
+
+    private final class Batch {
+        private final Set<Integer> ids = new LinkedHashSet<Integer>();
+        private final List<RedmineFuture<Issue>> futures = new ArrayList<RedmineFuture<Issue>>();
+        private Map<Integer, Issue> loaded;
+        private RedmineException error;
+        private RuntimeException runtimeError;
+
+        synchronized RedmineFuture<Issue> add(final Integer id) {
+            ids.add(id);
+            RedmineFuture<Issue> future = new RedmineFuture<Issue>(new Callable<Issue>() {
+                @Override
+                public Issue call() throws RedmineException {
+                    return getLoadedIssue(id);
+                }
+            });
+            futures.add(future);
+            return future;
+        }
+
+        /**
+         * Called after the batch was detached from the loader, so no IDs are added anymore.
+         */
+        void load() {
+            List<Integer> idsToLoad;
+            synchronized (this) {
+                idsToLoad = new ArrayList<Integer>(ids);
+            }
+            try {
+                Map<Integer, Issue> issues = new HashMap<Integer, Issue>();
+                for (Issue issue : manager.getIssuesByIds(idsToLoad)) {
+                    issues.put(issue.getId(), issue);
+                }
+                synchronized (this) {
+                    loaded = issues;
+                }
+            } catch (RedmineException e) {
+                synchronized (this) {
+                    error = e;
+                }
+            } catch (RuntimeException e) {
+                fail(e);
+                return;
+            }
+            complete();
+        }
+
+        void fail(RuntimeException e) {
+            synchronized (this) {
+                runtimeError = e;
+            }
+            complete();
+        }
+
+        private void complete() {
+            List<RedmineFuture<Issue>> toComplete;
+            synchronized (this) {
+                toComplete = new ArrayList<RedmineFuture<Issue>>(futures);
+            }
+            for (RedmineFuture<Issue> future : toComplete) {
+                future.run();
+            }
+        }
+
+        private synchronized Issue getLoadedIssue(Integer id) throws RedmineException {
+            if (error != null) {
+                throw error;
+            }
+            if (runtimeError != null) {
+                throw runtimeError;
+            }
+            Issue issue = loaded.get(id);
+            if (issue == null) {
+                throw new NotFoundException("Issue " + id + " is not found");
+            }
+            return issue;
+        }
+    }
+}
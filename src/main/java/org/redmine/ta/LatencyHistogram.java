@@ -0,0 +1,85 @@
+package org.redmine.ta;
+
+/**
+ * Distribution of durations with exponential buckets: bucket <code>i</code> counts durations
+ * from 2<sup>i-1</sup> to 2<sup>i</sup> microseconds, so percentiles are accurate within 2 times.
+ * Instances returned by {@link InMemoryRedmineMetrics} are snapshots and are not changed later.
+ */
+public final class LatencyHistogram {
+
+    private static final int BUCKETS_NUMBER = 40;
+
+    private final long[] buckets;
+    private long count;
+    private long totalNanos;
+    private long maxNanos;
+
+    LatencyHistogram() {
+        this.buckets = new long[BUCKETS_NUMBER];
+    }
+
+    private LatencyHistogram(LatencyHistogram other) {
+        this.buckets = other.buckets.clone();
+        this.count = other.count;
+        this.totalNanos = other.totalNanos;
+        this.maxNanos = other.maxNanos;
+    }
+
+    void record(long nanos) {
+        long micros = nanos / 1000;
+        int bucket = micros <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(micros);
+        buckets[Math.min(bucket, BUCKETS_NUMBER - 1)]++;
+        count++;
+        totalNanos += nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+    }
+
+    LatencyHistogram copy() {
+        return new LatencyHistogram(this);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    public long getMeanNanos() {
+        return count == 0 ? 0 : totalNanos / count;
+    }
+
+    /**
+     * @param percentile value from 0 to 100, like 50 for the median or 99.
+     * @return upper bound of the bucket with the given percentile, 0 if nothing was recorded.
+     */
+    public long getPercentileNanos(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be from 0 to 100: " + percentile);
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(count * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS_NUMBER; i++) {
+            seen += buckets[i];
+            if (seen >= rank && seen > 0) {
+                return Math.min((1L << i) * 1000, maxNanos);
+            }
+        }
+        return maxNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram{count=" + count + ", meanNanos=" + getMeanNanos()
+                + ", p50Nanos=" + getPercentileNanos(50) + ", p99Nanos=" + getPercentileNanos(99)
+                + ", maxNanos=" + maxNanos + '}';
+    }
+}
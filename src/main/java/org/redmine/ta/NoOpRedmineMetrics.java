@@ -0,0 +1,16 @@
+package org.redmine.ta;
+
+/**
+ * Default {@link RedmineMetrics}: ignores all statistics.
+ */
+public final class NoOpRedmineMetrics implements RedmineMetrics {
+
+    public static final NoOpRedmineMetrics INSTANCE = new NoOpRedmineMetrics();
+
+    private NoOpRedmineMetrics() {
+    }
+
+    @Override
+    public void requestCompleted(RequestStatistics statistics) {
+    }
+}
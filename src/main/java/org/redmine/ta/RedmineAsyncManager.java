@@ -0,0 +1,523 @@
+package org.redmine.ta;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.redmine.ta.beans.*;
+import org.redmine.ta.internal.DaemonThreadFactory;
+
+/**
+ * Non-blocking facade for {@link RedmineManager}: each method starts the operation and
+ * returns immediately. The requests are executed by the given executor using the connection
+ * pool of the wrapped manager.
+ * <p>All blocking operations of the manager are available here except the "iterate" methods,
+ * which load pages lazily while the caller iterates, and the configuration methods, which
+ * don't send requests.
+ * <p/>
+ * Sample usage:
+ * <pre>
+ * {@code
+ *   RedmineAsyncManager asyncManager = new RedmineAsyncManager(mgr);
+ *   asyncManager.getIssueById(123).addCallback(new RedmineCallback<Issue>() {
+ *       public void onSuccess(Issue issue) { ... }
+ *       public void onFailure(Throwable error) { ... }
+ *   });
+ * }
+ * </pre>
+ */
+public class RedmineAsyncManager {
+
+    private static final int DEFAULT_THREADS = 10;
+
+    private final RedmineManager manager;
+    private final ExecutorService executor;
+    private final boolean ownExecutor;
+
+    /**
+     * Operations are executed on virtual threads of the manager when it {@link RedmineManager#isUsingVirtualThreads()
+     * uses them}, otherwise by an internal pool of daemon threads, which is closed by {@link #shutdown()}.
+     * The manager's own platform pool is not used: it's sized for page loads and operations waiting
+     * there for their pages would block each other.
+     */
+    public RedmineAsyncManager(RedmineManager manager) {
+        this(manager, getDefaultExecutor(manager), !manager.isUsingVirtualThreads());
+    }
+
+    private static ExecutorService getDefaultExecutor(RedmineManager manager) {
+        if (manager.isUsingVirtualThreads()) {
+            return manager.getVirtualThreadExecutor();
+        }
+        return Executors.newFixedThreadPool(DEFAULT_THREADS, new DaemonThreadFactory("redmine-async"));
+    }
+
+    /**
+     * @param executor executes the operations. It is not shut down by {@link #shutdown()}.
+     *                 The number of requests actually sent in parallel is limited by
+     *                 {@link RedmineManager#setMaxConnectionsPerHost(int)}.
+     */
+    public RedmineAsyncManager(RedmineManager manager, ExecutorService executor) {
+        this(manager, executor, false);
+    }
+
+    private RedmineAsyncManager(RedmineManager manager, ExecutorService executor, boolean ownExecutor) {
+        this.manager = manager;
+        this.executor = executor;
+        this.ownExecutor = ownExecutor;
+    }
+
+    public RedmineManager getManager() {
+        return manager;
+    }
+
+    public RedmineFuture<Issue> createIssue(final String projectKey, final Issue issue) {
+        return submit(new Callable<Issue>() {
+            @Override
+            public Issue call() throws RedmineException {
+                return manager.createIssue(projectKey, issue);
+            }
+        });
+    }
+
+    public RedmineFuture<Issue> getIssueById(final Integer id, final RedmineManager.INCLUDE... include) {
+        return submit(new Callable<Issue>() {
+            @Override
+            public Issue call() throws RedmineException {
+                return manager.getIssueById(id, include);
+            }
+        });
+    }
+
+    public RedmineFuture<List<Issue>> getIssues(final String projectKey, final Integer queryId, final RedmineManager.INCLUDE... include) {
+        return submit(new Callable<List<Issue>>() {
+            @Override
+            public List<Issue> call() throws RedmineException {
+                return manager.getIssues(projectKey, queryId, include);
+            }
+        });
+    }
+
+    public RedmineFuture<List<Issue>> getIssues(final Map<String, String> parameters) {
+        return submit(new Callable<List<Issue>>() {
+            @Override
+            public List<Issue> call() throws RedmineException {
+                return manager.getIssues(parameters);
+            }
+        });
+    }
+
+    public RedmineFuture<List<Issue>> getIssuesBySummary(final String projectKey, final String summaryField) {
+        return submit(new Callable<List<Issue>>() {
+            @Override
+            public List<Issue> call() throws RedmineException {
+                return manager.getIssuesBySummary(projectKey, summaryField);
+            }
+        });
+    }
+
+    public RedmineFuture<Void> deleteIssue(final Integer id) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() throws RedmineException {
+                manager.deleteIssue(id);
+                return null;
+            }
+        });
+    }
+
+    public RedmineFuture<Void> update(final Identifiable obj) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() throws RedmineException {
+                manager.update(obj);
+                return null;
+            }
+        });
+    }
+
+    public RedmineFuture<List<Project>> getProjects() {
+        return submit(new Callable<List<Project>>() {
+            @Override
+            public List<Project> call() throws RedmineException {
+                return manager.getProjects();
+            }
+        });
+    }
+
+    public RedmineFuture<Project> getProjectByKey(final String projectKey) {
+        return submit(new Callable<Project>() {
+            @Override
+            public Project call() throws RedmineException {
+                return manager.getProjectByKey(projectKey);
+            }
+        });
+    }
+
+    public RedmineFuture<Project> createProject(final Project project) {
+        return submit(new Callable<Project>() {
+            @Override
+            public Project call() throws RedmineException {
+                return manager.createProject(project);
+            }
+        });
+    }
+
+    public RedmineFuture<Void> deleteProject(final String projectKey) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() throws RedmineException {
+                manager.deleteProject(projectKey);
+                return null;
+            }
+        });
+    }
+
+    public RedmineFuture<List<User>> getUsers() {
+        return submit(new Callable<List<User>>() {
+            @Override
+            public List<User> call() throws RedmineException {
+                return manager.getUsers();
+            }
+        });
+    }
+
+    public RedmineFuture<User> getUserById(final Integer userId) {
+        return submit(new Callable<User>() {
+            @Override
+            public User call() throws RedmineException {
+                return manager.getUserById(userId);
+            }
+        });
+    }
+
+    public RedmineFuture<User> getCurrentUser() {
+        return submit(new Callable<User>() {
+            @Override
+            public User call() throws RedmineException {
+                return manager.getCurrentUser();
+            }
+        });
+    }
+
+    public RedmineFuture<User> createUser(final User user) {
+        return submit(new Callable<User>() {
+            @Override
+            public User call() throws RedmineException {
+                return manager.createUser(user);
+            }
+        });
+    }
+
+    public RedmineFuture<Void> deleteUser(final Integer userId) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() throws RedmineException {
+                manager.deleteUser(userId);
+                return null;
+            }
+        });
+    }
+
+    public RedmineFuture<List<TimeEntry>> getTimeEntries() {
+        return submit(new Callable<List<TimeEntry>>() {
+            @Override
+            public List<TimeEntry> call() throws RedmineException {
+                return manager.getTimeEntries();
+            }
+        });
+    }
+
+    public RedmineFuture<TimeEntry> getTimeEntry(final Integer id) {
+        return submit(new Callable<TimeEntry>() {
+            @Override
+            public TimeEntry call() throws RedmineException {
+                return manager.getTimeEntry(id);
+            }
+        });
+    }
+
+    public RedmineFuture<List<TimeEntry>> getTimeEntriesForIssue(final Integer issueId) {
+        return submit(new Callable<List<TimeEntry>>() {
+            @Override
+            public List<TimeEntry> call() throws RedmineException {
+                return manager.getTimeEntriesForIssue(issueId);
+            }
+        });
+    }
+
+    public RedmineFuture<TimeEntry> createTimeEntry(final TimeEntry obj) {
+        return submit(new Callable<TimeEntry>() {
+            @Override
+            public TimeEntry call() throws RedmineException {
+                return manager.createTimeEntry(obj);
+            }
+        });
+    }
+
+    public RedmineFuture<Void> deleteTimeEntry(final Integer id) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() throws RedmineException {
+                manager.deleteTimeEntry(id);
+                return null;
+            }
+        });
+    }
+
+    public RedmineFuture<List<SavedQuery>> getSavedQueries(final String projectKey) {
+        return submit(new Callable<List<SavedQuery>>() {
+            @Override
+            public List<SavedQuery> call() throws RedmineException {
+                return manager.getSavedQueries(projectKey);
+            }
+        });
+    }
+
+    public RedmineFuture<IssueRelation> createRelation(final Integer issueId, final Integer issueToId, final String type) {
+        return submit(new Callable<IssueRelation>() {
+            @Override
+            public IssueRelation call() throws RedmineException {
+                return manager.createRelation(issueId, issueToId, type);
+            }
+        });
+    }
+
+    public RedmineFuture<Void> deleteRelation(final Integer id) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() throws RedmineException {
+                manager.deleteRelation(id);
+                return null;
+            }
+        });
+    }
+
+    public RedmineFuture<List<IssueStatus>> getStatuses() {
+        return submit(new Callable<List<IssueStatus>>() {
+            @Override
+            public List<IssueStatus> call() throws RedmineException {
+                return manager.getStatuses();
+            }
+        });
+    }
+
+    public RedmineFuture<List<Tracker>> getTrackers() {
+        return submit(new Callable<List<Tracker>>() {
+            @Override
+            public List<Tracker> call() throws RedmineException {
+                return manager.getTrackers();
+            }
+        });
+    }
+
+    public RedmineFuture<Version> createVersion(final Version version) {
+        return submit(new Callable<Version>() {
+            @Override
+            public Version call() throws RedmineException {
+                return manager.createVersion(version);
+            }
+        });
+    }
+
+    public RedmineFuture<List<Version>> getVersions(final int projectID) {
+        return submit(new Callable<List<Version>>() {
+            @Override
+            public List<Version> call() throws RedmineException {
+                return manager.getVersions(projectID);
+            }
+        });
+    }
+
+    public RedmineFuture<Version> getVersionById(final int versionId) {
+        return submit(new Callable<Version>() {
+            @Override
+            public Version call() throws RedmineException {
+                return manager.getVersionById(versionId);
+            }
+        });
+    }
+
+    public RedmineFuture<List<IssueCategory>> getCategories(final int projectID) {
+        return submit(new Callable<List<IssueCategory>>() {
+            @Override
+            public List<IssueCategory> call() throws RedmineException {
+                return manager.getCategories(projectID);
+            }
+        });
+    }
+
+    public RedmineFuture<IssueCategory> createCategory(final IssueCategory category) {
+        return submit(new Callable<IssueCategory>() {
+            @Override
+            public IssueCategory call() throws RedmineException {
+                return manager.createCategory(category);
+            }
+        });
+    }
+
+    public RedmineFuture<Attachment> getAttachmentById(final int attachmentID) {
+        return submit(new Callable<Attachment>() {
+            @Override
+            public Attachment call() throws RedmineException {
+                return manager.getAttachmentById(attachmentID);
+            }
+        });
+    }
+
+    public RedmineFuture<List<News>> getNews(final String projectKey) {
+        return submit(new Callable<List<News>>() {
+            @Override
+            public List<News> call() throws RedmineException {
+                return manager.getNews(projectKey);
+            }
+        });
+    }
+
+    public RedmineFuture<List<Issue>> getIssuesByIds(final Collection<Integer> ids) {
+        return submit(new Callable<List<Issue>>() {
+            @Override
+            public List<Issue> call() throws RedmineException {
+                return manager.getIssuesByIds(ids);
+            }
+        });
+    }
+
+    public RedmineFuture<List<SavedQuery>> getSavedQueries() {
+        return submit(new Callable<List<SavedQuery>>() {
+            @Override
+            public List<SavedQuery> call() throws RedmineException {
+                return manager.getSavedQueries();
+            }
+        });
+    }
+
+    public RedmineFuture<Void> deleteIssueRelations(final Issue issue) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() throws RedmineException {
+                manager.deleteIssueRelations(issue);
+                return null;
+            }
+        });
+    }
+
+    public RedmineFuture<Void> deleteIssueRelationsByIssueId(final Integer issueId) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() throws RedmineException {
+                manager.deleteIssueRelationsByIssueId(issueId);
+                return null;
+            }
+        });
+    }
+
+    public RedmineFuture<Void> deleteVersion(final Version version) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() throws RedmineException {
+                manager.deleteVersion(version);
+                return null;
+            }
+        });
+    }
+
+    public RedmineFuture<Void> deleteCategory(final IssueCategory category) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() throws RedmineException {
+                manager.deleteCategory(category);
+                return null;
+            }
+        });
+    }
+
+    public RedmineFuture<byte[]> downloadAttachmentContent(final Attachment attachment) {
+        return submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws RedmineException {
+                return manager.downloadAttachmentContent(attachment);
+            }
+        });
+    }
+
+    public RedmineFuture<Long> downloadAttachmentContent(final Attachment attachment, final OutputStream out) {
+        return submit(new Callable<Long>() {
+            @Override
+            public Long call() throws RedmineException {
+                return manager.downloadAttachmentContent(attachment, out);
+            }
+        });
+    }
+
+    public RedmineFuture<Long> downloadAttachmentContent(final Attachment attachment, final File file) {
+        return submit(new Callable<Long>() {
+            @Override
+            public Long call() throws RedmineException {
+                return manager.downloadAttachmentContent(attachment, file);
+            }
+        });
+    }
+
+    public RedmineFuture<Long> downloadAttachmentContent(final Attachment attachment, final File file, final int parts) {
+        return submit(new Callable<Long>() {
+            @Override
+            public Long call() throws RedmineException {
+                return manager.downloadAttachmentContent(attachment, file, parts);
+            }
+        });
+    }
+
+    public RedmineFuture<Long> resumeAttachmentDownload(final Attachment attachment, final File file) {
+        return submit(new Callable<Long>() {
+            @Override
+            public Long call() throws RedmineException {
+                return manager.resumeAttachmentDownload(attachment, file);
+            }
+        });
+    }
+
+    public RedmineFuture<Attachment> uploadAttachment(final String fileName, final String contentType, final File file) {
+        return submit(new Callable<Attachment>() {
+            @Override
+            public Attachment call() throws RedmineException {
+                return manager.uploadAttachment(fileName, contentType, file);
+            }
+        });
+    }
+
+    public RedmineFuture<Attachment> uploadAttachment(final String fileName, final String contentType, final InputStream content, final long length) {
+        return submit(new Callable<Attachment>() {
+            @Override
+            public Attachment call() throws RedmineException {
+                return manager.uploadAttachment(fileName, contentType, content, length);
+            }
+        });
+    }
+
+    /**
+     * Stops the internal thread pool, if one was created by this class. The wrapped manager
+     * is not shut down.
+     */
+    public void shutdown() {
+        if (ownExecutor) {
+            executor.shutdownNow();
+        }
+    }
+
+    private <T> RedmineFuture<T> submit(Callable<T> operation) {
+        RedmineFuture<T> future = new RedmineFuture<T>(operation);
+        try {
+            executor.execute(future);
+        } catch (RejectedExecutionException e) {
+            future.setException(e);
+        }
+        return future;
+    }
+}
@@ -0,0 +1,18 @@
+package org.redmine.ta;
+
+/**
+ * Receives the result of an operation started with {@link RedmineAsyncManager}.
+ * Methods are called from the thread, which completed the operation, so they should not block.
+ *
+ * @see RedmineFuture#addCallback(RedmineCallback)
+ */
+public interface RedmineCallback<T> {
+
+    void onSuccess(T result);
+
+    /**
+     * @param error {@link RedmineException} thrown by the operation, a runtime exception or
+     *              {@link java.util.concurrent.CancellationException} if the operation was cancelled.
+     */
+    void onFailure(Throwable error);
+}
@@ -0,0 +1,25 @@
+package org.redmine.ta;
+
+/**
+ * The request was not sent because too many recent requests to the server have failed.
+ *
+ * @see CircuitBreaker
+ */
+public class RedmineCircuitOpenException extends RedmineCommunicationException {
+    private static final long serialVersionUID = 1L;
+
+    private final long remainingOpenMillis;
+
+    public RedmineCircuitOpenException(String message, long remainingOpenMillis) {
+        super(message);
+        this.remainingOpenMillis = remainingOpenMillis;
+    }
+
+    /**
+     * @return time until the circuit breaker lets trial requests through, 0 if it does now but
+     *         all trial requests are already being sent.
+     */
+    public long getRemainingOpenMillis() {
+        return remainingOpenMillis;
+    }
+}
@@ -4,4 +4,8 @@ public class RedmineFormatException extends RedmineCommunicationException {
     public RedmineFormatException(Throwable cause) {
         super(cause);
     }
+
+    public RedmineFormatException(String message) {
+        super(message);
+    }
 }
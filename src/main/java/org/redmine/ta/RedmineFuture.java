@@ -0,0 +1,85 @@
+package org.redmine.ta;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.redmine.ta.internal.logging.Logger;
+import org.redmine.ta.internal.logging.LoggerFactory;
+
+/**
+ * Result of an operation started with {@link RedmineAsyncManager}. Besides the usual blocking
+ * {@link #get()}, callbacks can be registered to process the result without waiting for it.
+ */
+public class RedmineFuture<T> extends FutureTask<T> {
+
+    private final Logger logger = LoggerFactory.getLogger(RedmineFuture.class);
+    private final List<RedmineCallback<? super T>> callbacks = new ArrayList<RedmineCallback<? super T>>();
+    private boolean callbacksCalled = false;
+
+    public RedmineFuture(Callable<T> callable) {
+        super(callable);
+    }
+
+    /**
+     * The callback is called once the operation is completed. If it is already completed,
+     * the callback is called immediately in the current thread. Exceptions thrown by the callback
+     * are logged and ignored, so they don't prevent other callbacks from being called.
+     */
+    public void addCallback(RedmineCallback<? super T> callback) {
+        synchronized (callbacks) {
+            if (!callbacksCalled) {
+                callbacks.add(callback);
+                return;
+            }
+        }
+        notifyCallback(callback);
+    }
+
+    /**
+     * Completes the future with the error, e.g. when the operation could not be started.
+     */
+    @Override
+    protected void setException(Throwable t) {
+        super.setException(t);
+    }
+
+    @Override
+    protected void done() {
+        List<RedmineCallback<? super T>> toNotify;
+        synchronized (callbacks) {
+            callbacksCalled = true;
+            toNotify = new ArrayList<RedmineCallback<? super T>>(callbacks);
+            callbacks.clear();
+        }
+        for (RedmineCallback<? super T> callback : toNotify) {
+            notifyCallback(callback);
+        }
+    }
+
+    private void notifyCallback(RedmineCallback<? super T> callback) {
+        try {
+            T result;
+            try {
+                result = get();
+            } catch (InterruptedException e) {
+                // can't happen, the task is already done
+                Thread.currentThread().interrupt();
+                callback.onFailure(e);
+                return;
+            } catch (ExecutionException e) {
+                callback.onFailure(e.getCause());
+                return;
+            } catch (CancellationException e) {
+                callback.onFailure(e);
+                return;
+            }
+            callback.onSuccess(result);
+        } catch (RuntimeException e) {
+            logger.error(e, "callback " + callback + " failed");
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package org.redmine.ta;
+
+/**
+ * Thrown by iterators returned from {@link RedmineManager} when the next page of objects
+ * can't be loaded. {@link java.util.Iterator} methods can't throw checked exceptions, so
+ * the original {@link RedmineException} is available as the cause.
+ */
+public class RedmineIterationException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public RedmineIterationException(RedmineException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    @Override
+    public RedmineException getCause() {
+        return (RedmineException) super.getCause();
+    }
+}
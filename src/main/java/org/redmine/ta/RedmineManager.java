@@ -22,6 +22,9 @@ import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.FileEntity;
+import org.apache.http.entity.InputStreamEntity;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.message.BasicNameValuePair;
 import org.redmine.ta.beans.*;
@@ -30,23 +33,43 @@ import org.redmine.ta.internal.logging.Logger;
 import org.redmine.ta.internal.logging.LoggerFactory;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
-import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.*;
 
 /**
  * <b>Entry point</b> for the API: use this class to communicate with Redmine servers.
+ * <p>The manager is thread-safe: one instance, usually created with {@link Builder}, can be
+ * shared by all threads working with the same server. The threads share its connection pool
+ * and caches. Configuration setters are kept for compatibility, a change made by them is seen
+ * by requests started after it.
  *
  * @author Alexey Skorokhodov
  */
 public class RedmineManager {
 
     private static final String CONTENT_TYPE = "text/xml; charset=utf-8";
+    private static final String UPLOAD_CONTENT_TYPE = "application/octet-stream";
     private static final int DEFAULT_OBJECTS_PER_PAGE = 25;
+    private static final int DEFAULT_PAGE_FETCH_PARALLELISM = 1;
+    private static final long WORKER_THREAD_KEEP_ALIVE_SECONDS = 60;
+
+    private static final String CACHE_KEY_PROJECTS = "projects";
+    private static final String CACHE_KEY_STATUSES = "statuses";
+    private static final String CACHE_KEY_TRACKERS = "trackers";
+    private static final String CACHE_KEY_VERSIONS = "versions:";
+    private static final String CACHE_KEY_CATEGORIES = "categories:";
 
     // TODO add tests for "relations" to RedmineManagerTest class
     public static enum INCLUDE {
@@ -64,11 +87,22 @@ public class RedmineManager {
     private final Logger logger = LoggerFactory.getLogger(RedmineManager.class);
 
     private final URIConfigurator configurator;
+    private final Communicator communicator;
     private String login;
     private String password;
-    private boolean useBasicAuth = false;
-
-    private int objectsPerPage = DEFAULT_OBJECTS_PER_PAGE;
+    private final boolean useBasicAuth;
+
+    private volatile int objectsPerPage = DEFAULT_OBJECTS_PER_PAGE;
+    private volatile int pageFetchParallelism = DEFAULT_PAGE_FETCH_PARALLELISM;
+    private ThreadPoolExecutor executor;
+    private ExecutorService virtualThreadExecutor;
+    private TaskPermits virtualThreadPermits;
+    private volatile ReferenceDataCache referenceDataCache;
+    /**
+     * Reference data cache keys start with the server and the user, so one cache can be shared
+     * by managers working with different servers or as different users.
+     */
+    private volatile String cacheKeyPrefix;
 
     private MODE currentMode = MODE.REDMINE_1_1_OR_CHILIPROJECT_1_2;
 
@@ -78,9 +112,12 @@ public class RedmineManager {
 
     public RedmineManager(String uri, String login, String password) {
         this.configurator = new URIConfigurator(uri, null);
+        this.communicator = new Communicator();
+        communicator.setAuthenticatedServer(configurator.createURI(""));
         this.login = login;
         this.password = password;
         useBasicAuth = true;
+        updateCredentials();
     }
 
     /**
@@ -93,7 +130,51 @@ public class RedmineManager {
      */
     public RedmineManager(String host, String apiAccessKey) {
         this.configurator = new URIConfigurator(host, apiAccessKey);
+        this.communicator = new Communicator();
+        communicator.setAuthenticatedServer(configurator.createURI(""));
         this.useBasicAuth = false;
+        setCacheUser(getApiKeyUser(apiAccessKey));
+    }
+
+    private RedmineManager(Builder builder) {
+        this.configurator = new URIConfigurator(builder.uri, builder.apiKeyInHeader ? null : builder.apiAccessKey);
+        this.communicator = new Communicator(builder.maxConnections, builder.maxConnectionsPerHost);
+        communicator.setAuthenticatedServer(configurator.createURI(""));
+        this.login = builder.login;
+        this.password = builder.password;
+        this.useBasicAuth = builder.login != null;
+        updateCredentials();
+        if (!useBasicAuth) {
+            setCacheUser(getApiKeyUser(builder.apiAccessKey));
+        }
+        if (builder.apiKeyInHeader) {
+            communicator.setApiKeyHeader(builder.apiAccessKey);
+        }
+        this.objectsPerPage = builder.objectsPerPage;
+        this.pageFetchParallelism = builder.pageFetchParallelism;
+        this.referenceDataCache = builder.referenceDataCache;
+        if (builder.virtualThreads) {
+            try {
+                this.virtualThreadExecutor = VirtualThreads.newThreadPerTaskExecutor();
+                this.virtualThreadPermits = new TaskPermits(pageFetchParallelism);
+            } catch (UnsupportedOperationException e) {
+                logger.info("Virtual threads are not available, using platform threads: " + e.getMessage());
+            }
+        }
+        communicator.setIdleConnectionTimeout(builder.idleConnectionTimeoutMillis);
+        communicator.setKeepAliveDuration(builder.keepAliveMillis);
+        communicator.setConnectTimeout(builder.connectTimeoutMillis);
+        communicator.setReadTimeout(builder.readTimeoutMillis);
+        communicator.setConnectionPoolTimeout(builder.connectionPoolTimeoutMillis);
+        communicator.setCallTimeout(builder.callTimeoutMillis);
+        communicator.setResponseCache(builder.responseCacheSize == 0 ? null : new ResponseCache(builder.responseCacheSize));
+        communicator.setMetrics(builder.metrics);
+        communicator.setRetryPolicy(builder.retryPolicy);
+        communicator.setRequestLimiter(builder.requestLimiter);
+        communicator.setCircuitBreaker(builder.circuitBreaker);
+        for (RequestInterceptor interceptor : builder.interceptors) {
+            communicator.addInterceptor(interceptor);
+        }
     }
 
     /**
@@ -146,15 +227,30 @@ public class RedmineManager {
      * @throws RedmineException
      */
     public List<Project> getProjects() throws RedmineException {
+        List<Project> cached = getCachedList(CACHE_KEY_PROJECTS);
+        if (cached != null) {
+            return cached;
+        }
         Set<NameValuePair> params = new HashSet<NameValuePair>();
         params.add(new BasicNameValuePair("include", "trackers"));
         try {
-            return getObjectsList(Project.class, params);
+            return putListToCache(CACHE_KEY_PROJECTS, getObjectsList(Project.class, params));
         } catch (NotFoundException e) {
             throw new RedmineInternalError("NotFoundException received, which should never happen in this request");
         }
     }
 
+    /**
+     * Same as {@link #getProjects()}, but the projects are loaded from the server page by page
+     * while iterating.
+     * <p>Iterator methods throw {@link RedmineIterationException} if a page can't be loaded.
+     */
+    public Iterable<Project> iterateProjects() {
+        Set<NameValuePair> params = new HashSet<NameValuePair>();
+        params.add(new BasicNameValuePair("include", "trackers"));
+        return getObjectsIterable(Project.class, params);
+    }
+
     /**
      * There could be several issues with the same summary, so the method returns List.
      *
@@ -186,13 +282,28 @@ public class RedmineManager {
      * @throws RedmineException
      */
     public List<Issue> getIssues(Map<String, String> pParameters) throws RedmineException {
+        return getObjectsList(Issue.class, toNameValuePairs(pParameters));
+    }
+
+    /**
+     * Same as {@link #getIssues(Map)}, but the issues are loaded from the server page by page
+     * while iterating, so only one page is kept in memory at a time.
+     * Each call to {@link Iterable#iterator()} starts loading from the first page again.
+     * <p>Iterator methods throw {@link RedmineIterationException} if a page can't be loaded.
+     *
+     * @param pParameters the http parameters key/value pairs to append to the rest api request
+     */
+    public Iterable<Issue> iterateIssues(Map<String, String> pParameters) {
+        return getObjectsIterable(Issue.class, toNameValuePairs(pParameters));
+    }
+
+    private static Set<NameValuePair> toNameValuePairs(Map<String, String> parameters) {
         Set<NameValuePair> params = new HashSet<NameValuePair>();
 
-        for (final Entry<String, String> param : pParameters.entrySet()) {
+        for (final Entry<String, String> param : parameters.entrySet()) {
             params.add(new BasicNameValuePair(param.getKey(), param.getValue()));
         }
-
-        return getObjectsList(Issue.class, params);
+        return params;
     }
 
     /**
@@ -210,6 +321,73 @@ public class RedmineManager {
         return getObject(Issue.class, id, new BasicNameValuePair("include", value));
     }
 
+    /**
+     * Loads issues with the given IDs using "issue_id=1,2,3" list queries, one query per
+     * {@link #getObjectsPerPage()} IDs. The queries are sent in parallel when
+     * {@link #setPageFetchParallelism(int)} is greater than 1. Closed issues are included.
+     *
+     * @param ids Redmine issue IDs. Duplicates are loaded once.
+     * @return issues in the order of the given IDs. Issues, which are not found or not visible
+     *         to the current user, are not included. Never NULL.
+     * @throws IllegalArgumentException       the IDs contain NULL. Nothing is sent to the server then.
+     * @throws RedmineAuthenticationException invalid or no API access key is used with the server, which
+     *                                 requires authorization. Check the constructor arguments.
+     * @throws RedmineException
+     */
+    public List<Issue> getIssuesByIds(Collection<Integer> ids) throws RedmineException {
+        List<Integer> uniqueIds = new ArrayList<Integer>(new LinkedHashSet<Integer>(ids));
+        if (uniqueIds.contains(null)) {
+            throw new IllegalArgumentException("Issue IDs can't contain NULL: " + ids);
+        }
+        int chunkSize = objectsPerPage;
+        List<Set<NameValuePair>> queries = new ArrayList<Set<NameValuePair>>();
+        for (int from = 0; from < uniqueIds.size(); from += chunkSize) {
+            List<Integer> chunk = uniqueIds.subList(from, Math.min(from + chunkSize, uniqueIds.size()));
+            Set<NameValuePair> params = new HashSet<NameValuePair>();
+            params.add(new BasicNameValuePair("issue_id", joinIds(chunk)));
+            params.add(new BasicNameValuePair("status_id", "*"));
+            queries.add(params);
+        }
+
+        List<Issue> loaded = new ArrayList<Issue>();
+        Deadline previousDeadline = Deadline.enter(communicator.getCallTimeout());
+        try {
+            if (pageFetchParallelism > 1 && queries.size() > 1) {
+                loaded.addAll(getListsInParallel(Issue.class, queries));
+            } else {
+                for (Set<NameValuePair> params : queries) {
+                    loaded.addAll(getObjectsList(Issue.class, params));
+                }
+            }
+        } finally {
+            Deadline.exit(previousDeadline);
+        }
+
+        Map<Integer, Issue> issuesById = new HashMap<Integer, Issue>();
+        for (Issue issue : loaded) {
+            issuesById.put(issue.getId(), issue);
+        }
+        List<Issue> result = new ArrayList<Issue>(issuesById.size());
+        for (Integer id : uniqueIds) {
+            Issue issue = issuesById.get(id);
+            if (issue != null) {
+                result.add(issue);
+            }
+        }
+        return result;
+    }
+
+    private static String joinIds(List<Integer> ids) {
+        StringBuilder sb = new StringBuilder();
+        for (Integer id : ids) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(id);
+        }
+        return sb.toString();
+    }
+
     // TODO move to a separate utility class or find a replacement in Google Guava
     // TODO add unit tests
     private static String join(String delimToUse, INCLUDE... include) {
@@ -233,9 +411,7 @@ public class RedmineManager {
     public Project getProjectByKey(String projectKey) throws RedmineException {
         URI uri = getURIConfigurator().getUpdateURI(Project.class, projectKey, new BasicNameValuePair("include", "trackers"));
 
-        HttpGet http = new HttpGet(uri);
-        String response = getCommunicator().sendRequest(http);
-        return RedmineXMLParser.parseProjectFromXML(response);
+        return getCommunicator().sendGet(uri, RedmineXMLParser.getObjectParser(Project.class));
     }
 
     /**
@@ -247,6 +423,7 @@ public class RedmineManager {
      */
     public void deleteProject(String projectKey) throws RedmineException {
         deleteObject(Project.class, projectKey);
+        invalidateCachedList(CACHE_KEY_PROJECTS);
     }
 
     public void deleteIssue(Integer id) throws RedmineException {
@@ -265,6 +442,19 @@ public class RedmineManager {
      * @see Issue
      */
     public List<Issue> getIssues(String projectKey, Integer queryId, INCLUDE... include) throws RedmineException {
+        return getObjectsList(Issue.class, getIssuesParams(projectKey, queryId, include));
+    }
+
+    /**
+     * Same as {@link #getIssues(String, Integer, INCLUDE...)}, but the issues are loaded from the server
+     * page by page while iterating, so only one page is kept in memory at a time.
+     * <p>Iterator methods throw {@link RedmineIterationException} if a page can't be loaded.
+     */
+    public Iterable<Issue> iterateIssues(String projectKey, Integer queryId, INCLUDE... include) {
+        return getObjectsIterable(Issue.class, getIssuesParams(projectKey, queryId, include));
+    }
+
+    private static Set<NameValuePair> getIssuesParams(String projectKey, Integer queryId, INCLUDE... include) {
         Set<NameValuePair> params = new HashSet<NameValuePair>();
         if (queryId != null) {
             params.add(new BasicNameValuePair("query_id", String.valueOf(queryId)));
@@ -275,8 +465,7 @@ public class RedmineManager {
         }
         String includeStr = join(",", include);
         params.add(new BasicNameValuePair("include", includeStr));
-
-        return getObjectsList(Issue.class, params);
+        return params;
     }
 
     /**
@@ -326,17 +515,24 @@ public class RedmineManager {
     }
 
     /**
+     * All pages must be loaded in the call timeout.
+     *
      * @return objects list, never NULL
      */
     private <T> List<T> getObjectsList(Class<T> objectClass, Set<NameValuePair> params) throws RedmineException {
-        if (currentMode.equals(MODE.REDMINE_1_1_OR_CHILIPROJECT_1_2)) {
-            return getObjectsListV11(objectClass, params);
-        } else if (currentMode.equals(MODE.REDMINE_1_0)) {
-            return getObjectsListV104(objectClass, params);
-        } else {
-            throw new RuntimeException("unsupported mode:" + currentMode
-                    + ". supported modes are: " + MODE.REDMINE_1_0 + " and "
-                    + MODE.REDMINE_1_1_OR_CHILIPROJECT_1_2);
+        Deadline previousDeadline = Deadline.enter(communicator.getCallTimeout());
+        try {
+            if (currentMode.equals(MODE.REDMINE_1_1_OR_CHILIPROJECT_1_2)) {
+                return getObjectsListV11(objectClass, params);
+            } else if (currentMode.equals(MODE.REDMINE_1_0)) {
+                return getObjectsListV104(objectClass, params);
+            } else {
+                throw new RuntimeException("unsupported mode:" + currentMode
+                        + ". supported modes are: " + MODE.REDMINE_1_0 + " and "
+                        + MODE.REDMINE_1_1_OR_CHILIPROJECT_1_2);
+            }
+        } finally {
+            Deadline.exit(previousDeadline);
         }
     }
 
@@ -346,41 +542,285 @@ public class RedmineManager {
      * @return objects list, never NULL
      */
     private <T> List<T> getObjectsListV11(Class<T> objectClass, Set<NameValuePair> params) throws RedmineException {
+        return getObjectsListV11(objectClass, params, pageFetchParallelism > 1);
+    }
+
+    /**
+     * @param parallelPages whether the pages after the first one can be loaded concurrently.
+     *                      Must be false when called from a worker thread, which would otherwise
+     *                      wait for other tasks in the same pool.
+     */
+    private <T> List<T> getObjectsListV11(Class<T> objectClass, Set<NameValuePair> params, boolean parallelPages)
+            throws RedmineException {
         List<T> objects = new ArrayList<T>();
 
         params.add(new BasicNameValuePair("limit", String.valueOf(objectsPerPage)));
         int offset = 0;
         int totalObjectsFoundOnServer;
         do {
-            List<NameValuePair> paramsList = new ArrayList<NameValuePair>(params);
-            paramsList.add(new BasicNameValuePair("offset", String.valueOf(offset)));
+            ObjectsPage<T> page = getObjectsPage(objectClass, params, offset);
+            totalObjectsFoundOnServer = page.getTotalCount();
 
-            URI uri = getURIConfigurator().getRetrieveObjectsListURI(objectClass, paramsList);
-
-            logger.debug(uri.toString());
-            HttpGet http = new HttpGet(uri);
-
-            String response = getCommunicator().sendRequest(http);
-            totalObjectsFoundOnServer = RedmineXMLParser.parseObjectsTotalCount(response);
-
-            List<T> foundItems = RedmineXMLParser.parseObjectsFromXML(objectClass, response);
+            List<T> foundItems = page.getObjects();
             if (foundItems.size() == 0) {
                 break;
             }
             objects.addAll(foundItems);
 
             offset += foundItems.size();
+            if (parallelPages && offset < totalObjectsFoundOnServer) {
+                // the server may return less objects than requested, so the real page size
+                // is taken from the first response
+                objects.addAll(getPagesInParallel(objectClass, params, offset,
+                        foundItems.size(), totalObjectsFoundOnServer));
+                break;
+            }
         } while (offset < totalObjectsFoundOnServer);
 
         return objects;
     }
 
+    /**
+     * @return iterable, which loads pages from the server only when the objects are requested.
+     * @throws UnsupportedOperationException in Redmine 1.0 mode, which has no "total_count" to page by.
+     */
+    private <T> Iterable<T> getObjectsIterable(final Class<T> objectClass, final Set<NameValuePair> params) {
+        if (!currentMode.equals(MODE.REDMINE_1_1_OR_CHILIPROJECT_1_2)) {
+            throw new UnsupportedOperationException("Iteration requires Redmine 1.1+ or Chiliproject 1.2+, current mode is "
+                    + currentMode);
+        }
+        params.add(new BasicNameValuePair("limit", String.valueOf(objectsPerPage)));
+        return new Iterable<T>() {
+            @Override
+            public Iterator<T> iterator() {
+                return new PagingIterator<T>(objectClass, params);
+            }
+        };
+    }
+
+    /**
+     * @param params query parameters, including "limit"
+     */
+    <T> ObjectsPage<T> getObjectsPage(Class<T> objectClass, Set<NameValuePair> params, int offset)
+            throws RedmineException {
+        List<NameValuePair> paramsList = new ArrayList<NameValuePair>(params);
+        paramsList.add(new BasicNameValuePair("offset", String.valueOf(offset)));
+
+        URI uri = getURIConfigurator().getRetrieveObjectsListURI(objectClass, paramsList);
+
+        logger.debug(uri.toString());
+        return getCommunicator().sendGet(uri, RedmineXMLParser.getObjectsPageParser(objectClass));
+    }
+
+    /**
+     * Loads pages starting from the given offset up to totalCount concurrently.
+     *
+     * @return objects from all pages in the server order
+     */
+    private <T> List<T> getPagesInParallel(final Class<T> objectClass, final Set<NameValuePair> params,
+                                           int firstOffset, int pageSize, int totalCount) throws RedmineException {
+        final Deadline deadline = Deadline.current();
+        List<Future<ObjectsPage<T>>> futures = new ArrayList<Future<ObjectsPage<T>>>();
+        for (int offset = firstOffset; offset < totalCount; offset += pageSize) {
+            final int pageOffset = offset;
+            futures.add(submitTask(new Callable<ObjectsPage<T>>() {
+                @Override
+                public ObjectsPage<T> call() throws RedmineException {
+                    Deadline previousDeadline = Deadline.enter(deadline);
+                    try {
+                        return getObjectsPage(objectClass, params, pageOffset);
+                    } finally {
+                        Deadline.exit(previousDeadline);
+                    }
+                }
+            }));
+        }
+        List<T> objects = new ArrayList<T>();
+        try {
+            for (Future<ObjectsPage<T>> future : futures) {
+                objects.addAll(getResult(future).getObjects());
+            }
+        } finally {
+            // no need to load the rest of pages if one of them failed
+            for (Future<ObjectsPage<T>> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return objects;
+    }
+
+    /**
+     * Runs several independent list queries concurrently.
+     *
+     * @return objects from all queries in the order of queries
+     */
+    private <T> List<T> getListsInParallel(final Class<T> objectClass, List<Set<NameValuePair>> queries)
+            throws RedmineException {
+        final Deadline deadline = Deadline.current();
+        List<Future<List<T>>> futures = new ArrayList<Future<List<T>>>();
+        for (final Set<NameValuePair> params : queries) {
+            futures.add(submitTask(new Callable<List<T>>() {
+                @Override
+                public List<T> call() throws RedmineException {
+                    Deadline previousDeadline = Deadline.enter(deadline);
+                    try {
+                        return getObjectsListV11(objectClass, params, false);
+                    } finally {
+                        Deadline.exit(previousDeadline);
+                    }
+                }
+            }));
+        }
+        List<T> objects = new ArrayList<T>();
+        try {
+            for (Future<List<T>> future : futures) {
+                objects.addAll(getResult(future));
+            }
+        } finally {
+            for (Future<List<T>> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return objects;
+    }
+
+    static <V> V getResult(Future<V> future) throws RedmineException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RedmineException("Interrupted while waiting for the server response", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RedmineException) {
+                throw (RedmineException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RedmineInternalError(cause);
+        }
+    }
+
+    /**
+     * @return executor starting a virtual thread per task or NULL when virtual threads are not used.
+     *         It is shut down by {@link #shutdown()}.
+     */
+    synchronized ExecutorService getVirtualThreadExecutor() {
+        return virtualThreadExecutor;
+    }
+
+    /**
+     * Runs the task on the worker pool. In virtual thread mode every task gets its own virtual
+     * thread, which waits for one of {@link #getPageFetchParallelism()} permits before running it.
+     */
+    private synchronized <V> Future<V> submitTask(final Callable<V> task) {
+        if (virtualThreadExecutor == null) {
+            return getExecutor().submit(task);
+        }
+        final TaskPermits permits = virtualThreadPermits;
+        return virtualThreadExecutor.submit(new Callable<V>() {
+            @Override
+            public V call() throws Exception {
+                permits.acquire();
+                try {
+                    return task.call();
+                } finally {
+                    permits.release();
+                }
+            }
+        });
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = new ThreadPoolExecutor(pageFetchParallelism, pageFetchParallelism,
+                    WORKER_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory("redmine-worker"));
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
+
+    /**
+     * Semaphore, which number of permits can be changed while it's used.
+     */
+    private static final class TaskPermits extends Semaphore {
+        private int permits;
+
+        private TaskPermits(int permits) {
+            super(permits, true);
+            this.permits = permits;
+        }
+
+        private synchronized void setPermits(int newPermits) {
+            if (newPermits > permits) {
+                release(newPermits - permits);
+            } else {
+                reducePermits(permits - newPermits);
+            }
+            permits = newPermits;
+        }
+    }
+
+    /**
+     * Loads the next page only after all objects of the current one were returned. The iterator
+     * does not keep references to the pages it has already returned.
+     */
+    private final class PagingIterator<T> implements Iterator<T> {
+        private final Class<T> objectClass;
+        private final Set<NameValuePair> params;
+        private Iterator<T> currentPage = Collections.<T>emptyList().iterator();
+        private int offset = 0;
+        private boolean lastPageLoaded = false;
+
+        private PagingIterator(Class<T> objectClass, Set<NameValuePair> params) {
+            this.objectClass = objectClass;
+            this.params = params;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!currentPage.hasNext() && !lastPageLoaded) {
+                loadNextPage();
+            }
+            return currentPage.hasNext();
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return currentPage.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Objects can't be deleted through this iterator");
+        }
+
+        private void loadNextPage() {
+            ObjectsPage<T> page;
+            try {
+                page = getObjectsPage(objectClass, params, offset);
+            } catch (RedmineException e) {
+                throw new RedmineIterationException(e);
+            }
+            offset += page.getObjects().size();
+            lastPageLoaded = page.getObjects().isEmpty() || offset >= page.getTotalCount();
+            currentPage = page.getObjects().iterator();
+        }
+    }
+
     private <T> T getObject(Class<T> objectClass, Integer id, NameValuePair... params)
             throws RedmineException {
 
         URI uri = getURIConfigurator().getRetrieveObjectURI(objectClass, id, Arrays.asList(params));
-        String body = getCommunicator().sendGet(uri);
-        return RedmineXMLParser.parseObjectFromXML(objectClass, body);
+        return getCommunicator().sendGet(uri, RedmineXMLParser.getObjectParser(objectClass));
     }
 
     // TODO is there a way to get rid of the 1st parameter and use generics?
@@ -414,6 +854,7 @@ public class RedmineManager {
         setEntity(http, xml);
 
         getCommunicator().sendRequest(http);
+        invalidateCachedListsOf(obj);
     }
 
     private void validate(Identifiable obj) {
@@ -465,6 +906,7 @@ public class RedmineManager {
         setEntity(httpPost, createProjectXML);
 
         String response = getCommunicator().sendRequest(httpPost);
+        invalidateCachedList(CACHE_KEY_PROJECTS);
         return RedmineXMLParser.parseProjectFromXML(response);
     }
 
@@ -479,7 +921,9 @@ public class RedmineManager {
 
     /**
      * This number of objects (tasks, projects, users) will be requested from Redmine server in 1 request.
+     * @deprecated use {@link Builder#objectsPerPage(int)}.
      */
+    @Deprecated
     public void setObjectsPerPage(int pageSize) {
         if (pageSize <= 0) {
             throw new IllegalArgumentException("Page size must be >= 0. You provided: " + pageSize);
@@ -487,6 +931,47 @@ public class RedmineManager {
         this.objectsPerPage = pageSize;
     }
 
+    public int getPageFetchParallelism() {
+        return pageFetchParallelism;
+    }
+
+    /**
+     * @return whether parallel operations run on virtual threads, see {@link Builder#virtualThreads(boolean)}.
+     */
+    public synchronized boolean isUsingVirtualThreads() {
+        return virtualThreadExecutor != null;
+    }
+
+    /**
+     * Maximum number of pages loaded from the server at the same time when a list of objects
+     * spans several pages. The first page is always loaded alone because it tells the total
+     * number of objects; the remaining pages are then requested concurrently and merged in order.
+     * The same limit applies to {@link #getIssuesByIds(Collection)} queries and to
+     * {@link #deleteIssueRelations(Issue)} requests.
+     * <p>Default is {@value #DEFAULT_PAGE_FETCH_PARALLELISM}, which means pages are loaded one by one.
+     * Consider raising {@link #setMaxConnectionsPerHost(int)} as well when using a large value.
+     * @deprecated use {@link Builder#pageFetchParallelism(int)}.
+     */
+    @Deprecated
+    public synchronized void setPageFetchParallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be > 0. You provided: " + parallelism);
+        }
+        this.pageFetchParallelism = parallelism;
+        if (virtualThreadPermits != null) {
+            virtualThreadPermits.setPermits(parallelism);
+        }
+        if (executor != null) {
+            if (parallelism > executor.getMaximumPoolSize()) {
+                executor.setMaximumPoolSize(parallelism);
+                executor.setCorePoolSize(parallelism);
+            } else {
+                executor.setCorePoolSize(parallelism);
+                executor.setMaximumPoolSize(parallelism);
+            }
+        }
+    }
+
     /**
      * Load the list of users on the server.
      * <p><b>This operation requires "Redmine Administrator" permission.</b>
@@ -501,6 +986,14 @@ public class RedmineManager {
         return getObjectsList(User.class, new HashSet<NameValuePair>());
     }
 
+    /**
+     * Same as {@link #getUsers()}, but the users are loaded from the server page by page while iterating.
+     * <p>Iterator methods throw {@link RedmineIterationException} if a page can't be loaded.
+     */
+    public Iterable<User> iterateUsers() {
+        return getObjectsIterable(User.class, new HashSet<NameValuePair>());
+    }
+
     public User getUserById(Integer userId) throws RedmineException {
         return getObject(User.class, userId);
     }
@@ -510,9 +1003,7 @@ public class RedmineManager {
      */
     public User getCurrentUser() throws RedmineException {
         URI uri = getURIConfigurator().createURI("users/current.xml");
-        HttpGet http = new HttpGet(uri);
-        String response = getCommunicator().sendRequest(http);
-        return RedmineXMLParser.parseUserFromXML(response);
+        return getCommunicator().sendGet(uri, RedmineXMLParser.getObjectParser(User.class));
     }
 
     public User createUser(User user) throws RedmineException {
@@ -534,6 +1025,15 @@ public class RedmineManager {
         return getObjectsList(TimeEntry.class, new HashSet<NameValuePair>());
     }
 
+    /**
+     * Same as {@link #getTimeEntries()}, but the time entries are loaded from the server page by page
+     * while iterating.
+     * <p>Iterator methods throw {@link RedmineIterationException} if a page can't be loaded.
+     */
+    public Iterable<TimeEntry> iterateTimeEntries() {
+        return getObjectsIterable(TimeEntry.class, new HashSet<NameValuePair>());
+    }
+
     /**
      * @param id the database Id of the TimeEntry record
      */
@@ -609,11 +1109,44 @@ public class RedmineManager {
     }
 
     /**
-     * Delete all issue's relations
+     * Delete all issue's relations. The relations are deleted in parallel when
+     * {@link #setPageFetchParallelism(int)} is greater than 1. After the first failure the deletes
+     * which have not started yet are cancelled, but up to {@link #getPageFetchParallelism()} others,
+     * including ones following the failed relation, may already have been sent and completed.
+     * Deleted sequentially, the relations following the failed one are kept.
      */
     public void deleteIssueRelations(Issue redmineIssue) throws RedmineException {
-        for (IssueRelation relation : redmineIssue.getRelations()) {
-            deleteRelation(relation.getId());
+        List<IssueRelation> relations = redmineIssue.getRelations();
+        if (pageFetchParallelism <= 1 || relations.size() <= 1) {
+            for (IssueRelation relation : relations) {
+                deleteRelation(relation.getId());
+            }
+            return;
+        }
+        final Deadline deadline = Deadline.current();
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for (final IssueRelation relation : relations) {
+            futures.add(submitTask(new Callable<Void>() {
+                @Override
+                public Void call() throws RedmineException {
+                    Deadline previousDeadline = Deadline.enter(deadline);
+                    try {
+                        deleteRelation(relation.getId());
+                        return null;
+                    } finally {
+                        Deadline.exit(previousDeadline);
+                    }
+                }
+            }));
+        }
+        try {
+            for (Future<Void> future : futures) {
+                getResult(future);
+            }
+        } finally {
+            for (Future<Void> future : futures) {
+                future.cancel(true);
+            }
         }
     }
 
@@ -636,7 +1169,11 @@ public class RedmineManager {
      * @throws NotFoundException       thrown in case an object can not be found
      */
     public List<IssueStatus> getStatuses() throws RedmineException {
-        return getObjectsList(IssueStatus.class, new HashSet<NameValuePair>());
+        List<IssueStatus> cached = getCachedList(CACHE_KEY_STATUSES);
+        if (cached != null) {
+            return cached;
+        }
+        return putListToCache(CACHE_KEY_STATUSES, getObjectsList(IssueStatus.class, new HashSet<NameValuePair>()));
     }
 
     /**
@@ -664,6 +1201,7 @@ public class RedmineManager {
         setEntity(httpPost, createVersionXML);
         String response = getCommunicator().sendRequest(httpPost);
         logger.debug(response);
+        invalidateCachedList(CACHE_KEY_VERSIONS + projectID);
         return RedmineXMLParser.parseVersionFromXML(response);
     }
 
@@ -677,6 +1215,7 @@ public class RedmineManager {
      */
     public void deleteVersion(Version version) throws RedmineException {
         deleteObject(Version.class, Integer.toString(version.getId()));
+        invalidateCachedListsOf(version);
     }
 
     /**
@@ -689,18 +1228,21 @@ public class RedmineManager {
      * @throws NotFoundException       thrown in case an object can not be found
      */
     public List<Version> getVersions(int projectID) throws RedmineException {
+        String cacheKey = CACHE_KEY_VERSIONS + projectID;
+        List<Version> cached = getCachedList(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
         URI uri = getURIConfigurator().createURI("projects/" + projectID + "/versions.xml", new BasicNameValuePair("include", "projects"));
-        HttpGet http = new HttpGet(uri);
-        String response = getCommunicator().sendRequest(http);
-        return RedmineXMLParser.parseVersionsFromXML(response);
+        return putListToCache(cacheKey,
+                new ArrayList<Version>(getCommunicator().sendGet(uri,
+                        RedmineXMLParser.getObjectsPageParser(Version.class)).getObjects()));
     }
 
     // TODO add test
     public Version getVersionById(int versionId) throws RedmineException {
         URI uri = getURIConfigurator().createURI("versions/" + versionId + ".xml");
-        HttpGet http = new HttpGet(uri);
-        String response = getCommunicator().sendRequest(http);
-        return RedmineXMLParser.parseVersionFromXML(response);
+        return getCommunicator().sendGet(uri, RedmineXMLParser.getObjectParser(Version.class));
     }
 
     /**
@@ -713,10 +1255,15 @@ public class RedmineManager {
      * @throws NotFoundException       thrown in case an object can not be found
      */
     public List<IssueCategory> getCategories(int projectID) throws RedmineException {
+        String cacheKey = CACHE_KEY_CATEGORIES + projectID;
+        List<IssueCategory> cached = getCachedList(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
         URI uri = getURIConfigurator().createURI("projects/" + projectID + "/issue_categories.xml");
         HttpGet http = new HttpGet(uri);
         String response = getCommunicator().sendRequest(http);
-        return RedmineXMLParser.parseIssueCategoriesFromXML(response);
+        return putListToCache(cacheKey, RedmineXMLParser.parseIssueCategoriesFromXML(response));
     }
 
     /**
@@ -736,7 +1283,9 @@ public class RedmineManager {
             throw new IllegalArgumentException("IssueCategory must contain a project");
         }
         URI uri = getURIConfigurator().getCreateURIIssueCategory(category.getProject().getId());
-        return createObject(IssueCategory.class, category, uri);
+        IssueCategory created = createObject(IssueCategory.class, category, uri);
+        invalidateCachedListsOf(category);
+        return created;
     }
 
     /**
@@ -749,6 +1298,7 @@ public class RedmineManager {
      */
     public void deleteCategory(IssueCategory category) throws RedmineException {
         deleteObject(IssueCategory.class, Integer.toString(category.getId()));
+        invalidateCachedListsOf(category);
     }
 
     /**
@@ -758,7 +1308,93 @@ public class RedmineManager {
      * @throws NotFoundException       thrown in case an object can not be found
      */
     public List<Tracker> getTrackers() throws RedmineException {
-        return getObjectsList(Tracker.class, new HashSet<NameValuePair>());
+        List<Tracker> cached = getCachedList(CACHE_KEY_TRACKERS);
+        if (cached != null) {
+            return cached;
+        }
+        return putListToCache(CACHE_KEY_TRACKERS, getObjectsList(Tracker.class, new HashSet<NameValuePair>()));
+    }
+
+    /**
+     * Enables caching of the lists returned by {@link #getProjects()}, {@link #getStatuses()},
+     * {@link #getTrackers()}, {@link #getVersions(int)} and {@link #getCategories(int)}.
+     * The cached lists are invalidated when the projects, versions or categories are changed
+     * through this manager. Changes made by other clients are seen only after the cached
+     * values expire or {@link #invalidateReferenceData()} is called.
+     * <p>The cached objects are shared between callers and must not be modified.
+     *
+     * @param cache the cache or NULL to disable caching (default).
+     * @see ExpiringReferenceDataCache
+     * @deprecated use {@link Builder#referenceDataCache(ReferenceDataCache)}.
+     */
+    @Deprecated
+    public void setReferenceDataCache(ReferenceDataCache cache) {
+        this.referenceDataCache = cache;
+    }
+
+    public ReferenceDataCache getReferenceDataCache() {
+        return referenceDataCache;
+    }
+
+    /**
+     * Removes all lists from the reference data cache, if one is set, including the lists
+     * of other managers sharing the cache.
+     */
+    public void invalidateReferenceData() {
+        ReferenceDataCache cache = referenceDataCache;
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * @return copy of the cached list or NULL if there's no cache or the list is not cached.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> List<T> getCachedList(String key) {
+        ReferenceDataCache cache = referenceDataCache;
+        if (cache == null) {
+            return null;
+        }
+        List<T> cached = (List<T>) cache.get(cacheKeyPrefix + key);
+        return cached == null ? null : new ArrayList<T>(cached);
+    }
+
+    private <T> List<T> putListToCache(String key, List<T> list) {
+        ReferenceDataCache cache = referenceDataCache;
+        if (cache != null) {
+            cache.put(cacheKeyPrefix + key, new ArrayList<T>(list));
+        }
+        return list;
+    }
+
+    private void invalidateCachedList(String key) {
+        ReferenceDataCache cache = referenceDataCache;
+        if (cache != null) {
+            cache.invalidate(cacheKeyPrefix + key);
+        }
+    }
+
+    private void invalidateCachedListsOf(Object changed) {
+        if (changed instanceof Project) {
+            invalidateCachedList(CACHE_KEY_PROJECTS);
+        } else if (changed instanceof Version) {
+            invalidateProjectList(CACHE_KEY_VERSIONS, ((Version) changed).getProject());
+        } else if (changed instanceof IssueCategory) {
+            invalidateProjectList(CACHE_KEY_CATEGORIES, ((IssueCategory) changed).getProject());
+        }
+    }
+
+    /**
+     * The object may come without its project (e.g. when only the ID is known),
+     * then lists of all projects are invalidated.
+     */
+    private void invalidateProjectList(String keyPrefix, Project project) {
+        if (project != null && project.getId() != null) {
+            invalidateCachedList(keyPrefix + project.getId());
+        } else {
+            invalidateReferenceData();
+        }
     }
 
     /**
@@ -776,36 +1412,477 @@ public class RedmineManager {
 
     /**
      * Downloads the content of an {@link org.redmine.ta.beans.Attachment} from the Redmine server.
+     * The whole content is kept in memory, use {@link #downloadAttachmentContent(Attachment, File)}
+     * or {@link #downloadAttachmentContent(Attachment, OutputStream)} for large files.
      *
      * @param issueAttachment the {@link org.redmine.ta.beans.Attachment}
      * @return the content of the attachment as a byte[] array
      * @throws RedmineCommunicationException thrown in case the download fails
+     * @throws RedmineAuthenticationException the attachment is not visible to the current user
+     */
+    public byte[] downloadAttachmentContent(Attachment issueAttachment) throws RedmineException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        downloadAttachmentContent(issueAttachment, baos);
+        return baos.toByteArray();
+    }
+
+    /**
+     * Copies the content of an {@link org.redmine.ta.beans.Attachment} to the stream while it is
+     * being downloaded. The stream is not closed.
+     *
+     * @return number of bytes written
+     * @throws RedmineCommunicationException thrown in case the download fails
+     */
+    public long downloadAttachmentContent(Attachment issueAttachment, OutputStream out) throws RedmineException {
+        return getCommunicator().download(new HttpGet(getContentURI(issueAttachment)), out);
+    }
+
+    /**
+     * Saves the content of an {@link org.redmine.ta.beans.Attachment} to the file. An existing file
+     * is overwritten. If the download fails, the partially written file is deleted.
+     *
+     * @return number of bytes written
+     * @throws RedmineCommunicationException thrown in case the download or writing to the file fails
      */
-    public byte[] downloadAttachmentContent(Attachment issueAttachment) throws RedmineCommunicationException {
+    public long downloadAttachmentContent(Attachment issueAttachment, File file) throws RedmineException {
+        HttpGet request = new HttpGet(getContentURI(issueAttachment));
+        boolean success = false;
         try {
-            final URL url = new URL(issueAttachment.getContentURL());
-            final InputStream is = url.openStream();
+            FileOutputStream out = new FileOutputStream(file);
             try {
-                final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                final byte[] buffer = new byte[65536];
-                int read;
-                while ((read = is.read(buffer)) != -1)
-                    baos.write(buffer, 0, read);
-                return baos.toByteArray();
+                long size = getCommunicator().download(request, out.getChannel());
+                success = true;
+                return size;
             } finally {
-                is.close();
+                out.close();
+                if (!success) {
+                    file.delete();
+                }
             }
         } catch (IOException e) {
             throw new RedmineTransportException(e);
         }
     }
 
-    public void setLogin(String login) {
+    /**
+     * Continues an interrupted download: only the bytes missing in the file are requested
+     * with a "Range" header. If the server does not support ranges, the whole content is
+     * downloaded again. Nothing is requested if the file already has
+     * {@link Attachment#getFileSize()} bytes. The file is kept if the download fails, so it
+     * can be resumed again later.
+     *
+     * @return length of the file after the download
+     * @throws RedmineCommunicationException thrown in case the download or writing to the file fails
+     * @throws RedmineFormatException        the length of the file differs from {@link Attachment#getFileSize()}
+     */
+    public long resumeAttachmentDownload(Attachment issueAttachment, File file) throws RedmineException {
+        long existing = file.length();
+        long size = issueAttachment.getFileSize();
+        if (size > 0 && existing >= size) {
+            return existing;
+        }
+        HttpGet request = new HttpGet(getContentURI(issueAttachment));
+        try {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                long end = getCommunicator().downloadRange(request, raf.getChannel(), existing, -1, true);
+                raf.setLength(end);
+                if (size > 0 && end != size) {
+                    throw new RedmineFormatException("Downloaded file has " + end + " bytes, expected " + size);
+                }
+                return end;
+            } finally {
+                raf.close();
+            }
+        } catch (IOException e) {
+            throw new RedmineTransportException(e);
+        }
+    }
+
+    /**
+     * Downloads the attachment with several concurrent "Range" requests. The file is allocated
+     * with {@link Attachment#getFileSize()} bytes and each range is written to its place.
+     * The content is loaded with one request if the size is unknown or the server does not
+     * support ranges. If the download fails, the file is deleted.
+     * <p>The number of ranges is limited by {@link #setMaxConnectionsPerHost(int)}, so that each
+     * of them gets a connection without waiting for the others.
+     *
+     * @param parts number of ranges to request concurrently.
+     * @return number of bytes written
+     * @throws RedmineCommunicationException thrown in case the download or writing to the file fails
+     */
+    public long downloadAttachmentContent(Attachment issueAttachment, File file, int parts) throws RedmineException {
+        long size = issueAttachment.getFileSize();
+        parts = Math.min(parts, getCommunicator().getMaxConnectionsPerRoute());
+        if (parts <= 1 || size < parts) {
+            return downloadAttachmentContent(issueAttachment, file);
+        }
+        URI uri = getContentURI(issueAttachment);
+        boolean success = false;
+        try {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.setLength(size);
+                long length = downloadRanges(uri, raf.getChannel(), size, parts);
+                raf.setLength(length);
+                success = true;
+                return length;
+            } finally {
+                raf.close();
+                if (!success) {
+                    file.delete();
+                }
+            }
+        } catch (IOException e) {
+            throw new RedmineTransportException(e);
+        }
+    }
+
+    /**
+     * The first range is loaded in the current thread to check whether the server supports
+     * ranges at all, the rest are loaded concurrently.
+     *
+     * @return length of the downloaded content
+     */
+    private long downloadRanges(final URI uri, final FileChannel channel, long size, int parts)
+            throws RedmineException {
+        long partSize = (size + parts - 1) / parts;
+        long firstEnd = getCommunicator().downloadRange(new HttpGet(uri), channel, 0, partSize - 1, true);
+        if (firstEnd > partSize) {
+            // the server ignored the range and sent the whole content
+            return firstEnd;
+        }
+        checkRangeLoaded(firstEnd, partSize);
+
+        ExecutorService pool = isUsingVirtualThreads() ? VirtualThreads.newThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(parts - 1, new DaemonThreadFactory("redmine-download"));
+        List<Future<Long>> futures = new ArrayList<Future<Long>>();
+        try {
+            for (long first = partSize; first < size; first += partSize) {
+                final long firstByte = first;
+                final long lastByte = Math.min(size, first + partSize) - 1;
+                futures.add(pool.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws RedmineException {
+                        long end = getCommunicator().downloadRange(new HttpGet(uri), channel, firstByte, lastByte, false);
+                        checkRangeLoaded(end, lastByte + 1);
+                        return end;
+                    }
+                }));
+            }
+            for (Future<Long> future : futures) {
+                getResult(future);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return size;
+    }
+
+    private static void checkRangeLoaded(long end, long expectedEnd) throws RedmineException {
+        if (end != expectedEnd) {
+            throw new RedmineFormatException("Range is incomplete: got bytes up to " + end
+                    + ", expected up to " + expectedEnd);
+        }
+    }
+
+    /**
+     * Uploads the file content to the server without loading it into memory. The returned attachment
+     * has a token and is attached to an issue by adding it to {@link Issue#getAttachments()} before
+     * {@link #createIssue(String, Issue)} or {@link #update(Identifiable)} call.
+     * <p>Requires Redmine 1.4+.
+     *
+     * @param fileName    name of the file as it will be shown in Redmine
+     * @param contentType MIME type of the file, e.g. "text/plain". Can be NULL.
+     * @throws RedmineProcessingException the file is too large for the server
+     */
+    public Attachment uploadAttachment(String fileName, String contentType, File file) throws RedmineException {
+        FileEntity entity = new FileEntity(file, UPLOAD_CONTENT_TYPE);
+        return uploadAttachment(fileName, contentType, entity);
+    }
+
+    /**
+     * Same as {@link #uploadAttachment(String, String, File)}, but the content is read from the stream.
+     * The stream is read till the end, but is not closed.
+     *
+     * @param length content length or -1 if unknown. Content of unknown length is sent in chunks.
+     */
+    public Attachment uploadAttachment(String fileName, String contentType, InputStream content, long length)
+            throws RedmineException {
+        InputStreamEntity entity = new InputStreamEntity(content, length);
+        entity.setContentType(UPLOAD_CONTENT_TYPE);
+        entity.setChunked(length < 0);
+        return uploadAttachment(fileName, contentType, entity);
+    }
+
+    private Attachment uploadAttachment(String fileName, String contentType, AbstractHttpEntity entity)
+            throws RedmineException {
+        URI uri = getURIConfigurator().createURI("uploads.xml");
+        HttpPost http = new HttpPost(uri);
+        http.setEntity(entity);
+        String response = getCommunicator().sendRequest(http);
+
+        Attachment attachment = new Attachment();
+        attachment.setToken(RedmineXMLParser.parseUploadToken(response));
+        attachment.setFileName(fileName);
+        attachment.setContentType(contentType);
+        if (entity.getContentLength() >= 0) {
+            attachment.setFileSize(entity.getContentLength());
+        }
+        return attachment;
+    }
+
+    /**
+     * Credentials are added only when the content is on the configured server, not on another host.
+     */
+    private URI getContentURI(Attachment attachment) {
+        if (attachment.getContentURL() == null) {
+            throw new IllegalArgumentException("Attachment has no content URL: " + attachment);
+        }
+        return getURIConfigurator().addAPIKey(attachment.getContentURL());
+    }
+
+    /**
+     * @deprecated use {@link Builder#credentials(String, String)}.
+     */
+    @Deprecated
+    public synchronized void setLogin(String login) {
         this.login = login;
+        updateCredentials();
     }
 
-    public void setPassword(String password) {
+    /**
+     * @deprecated use {@link Builder#credentials(String, String)}.
+     */
+    @Deprecated
+    public synchronized void setPassword(String password) {
         this.password = password;
+        updateCredentials();
+    }
+
+    private synchronized void updateCredentials() {
+        if (useBasicAuth) {
+            communicator.setCredentials(login, password);
+            setCacheUser(login == null ? null : "login:" + login);
+        }
+    }
+
+    private void setCacheUser(String user) {
+        cacheKeyPrefix = configurator.getServerURI() + '|' + (user == null ? "anonymous" : user) + '|';
+    }
+
+    /**
+     * The key itself is not kept in cache keys, which cache implementations may show.
+     */
+    private static String getApiKeyUser(String apiAccessKey) {
+        if (apiAccessKey == null) {
+            return null;
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(apiAccessKey.getBytes("UTF-8"));
+            StringBuilder hex = new StringBuilder("key:");
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RedmineInternalError(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new RedmineInternalError(e);
+        }
+    }
+
+    /**
+     * Maximum number of simultaneously open connections to Redmine servers. Default is
+     * {@value Communicator#DEFAULT_MAX_CONNECTIONS}.
+     * @deprecated use {@link Builder#maxConnections(int)}.
+     */
+    @Deprecated
+    public void setMaxConnections(int maxConnections) {
+        communicator.setMaxConnections(maxConnections);
+    }
+
+    /**
+     * Maximum number of simultaneously open connections to one Redmine host. Default is
+     * {@value Communicator#DEFAULT_MAX_CONNECTIONS_PER_ROUTE}.
+     * @deprecated use {@link Builder#maxConnectionsPerHost(int)}.
+     */
+    @Deprecated
+    public void setMaxConnectionsPerHost(int maxConnections) {
+        communicator.setMaxConnectionsPerRoute(maxConnections);
+    }
+
+    /**
+     * Pooled connections, which were not used for this time, are closed.
+     *
+     * @param idleTimeoutMillis default is {@value Communicator#DEFAULT_IDLE_CONNECTION_TIMEOUT_MILLIS} ms.
+     * @deprecated use {@link Builder#idleConnectionTimeout(long)}.
+     */
+    @Deprecated
+    public void setIdleConnectionTimeout(long idleTimeoutMillis) {
+        communicator.setIdleConnectionTimeout(idleTimeoutMillis);
+    }
+
+    /**
+     * @param connectTimeoutMillis time to wait for a new connection to the server, 0 for no limit.
+     *                             Default is {@value Communicator#DEFAULT_CONNECT_TIMEOUT_MILLIS} ms.
+     * @deprecated use {@link Builder#connectTimeout(long)}.
+     */
+    @Deprecated
+    public void setConnectTimeout(long connectTimeoutMillis) {
+        communicator.setConnectTimeout(connectTimeoutMillis);
+    }
+
+    /**
+     * @param readTimeoutMillis time to wait for the next data from the server, 0 for no limit.
+     *                          Default is {@value Communicator#DEFAULT_READ_TIMEOUT_MILLIS} ms.
+     * @deprecated use {@link Builder#readTimeout(long)}.
+     */
+    @Deprecated
+    public void setReadTimeout(long readTimeoutMillis) {
+        communicator.setReadTimeout(readTimeoutMillis);
+    }
+
+    /**
+     * @param connectionPoolTimeoutMillis time to wait for a free connection when all
+     *                                    {@link #setMaxConnections(int) pooled connections} are busy, 0 for no limit.
+     *                                    Default is {@value Communicator#DEFAULT_CONNECTION_POOL_TIMEOUT_MILLIS} ms.
+     * @deprecated use {@link Builder#connectionPoolTimeout(long)}.
+     */
+    @Deprecated
+    public void setConnectionPoolTimeout(long connectionPoolTimeoutMillis) {
+        communicator.setConnectionPoolTimeout(connectionPoolTimeoutMillis);
+    }
+
+    /**
+     * Limits the time of every call of this manager, including all pages of a list and all retries.
+     * Each request gets only the time left, and the call fails with {@link RedmineTimeoutException}
+     * when it is over.
+     *
+     * @param callTimeoutMillis the time limit, 0 for no limit (default).
+     * @deprecated use {@link Builder#callTimeout(long)}.
+     */
+    @Deprecated
+    public void setCallTimeout(long callTimeoutMillis) {
+        communicator.setCallTimeout(callTimeoutMillis);
+    }
+
+    /**
+     * How long to keep a connection open for reuse if the server response does not have
+     * a "Keep-Alive" header.
+     *
+     * @param keepAliveMillis default is {@value Communicator#DEFAULT_KEEP_ALIVE_MILLIS} ms.
+     * @deprecated use {@link Builder#keepAliveDuration(long)}.
+     */
+    @Deprecated
+    public void setKeepAliveDuration(long keepAliveMillis) {
+        communicator.setKeepAliveDuration(keepAliveMillis);
+    }
+
+    /**
+     * Enables conditional GET requests. Responses of list pages and single objects are kept
+     * along with their "ETag" / "Last-Modified" values. The next request for the same URI carries
+     * "If-None-Match" / "If-Modified-Since" headers, and when the server answers "304 Not Modified"
+     * the kept response is parsed without downloading it again. Every call gets new objects, which
+     * can be changed freely.
+     *
+     * @param maxEntries number of responses to keep, 0 disables the cache (default).
+     * @deprecated use {@link Builder#responseCacheSize(int)}.
+     */
+    @Deprecated
+    public void setResponseCacheSize(int maxEntries) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("Cache size can't be negative: " + maxEntries);
+        }
+        communicator.setResponseCache(maxEntries == 0 ? null : new ResponseCache(maxEntries));
+    }
+
+    /**
+     * Sets the receiver of statistics of every request sent by this manager.
+     *
+     * @param metrics the metrics or NULL to disable collecting statistics (default).
+     * @see InMemoryRedmineMetrics
+     * @deprecated use {@link Builder#metrics(RedmineMetrics)}.
+     */
+    @Deprecated
+    public void setMetrics(RedmineMetrics metrics) {
+        communicator.setMetrics(metrics);
+    }
+
+    /**
+     * Sets limits for the rate and the number of concurrent requests sent to the server, e.g. to keep
+     * parallel page loading from overloading it. The same limiter can be set on several managers to
+     * limit all their requests to the same server together.
+     *
+     * @param requestLimiter the limiter or NULL for no limits (default).
+     * @deprecated use {@link Builder#requestLimiter(RequestLimiter)}.
+     */
+    @Deprecated
+    public void setRequestLimiter(RequestLimiter requestLimiter) {
+        communicator.setRequestLimiter(requestLimiter);
+    }
+
+    /**
+     * Sets the circuit breaker which stops sending requests while the server is failing, so calls fail
+     * with {@link RedmineCircuitOpenException} at once instead of waiting for timeouts.
+     *
+     * @param circuitBreaker the breaker or NULL for none (default).
+     * @deprecated use {@link Builder#circuitBreaker(CircuitBreaker)}.
+     */
+    @Deprecated
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        communicator.setCircuitBreaker(circuitBreaker);
+    }
+
+    /**
+     * @return the circuit breaker state for this manager's server, e.g. for health checks.
+     *         {@link CircuitBreaker.State#CLOSED} if there's no breaker.
+     */
+    public CircuitBreaker.State getCircuitBreakerState() {
+        return communicator.getCircuitBreakerState(getURIConfigurator().createURI(""));
+    }
+
+    /**
+     * Sets how failed idempotent requests (GET, PUT, DELETE) are repeated. Each request is retried
+     * separately, e.g. a failed page of {@link #getIssues(String, Integer, INCLUDE...)} is loaded again
+     * without starting the whole list from the beginning.
+     *
+     * @param retryPolicy the policy or NULL for {@link RetryPolicy#NONE} (default).
+     * @deprecated use {@link Builder#retryPolicy(RetryPolicy)}.
+     */
+    @Deprecated
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        communicator.setRetryPolicy(retryPolicy);
+    }
+
+    /**
+     * Adds the interceptor to be called around every request sent by this manager.
+     * Can be called at any time, requests already sent are not affected.
+     */
+    public void addRequestInterceptor(RequestInterceptor interceptor) {
+        if (interceptor == null) {
+            throw new IllegalArgumentException("Interceptor can't be NULL");
+        }
+        communicator.addInterceptor(interceptor);
+    }
+
+    public void removeRequestInterceptor(RequestInterceptor interceptor) {
+        communicator.removeInterceptor(interceptor);
+    }
+
+    /**
+     * Releases all connections held by this manager. The manager can't be used after this call.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+            if (virtualThreadExecutor != null) {
+                virtualThreadExecutor.shutdownNow();
+            }
+        }
+        communicator.shutdown();
     }
 
     /**
@@ -826,10 +1903,257 @@ public class RedmineManager {
     }
     
     private Communicator getCommunicator() {
-        Communicator communicator = new Communicator();
-        if (useBasicAuth) {
-            communicator.setCredentials(login, password);
-        }
         return communicator;
     }
-}
\ No newline at end of file
+
+    /**
+     * Creates a configured {@link RedmineManager}. The builder is not thread-safe, the built
+     * manager is. Authentication data is encoded once when the manager is built, not for every request.
+     * <pre>
+     * {@code
+     *   RedmineManager mgr = new RedmineManager.Builder("http://redmine.example.com")
+     *           .apiAccessKey(key)
+     *           .pageFetchParallelism(4)
+     *           .callTimeout(60000)
+     *           .build();
+     * }
+     * </pre>
+     */
+    public static final class Builder {
+        private final String uri;
+        private String apiAccessKey;
+        private boolean apiKeyInHeader;
+        private String login;
+        private String password;
+        private int objectsPerPage = DEFAULT_OBJECTS_PER_PAGE;
+        private int pageFetchParallelism = DEFAULT_PAGE_FETCH_PARALLELISM;
+        private boolean virtualThreads;
+        private int maxConnections = Communicator.DEFAULT_MAX_CONNECTIONS;
+        private int maxConnectionsPerHost = Communicator.DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+        private long idleConnectionTimeoutMillis = Communicator.DEFAULT_IDLE_CONNECTION_TIMEOUT_MILLIS;
+        private long keepAliveMillis = Communicator.DEFAULT_KEEP_ALIVE_MILLIS;
+        private long connectTimeoutMillis = Communicator.DEFAULT_CONNECT_TIMEOUT_MILLIS;
+        private long readTimeoutMillis = Communicator.DEFAULT_READ_TIMEOUT_MILLIS;
+        private long connectionPoolTimeoutMillis = Communicator.DEFAULT_CONNECTION_POOL_TIMEOUT_MILLIS;
+        private long callTimeoutMillis;
+        private int responseCacheSize;
+        private ReferenceDataCache referenceDataCache;
+        private RedmineMetrics metrics;
+        private RetryPolicy retryPolicy;
+        private RequestLimiter requestLimiter;
+        private CircuitBreaker circuitBreaker;
+        private final List<RequestInterceptor> interceptors = new ArrayList<RequestInterceptor>();
+
+        /**
+         * @param uri complete Redmine server web URI, including protocol and port number.
+         *            Example: http://demo.redmine.org:8080
+         */
+        public Builder(String uri) {
+            if (uri == null || uri.isEmpty()) {
+                throw new IllegalArgumentException("The host parameter is NULL or empty");
+            }
+            this.uri = uri;
+        }
+
+        /**
+         * Sends the key as "key" parameter of every URI. Replaces other authentication set on this builder.
+         *
+         * @param apiAccessKey Redmine API access key. It is shown on "My Account" / "API access key" webpage.
+         */
+        public Builder apiAccessKey(String apiAccessKey) {
+            setAuthentication(apiAccessKey, false, null, null);
+            return this;
+        }
+
+        /**
+         * Sends the key in "X-Redmine-API-Key" header, so it does not appear in URIs and logs.
+         * Replaces other authentication set on this builder.
+         *
+         * @param apiAccessKey Redmine API access key. It is shown on "My Account" / "API access key" webpage.
+         */
+        public Builder apiAccessKeyInHeader(String apiAccessKey) {
+            setAuthentication(apiAccessKey, true, null, null);
+            return this;
+        }
+
+        /**
+         * Uses "Basic" authentication with the login and the password. Replaces other authentication
+         * set on this builder.
+         */
+        public Builder credentials(String login, String password) {
+            setAuthentication(null, false, login, password);
+            return this;
+        }
+
+        private void setAuthentication(String apiAccessKey, boolean apiKeyInHeader, String login, String password) {
+            this.apiAccessKey = apiAccessKey;
+            this.apiKeyInHeader = apiKeyInHeader;
+            this.login = login;
+            this.password = password;
+        }
+
+        /**
+         * @param objectsPerPage number of objects requested from the server in one request, default is
+         *                       {@value RedmineManager#DEFAULT_OBJECTS_PER_PAGE}.
+         */
+        public Builder objectsPerPage(int objectsPerPage) {
+            if (objectsPerPage <= 0) {
+                throw new IllegalArgumentException("Page size must be >= 0. You provided: " + objectsPerPage);
+            }
+            this.objectsPerPage = objectsPerPage;
+            return this;
+        }
+
+        /**
+         * @param pageFetchParallelism maximum number of pages of one list loaded at the same time, default is
+         *                             {@value RedmineManager#DEFAULT_PAGE_FETCH_PARALLELISM}.
+         */
+        public Builder pageFetchParallelism(int pageFetchParallelism) {
+            if (pageFetchParallelism <= 0) {
+                throw new IllegalArgumentException("Parallelism must be > 0. You provided: " + pageFetchParallelism);
+            }
+            this.pageFetchParallelism = pageFetchParallelism;
+            return this;
+        }
+
+        /**
+         * @param virtualThreads run parallel page loads, bulk fetches, relation deletes and range downloads
+         *                       on a new virtual thread per task instead of the worker pool. Page fetch
+         *                       parallelism still limits the number of tasks running at the same time, so
+         *                       it can be much larger in this mode. Java 21+ is required, older JVMs keep
+         *                       using the worker pool. Default is false.
+         */
+        public Builder virtualThreads(boolean virtualThreads) {
+            this.virtualThreads = virtualThreads;
+            return this;
+        }
+
+        /**
+         * @param maxConnections maximum number of open connections, default is
+         *                       {@value Communicator#DEFAULT_MAX_CONNECTIONS}.
+         */
+        public Builder maxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+            return this;
+        }
+
+        /**
+         * @param maxConnectionsPerHost maximum number of open connections to one host, default is
+         *                              {@value Communicator#DEFAULT_MAX_CONNECTIONS_PER_ROUTE}.
+         */
+        public Builder maxConnectionsPerHost(int maxConnectionsPerHost) {
+            this.maxConnectionsPerHost = maxConnectionsPerHost;
+            return this;
+        }
+
+        /**
+         * @param idleConnectionTimeoutMillis pooled connections unused for this time are closed, default is
+         *                                    {@value Communicator#DEFAULT_IDLE_CONNECTION_TIMEOUT_MILLIS} ms.
+         */
+        public Builder idleConnectionTimeout(long idleConnectionTimeoutMillis) {
+            this.idleConnectionTimeoutMillis = idleConnectionTimeoutMillis;
+            return this;
+        }
+
+        /**
+         * @param keepAliveMillis how long to keep a connection open when the server does not send a
+         *                        "Keep-Alive" header, default is {@value Communicator#DEFAULT_KEEP_ALIVE_MILLIS} ms.
+         */
+        public Builder keepAliveDuration(long keepAliveMillis) {
+            this.keepAliveMillis = keepAliveMillis;
+            return this;
+        }
+
+        /**
+         * @param connectTimeoutMillis time to wait for a new connection, 0 for no limit. Default is
+         *                             {@value Communicator#DEFAULT_CONNECT_TIMEOUT_MILLIS} ms.
+         */
+        public Builder connectTimeout(long connectTimeoutMillis) {
+            this.connectTimeoutMillis = connectTimeoutMillis;
+            return this;
+        }
+
+        /**
+         * @param readTimeoutMillis time to wait for the next data from the server, 0 for no limit. Default is
+         *                          {@value Communicator#DEFAULT_READ_TIMEOUT_MILLIS} ms.
+         */
+        public Builder readTimeout(long readTimeoutMillis) {
+            this.readTimeoutMillis = readTimeoutMillis;
+            return this;
+        }
+
+        /**
+         * @param connectionPoolTimeoutMillis time to wait for a free pooled connection, 0 for no limit.
+         *                                    Default is {@value Communicator#DEFAULT_CONNECTION_POOL_TIMEOUT_MILLIS} ms.
+         */
+        public Builder connectionPoolTimeout(long connectionPoolTimeoutMillis) {
+            this.connectionPoolTimeoutMillis = connectionPoolTimeoutMillis;
+            return this;
+        }
+
+        /**
+         * @param callTimeoutMillis time limit for every call including all pages and retries, 0 for no
+         *                          limit (default).
+         */
+        public Builder callTimeout(long callTimeoutMillis) {
+            this.callTimeoutMillis = callTimeoutMillis;
+            return this;
+        }
+
+        /**
+         * @param responseCacheSize number of GET responses kept for conditional requests, 0 disables
+         *                          the cache (default).
+         */
+        public Builder responseCacheSize(int responseCacheSize) {
+            if (responseCacheSize < 0) {
+                throw new IllegalArgumentException("Cache size can't be negative: " + responseCacheSize);
+            }
+            this.responseCacheSize = responseCacheSize;
+            return this;
+        }
+
+        /**
+         * @param referenceDataCache cache for projects, statuses, trackers, versions and categories
+         *                           or NULL for none (default).
+         */
+        public Builder referenceDataCache(ReferenceDataCache referenceDataCache) {
+            this.referenceDataCache = referenceDataCache;
+            return this;
+        }
+
+        public Builder metrics(RedmineMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        public Builder retryPolicy(RetryPolicy retryPolicy) {
+            this.retryPolicy = retryPolicy;
+            return this;
+        }
+
+        public Builder requestLimiter(RequestLimiter requestLimiter) {
+            this.requestLimiter = requestLimiter;
+            return this;
+        }
+
+        public Builder circuitBreaker(CircuitBreaker circuitBreaker) {
+            this.circuitBreaker = circuitBreaker;
+            return this;
+        }
+
+        /**
+         * Adds the interceptor to be called around every request, in the order of adding.
+         */
+        public Builder requestInterceptor(RequestInterceptor interceptor) {
+            if (interceptor == null) {
+                throw new IllegalArgumentException("Interceptor can't be NULL");
+            }
+            interceptors.add(interceptor);
+            return this;
+        }
+
+        public RedmineManager build() {
+            return new RedmineManager(this);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package org.redmine.ta;
+
+/**
+ * Receives statistics of every request sent to the Redmine server: timings, response size and
+ * result. Implementations must be thread-safe and fast, they are called from the request threads
+ * after each request is completed. Exceptions thrown by an implementation are logged and ignored.
+ *
+ * @see RedmineManager#setMetrics(RedmineMetrics)
+ * @see InMemoryRedmineMetrics
+ */
+public interface RedmineMetrics {
+
+    void requestCompleted(RequestStatistics statistics);
+}
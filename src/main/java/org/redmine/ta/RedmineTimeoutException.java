@@ -0,0 +1,19 @@
+package org.redmine.ta;
+
+/**
+ * The server did not respond in time: connecting, waiting for data or waiting for a free pooled
+ * connection took too long, or the deadline of the whole call has passed.
+ *
+ * @see RedmineManager#setCallTimeout(long)
+ */
+public class RedmineTimeoutException extends RedmineTransportException {
+    private static final long serialVersionUID = 1L;
+
+    public RedmineTimeoutException(Throwable cause) {
+        super(cause);
+    }
+
+    public RedmineTimeoutException(String message) {
+        super(message);
+    }
+}
@@ -4,4 +4,8 @@ public class RedmineTransportException extends RedmineCommunicationException {
     public RedmineTransportException(Throwable cause) {
         super(cause);
     }
+
+    public RedmineTransportException(String message) {
+        super(message);
+    }
 }
@@ -0,0 +1,31 @@
+package org.redmine.ta;
+
+/**
+ * The server responded with a temporary error status like "503 Service Unavailable",
+ * e.g. because it's overloaded or in maintenance.
+ *
+ * @see RetryPolicy
+ */
+public class RedmineUnavailableException extends RedmineCommunicationException {
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+    private final long retryAfterMillis;
+
+    public RedmineUnavailableException(String message, int statusCode, long retryAfterMillis) {
+        super(message);
+        this.statusCode = statusCode;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return the delay the server asked for in "Retry-After" header or -1 if there was none.
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
@@ -0,0 +1,27 @@
+package org.redmine.ta;
+
+/**
+ * Keeps the rarely changed lists (statuses, trackers, projects, versions, categories) loaded by
+ * {@link RedmineManager}, so they are not requested from the server every time.
+ * Implementations must be thread-safe.
+ * <p>The keys start with the server URI and the user of the manager, so one cache can be
+ * shared by managers working with different servers or as different users.
+ *
+ * @see RedmineManager#setReferenceDataCache(ReferenceDataCache)
+ * @see ExpiringReferenceDataCache
+ */
+public interface ReferenceDataCache {
+
+    /**
+     * @return the cached value or NULL if there's none or it has expired.
+     */
+    Object get(String key);
+
+    void put(String key, Object value);
+
+    void invalidate(String key);
+
+    void invalidateAll();
+
+    CacheStatistics getStatistics();
+}
@@ -0,0 +1,41 @@
+package org.redmine.ta;
+
+import java.net.URI;
+
+/**
+ * One request passed to {@link RequestInterceptor}s. The same context is given to all
+ * interceptor calls for the request, so an interceptor can keep its own state in the attributes,
+ * like a tracing span opened in {@link RequestInterceptor#beforeSend}.
+ */
+public interface RequestContext {
+
+    String getMethod();
+
+    URI getUri();
+
+    /**
+     * @see RequestStatistics#getEndpoint()
+     */
+    String getEndpoint();
+
+    /**
+     * @return the bean class the request is about, like Issue for "GET /issues.xml" or
+     *         "PUT /issues/5.xml", or NULL for other requests.
+     */
+    Class<?> getObjectType();
+
+    /**
+     * @return HTTP status code or 0 if no response has been received yet.
+     */
+    int getStatusCode();
+
+    /**
+     * @return the request timings up to now. Final values are available in
+     *         {@link RequestInterceptor#afterResponse} and {@link RequestInterceptor#onError}.
+     */
+    RequestStatistics getStatistics();
+
+    Object getAttribute(String name);
+
+    void setAttribute(String name, Object value);
+}
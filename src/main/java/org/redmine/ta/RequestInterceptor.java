@@ -0,0 +1,41 @@
+package org.redmine.ta;
+
+import org.apache.http.HttpRequest;
+
+/**
+ * Runs custom code around every request sent by {@link RedmineManager}: to add headers
+ * (request tagging, custom authentication), trace or audit requests, measure latency per call site.
+ * <p>Interceptors are called in the order they were added before the request is sent, and in the
+ * reverse order after it is completed. Implementations must be thread-safe: one interceptor is
+ * called from all request threads.
+ *
+ * @see RedmineManager#addRequestInterceptor(RequestInterceptor)
+ */
+public interface RequestInterceptor {
+
+    /**
+     * Called before the request is sent, after the standard headers are set. The request
+     * can be changed here, e.g. headers added or replaced.
+     * <p>Called once per attempt when a failed request is retried. Headers added here are removed
+     * before the next attempt, so each attempt sends them once.
+     *
+     * @throws RedmineException to cancel the request. The exception is thrown to the caller
+     *                          and {@link #onError} of the interceptors is called.
+     */
+    void beforeSend(HttpRequest request, RequestContext context) throws RedmineException;
+
+    /**
+     * Called when the response is received and processed.
+     *
+     * @param result the parsed response: a bean, a list of beans, a String body for requests
+     *               sent without a parser, or the number of bytes for downloads.
+     *               Exceptions thrown from this method are logged and ignored.
+     */
+    void afterResponse(RequestContext context, Object result);
+
+    /**
+     * Called when the request has failed. The error is thrown to the caller after this call.
+     * Exceptions thrown from this method are logged and ignored.
+     */
+    void onError(RequestContext context, Exception error);
+}
@@ -0,0 +1,160 @@
+package org.redmine.ta;
+
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the load put on Redmine servers: the rate of requests is limited by a token bucket and
+ * the number of requests processed at the same time by a semaphore. Limits are applied to each
+ * server (protocol, host and port) separately, so one limiter can be shared by several
+ * {@link RedmineManager}s working with the same or different servers.
+ * <p>Requests wait until they are allowed to be sent, the wait time is reported to
+ * {@link RedmineMetrics} as {@link RequestStatistics#getQueueNanos()}. The wait is limited by the
+ * call timeout, see {@link RedmineManager#setCallTimeout(long)}.
+ *
+ * @see RedmineManager#setRequestLimiter(RequestLimiter)
+ */
+public final class RequestLimiter {
+
+    private final double requestsPerSecond;
+    private final int burst;
+    private final int maxConcurrentRequests;
+    private final ConcurrentMap<String, HostLimit> hosts = new ConcurrentHashMap<String, HostLimit>();
+
+    /**
+     * @param requestsPerSecond     average number of requests started per second, 0 for no rate limit.
+     * @param burst                 number of requests which can be started at once after a pause, at least 1.
+     * @param maxConcurrentRequests number of requests sent at the same time, 0 for no limit.
+     */
+    public RequestLimiter(double requestsPerSecond, int burst, int maxConcurrentRequests) {
+        if (requestsPerSecond < 0 || burst < 1 || maxConcurrentRequests < 0) {
+            throw new IllegalArgumentException("Illegal limits: " + requestsPerSecond + " requests per second, burst "
+                    + burst + ", " + maxConcurrentRequests + " concurrent requests");
+        }
+        this.requestsPerSecond = requestsPerSecond;
+        this.burst = burst;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    public double getRequestsPerSecond() {
+        return requestsPerSecond;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    /**
+     * Waits until a request to the server can be sent. Every successful call must be followed
+     * by {@link #release(URI)} when the response is processed.
+     *
+     * @param uri the request URI.
+     * @return time spent waiting, in nanoseconds.
+     */
+    public long acquire(URI uri) throws InterruptedException {
+        return tryAcquire(uri, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Same as {@link #acquire(URI)}, but waits no longer than the timeout. Nothing is taken
+     * and {@link #release(URI)} must not be called when the request can't be sent in time.
+     *
+     * @return time spent waiting in nanoseconds or -1 if the request can't be sent in the timeout.
+     */
+    public long tryAcquire(URI uri, long timeout, TimeUnit unit) throws InterruptedException {
+        HostLimit limit = getHostLimit(uri);
+        long start = System.nanoTime();
+        long timeoutNanos = unit.toNanos(timeout);
+        if (limit.semaphore != null && !limit.semaphore.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS)) {
+            return -1;
+        }
+        try {
+            long now = System.nanoTime();
+            long delay = limit.reserve(now, timeoutNanos - (now - start));
+            if (delay < 0) {
+                release(uri);
+                return -1;
+            }
+            if (delay > 0) {
+                TimeUnit.NANOSECONDS.sleep(delay);
+            }
+        } catch (InterruptedException e) {
+            release(uri);
+            throw e;
+        }
+        return System.nanoTime() - start;
+    }
+
+    public void release(URI uri) {
+        HostLimit limit = getHostLimit(uri);
+        if (limit.semaphore != null) {
+            limit.semaphore.release();
+        }
+    }
+
+    /**
+     * @param uri any URI on the server.
+     * @return number of requests to the server being sent now, as far as the limits are known for it.
+     */
+    public int getInFlightRequests(URI uri) {
+        HostLimit limit = hosts.get(getHostKey(uri));
+        return limit == null || limit.semaphore == null ? 0
+                : maxConcurrentRequests - limit.semaphore.availablePermits();
+    }
+
+    private HostLimit getHostLimit(URI uri) {
+        String key = getHostKey(uri);
+        HostLimit limit = hosts.get(key);
+        if (limit == null) {
+            HostLimit newLimit = new HostLimit();
+            limit = hosts.putIfAbsent(key, newLimit);
+            if (limit == null) {
+                limit = newLimit;
+            }
+        }
+        return limit;
+    }
+
+    private static String getHostKey(URI uri) {
+        return uri.getScheme() + "://" + uri.getAuthority();
+    }
+
+    @Override
+    public String toString() {
+        return "RequestLimiter{requestsPerSecond=" + requestsPerSecond + ", burst=" + burst
+                + ", maxConcurrentRequests=" + maxConcurrentRequests + '}';
+    }
+
+    private final class HostLimit {
+        private final Semaphore semaphore = maxConcurrentRequests > 0 ? new Semaphore(maxConcurrentRequests, true) : null;
+        private double tokens = burst;
+        private long refillNanos = System.nanoTime();
+
+        /**
+         * Takes a token, the bucket goes below zero when requests are waiting for tokens.
+         *
+         * @param maxDelayNanos the token is not taken if it can't be got in this time.
+         * @return time to wait for the token in nanoseconds or -1 if it is not taken.
+         */
+        synchronized long reserve(long now, long maxDelayNanos) {
+            if (requestsPerSecond == 0) {
+                return 0;
+            }
+            tokens = Math.min(burst, tokens + (now - refillNanos) * requestsPerSecond / 1e9);
+            refillNanos = now;
+            long delay = tokens >= 1 ? 0 : (long) ((1 - tokens) * 1e9 / requestsPerSecond);
+            if (delay > maxDelayNanos) {
+                return -1;
+            }
+            tokens -= 1;
+            return delay;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package org.redmine.ta;
+
+/**
+ * Timings and sizes of one request. The request time is split into phases:
+ * <ul>
+ * <li>queue - waiting for {@link RequestLimiter} before the request is sent;</li>
+ * <li>connect - getting a connection from the pool, including opening a new one if needed;</li>
+ * <li>wait - sending the request and waiting for the response headers, mostly the server time;</li>
+ * <li>transfer - reading the response content from the network;</li>
+ * <li>parse - processing the content (XML parsing, writing a downloaded file) while it's read.</li>
+ * </ul>
+ */
+public final class RequestStatistics {
+    private final String endpoint;
+    private final String method;
+    private final String uri;
+    private final int statusCode;
+    private final boolean successful;
+    private final long queueNanos;
+    private final long connectNanos;
+    private final long waitNanos;
+    private final long transferNanos;
+    private final long parseNanos;
+    private final long totalNanos;
+    private final long wireBytes;
+    private final long contentBytes;
+
+    public RequestStatistics(String endpoint, String method, String uri, int statusCode, boolean successful,
+                             long connectNanos, long waitNanos, long transferNanos, long parseNanos,
+                             long totalNanos, long wireBytes, long contentBytes) {
+        this(endpoint, method, uri, statusCode, successful, 0, connectNanos, waitNanos, transferNanos, parseNanos,
+                totalNanos, wireBytes, contentBytes);
+    }
+
+    public RequestStatistics(String endpoint, String method, String uri, int statusCode, boolean successful,
+                             long queueNanos, long connectNanos, long waitNanos, long transferNanos,
+                             long parseNanos, long totalNanos, long wireBytes, long contentBytes) {
+        this.endpoint = endpoint;
+        this.method = method;
+        this.uri = uri;
+        this.statusCode = statusCode;
+        this.successful = successful;
+        this.queueNanos = queueNanos;
+        this.connectNanos = connectNanos;
+        this.waitNanos = waitNanos;
+        this.transferNanos = transferNanos;
+        this.parseNanos = parseNanos;
+        this.totalNanos = totalNanos;
+        this.wireBytes = wireBytes;
+        this.contentBytes = contentBytes;
+    }
+
+    /**
+     * @return HTTP method and requested object type, like "GET Issue" or "PUT Project".
+     *         Requests not related to a bean type are named by the URI path, like "POST uploads".
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    /**
+     * @return HTTP status code or 0 if no response was received.
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return false if the request has failed with an exception.
+     */
+    public boolean isSuccessful() {
+        return successful;
+    }
+
+    /**
+     * @return time spent waiting for {@link RequestLimiter}, 0 if no limiter is used.
+     */
+    public long getQueueNanos() {
+        return queueNanos;
+    }
+
+    public long getConnectNanos() {
+        return connectNanos;
+    }
+
+    public long getWaitNanos() {
+        return waitNanos;
+    }
+
+    public long getTransferNanos() {
+        return transferNanos;
+    }
+
+    public long getParseNanos() {
+        return parseNanos;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * @return number of response content bytes received from the network, compressed if the server
+     *         used "gzip" or "deflate" encoding.
+     */
+    public long getWireBytes() {
+        return wireBytes;
+    }
+
+    /**
+     * @return number of response content bytes after decompression.
+     */
+    public long getContentBytes() {
+        return contentBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "RequestStatistics{" + endpoint + " " + uri + ", status=" + statusCode
+                + ", successful=" + successful + ", queueNanos=" + queueNanos + ", connectNanos=" + connectNanos + ", waitNanos=" + waitNanos
+                + ", transferNanos=" + transferNanos + ", parseNanos=" + parseNanos + ", totalNanos=" + totalNanos
+                + ", wireBytes=" + wireBytes + ", contentBytes=" + contentBytes + '}';
+    }
+}
@@ -0,0 +1,169 @@
+package org.redmine.ta;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Defines how failed requests are repeated. Only idempotent requests (GET, HEAD, PUT, DELETE)
+ * are repeated, and only when they failed with an I/O error or with one of the retryable
+ * status codes. Each request is retried separately, so a failed page of a long list is loaded
+ * again without loading the previous pages.
+ * <p>The delay before attempt <code>n + 1</code> is <code>initialBackoff * 2<sup>n-1</sup></code>
+ * limited by <code>maxBackoff</code> and reduced by a random part of up to <code>jitter</code> of it,
+ * so clients failed at the same time don't retry at the same time. A longer delay requested by the
+ * server in "Retry-After" header is used instead, unless it's longer than {@link #getMaxRetryAfterMillis()}:
+ * then the request is not retried.
+ * <p>Instances are immutable, the "with" methods return changed copies.
+ *
+ * @see RedmineManager#setRetryPolicy(RetryPolicy)
+ */
+public final class RetryPolicy {
+
+    private static final Set<Integer> DEFAULT_RETRYABLE_STATUS_CODES = Collections.unmodifiableSet(
+            new HashSet<Integer>(Arrays.asList(502, 503, 504)));
+    private static final double DEFAULT_JITTER = 0.5;
+    private static final long DEFAULT_MAX_RETRY_AFTER_MILLIS = 60000;
+
+    /**
+     * Requests are never retried. Responses with the default retryable status codes still fail
+     * with {@link RedmineUnavailableException}.
+     */
+    public static final RetryPolicy NONE = new RetryPolicy(1, 0, 0);
+
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final double jitter;
+    private final Set<Integer> retryableStatusCodes;
+    private final long maxRetryAfterMillis;
+    private final Random random = new Random();
+
+    /**
+     * Creates a policy retrying status codes 502, 503 and 504 with jitter 0.5, honoring "Retry-After"
+     * delays up to 1 minute.
+     *
+     * @param maxAttempts          number of attempts including the first one, 1 means "no retries".
+     * @param initialBackoffMillis delay before the first retry.
+     * @param maxBackoffMillis     upper bound for the delay.
+     */
+    public RetryPolicy(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis) {
+        this(maxAttempts, initialBackoffMillis, maxBackoffMillis, DEFAULT_JITTER, DEFAULT_RETRYABLE_STATUS_CODES,
+                DEFAULT_MAX_RETRY_AFTER_MILLIS);
+    }
+
+    private RetryPolicy(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis, double jitter,
+                        Set<Integer> retryableStatusCodes, long maxRetryAfterMillis) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Max attempts number must be positive: " + maxAttempts);
+        }
+        if (initialBackoffMillis < 0 || maxBackoffMillis < initialBackoffMillis) {
+            throw new IllegalArgumentException("Illegal backoff: initial " + initialBackoffMillis
+                    + " ms, max " + maxBackoffMillis + " ms");
+        }
+        if (jitter < 0 || jitter > 1) {
+            throw new IllegalArgumentException("Jitter must be from 0 to 1: " + jitter);
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.jitter = jitter;
+        this.retryableStatusCodes = retryableStatusCodes;
+        this.maxRetryAfterMillis = maxRetryAfterMillis;
+    }
+
+    /**
+     * @param jitter share of the delay from 0 to 1 which is randomly removed from it, 0 for exact delays.
+     */
+    public RetryPolicy withJitter(double jitter) {
+        return new RetryPolicy(maxAttempts, initialBackoffMillis, maxBackoffMillis, jitter, retryableStatusCodes,
+                maxRetryAfterMillis);
+    }
+
+    public RetryPolicy withRetryableStatusCodes(Integer... statusCodes) {
+        return new RetryPolicy(maxAttempts, initialBackoffMillis, maxBackoffMillis, jitter,
+                Collections.unmodifiableSet(new HashSet<Integer>(Arrays.asList(statusCodes))), maxRetryAfterMillis);
+    }
+
+    /**
+     * @param maxRetryAfterMillis the longest "Retry-After" delay to wait for, 0 to ignore "Retry-After" headers.
+     */
+    public RetryPolicy withMaxRetryAfter(long maxRetryAfterMillis) {
+        return new RetryPolicy(maxAttempts, initialBackoffMillis, maxBackoffMillis, jitter, retryableStatusCodes,
+                maxRetryAfterMillis);
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getInitialBackoffMillis() {
+        return initialBackoffMillis;
+    }
+
+    public long getMaxBackoffMillis() {
+        return maxBackoffMillis;
+    }
+
+    public double getJitter() {
+        return jitter;
+    }
+
+    public Set<Integer> getRetryableStatusCodes() {
+        return retryableStatusCodes;
+    }
+
+    public long getMaxRetryAfterMillis() {
+        return maxRetryAfterMillis;
+    }
+
+    public boolean isRetryableStatus(int statusCode) {
+        return retryableStatusCodes.contains(statusCode);
+    }
+
+    /**
+     * @return whether requests with this HTTP method can be sent again.
+     */
+    public static boolean isIdempotent(String method) {
+        return "GET".equals(method) || "HEAD".equals(method) || "PUT".equals(method) || "DELETE".equals(method);
+    }
+
+    /**
+     * @param failedAttempts     number of attempts made so far, starting with 1.
+     * @param retryAfterMillis   delay requested by the server or -1.
+     * @return delay before the next attempt or -1 if the request must not be retried.
+     */
+    public long getDelayMillis(int failedAttempts, long retryAfterMillis) {
+        if (failedAttempts >= maxAttempts) {
+            return -1;
+        }
+        long backoff = initialBackoffMillis;
+        for (int i = 1; i < failedAttempts && backoff < maxBackoffMillis; i++) {
+            backoff *= 2;
+        }
+        backoff = Math.min(backoff, maxBackoffMillis);
+        if (jitter > 0 && backoff > 0) {
+            double randomPart;
+            synchronized (random) {
+                randomPart = random.nextDouble();
+            }
+            backoff -= (long) (backoff * jitter * randomPart);
+        }
+        if (retryAfterMillis >= 0 && maxRetryAfterMillis > 0) {
+            if (retryAfterMillis > maxRetryAfterMillis) {
+                return -1;
+            }
+            backoff = Math.max(backoff, retryAfterMillis);
+        }
+        return backoff;
+    }
+
+    @Override
+    public String toString() {
+        return "RetryPolicy{maxAttempts=" + maxAttempts + ", initialBackoffMillis=" + initialBackoffMillis
+                + ", maxBackoffMillis=" + maxBackoffMillis + ", jitter=" + jitter
+                + ", retryableStatusCodes=" + retryableStatusCodes + ", maxRetryAfterMillis=" + maxRetryAfterMillis + '}';
+    }
+}
@@ -0,0 +1,58 @@
+package org.redmine.ta;
+
+import java.util.Date;
+
+/**
+ * Position of an {@link IncrementalSync} run: "updated_on" value and ID of the last processed object.
+ * Objects are processed in ("updated_on", ID) order, so everything up to this position is processed.
+ */
+public final class SyncCheckpoint {
+    private final Date updatedOn;
+    private final int lastId;
+
+    public SyncCheckpoint(Date updatedOn, int lastId) {
+        if (updatedOn == null) {
+            throw new IllegalArgumentException("updatedOn can't be NULL");
+        }
+        this.updatedOn = new Date(updatedOn.getTime());
+        this.lastId = lastId;
+    }
+
+    public Date getUpdatedOn() {
+        return new Date(updatedOn.getTime());
+    }
+
+    public int getLastId() {
+        return lastId;
+    }
+
+    /**
+     * @return whether an object with these values comes after this checkpoint.
+     */
+    boolean precedes(Date objectUpdatedOn, int objectId) {
+        int compared = objectUpdatedOn.compareTo(updatedOn);
+        return compared > 0 || (compared == 0 && objectId > lastId);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SyncCheckpoint)) {
+            return false;
+        }
+        SyncCheckpoint other = (SyncCheckpoint) o;
+        return lastId == other.lastId && updatedOn.equals(other.updatedOn);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * updatedOn.hashCode() + lastId;
+    }
+
+    @Override
+    public String toString() {
+        return "SyncCheckpoint{updatedOn=" + updatedOn + ", lastId=" + lastId + '}';
+    }
+}
@@ -0,0 +1,17 @@
+package org.redmine.ta;
+
+/**
+ * Keeps {@link IncrementalSync} checkpoints between runs.
+ *
+ * @see FileSyncCheckpointStore
+ */
+public interface SyncCheckpointStore {
+
+    /**
+     * @param name name of the synchronized data set, e.g. "issues:project-key".
+     * @return the last saved checkpoint or NULL if nothing was synchronized yet.
+     */
+    SyncCheckpoint load(String name) throws RedmineException;
+
+    void save(String name, SyncCheckpoint checkpoint) throws RedmineException;
+}
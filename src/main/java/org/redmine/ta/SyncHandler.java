@@ -0,0 +1,13 @@
+package org.redmine.ta;
+
+/**
+ * Receives objects created or changed since the last {@link IncrementalSync} run.
+ */
+public interface SyncHandler<T> {
+
+    /**
+     * If this method throws an exception, the sync stops and the checkpoint of the previous
+     * object is saved, so the next run starts from this object again.
+     */
+    void onUpdated(T object) throws RedmineException;
+}
@@ -16,6 +16,7 @@ public class Attachment implements Identifiable {
     private String description;
     private Date createdOn;
     private User author;
+    private String token;
 
     @Override
     /**
@@ -85,6 +86,21 @@ public class Attachment implements Identifiable {
         this.fileSize = fileSize;
     }
 
+    /**
+     * @return token returned by the server for an uploaded file, which is not attached to an issue yet.
+     * @see org.redmine.ta.RedmineManager#uploadAttachment(String, String, java.io.File)
+     */
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * The attachment with a token is added to the issue when the issue is created or updated.
+     */
+    public void setToken(String token) {
+        this.token = token;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -128,6 +144,7 @@ public class Attachment implements Identifiable {
                 ", description='" + description + '\'' +
                 ", createdOn=" + createdOn +
                 ", author=" + author +
+                ", token='" + token + '\'' +
                 '}';
     }
 }
@@ -6,24 +6,144 @@ import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.impl.cookie.DateParseException;
+import org.apache.http.impl.cookie.DateUtils;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.ExecutionContext;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.EntityUtils;
 import org.castor.core.util.Base64Encoder;
 import org.redmine.ta.*;
 import org.redmine.ta.internal.logging.Logger;
 import org.redmine.ta.internal.logging.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.net.SocketTimeoutException;
 import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Sends requests to the Redmine server. One instance owns one pool of HTTP connections,
+ * which is reused by all requests until {@link #shutdown()} is called.
+ */
 public class Communicator {
     public static final String CHARSET = "UTF-8";
+    public static final String API_KEY_HEADER = "X-Redmine-API-Key";
+
+    public static final int DEFAULT_MAX_CONNECTIONS = 20;
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 10;
+    public static final long DEFAULT_IDLE_CONNECTION_TIMEOUT_MILLIS = 30000;
+    public static final long DEFAULT_KEEP_ALIVE_MILLIS = 30000;
+    public static final long DEFAULT_CONNECT_TIMEOUT_MILLIS = 30000;
+    public static final long DEFAULT_READ_TIMEOUT_MILLIS = 60000;
+    public static final long DEFAULT_CONNECTION_POOL_TIMEOUT_MILLIS = 30000;
+    private static final int DOWNLOAD_BUFFER_SIZE = 65536;
+    private static final Header ACCEPT_ENCODING_HEADER = new BasicHeader("Accept-Encoding", "gzip,deflate");
+    private static final Header IDENTITY_ENCODING_HEADER = new BasicHeader("Accept-Encoding", "identity");
 
     private final Logger logger = LoggerFactory.getLogger(Communicator.class);
-    private String login;
-    private String password;
+    private final DefaultHttpClient httpclient;
+    /**
+     * "Authorization" or "X-Redmine-API-Key" header, built once when the credentials are set.
+     */
+    private volatile Header authHeader;
+    /**
+     * Origin of the server the auth header is sent to, NULL to send it with every request.
+     */
+    private volatile String authOrigin;
+
+    private volatile long idleConnectionTimeoutMillis = DEFAULT_IDLE_CONNECTION_TIMEOUT_MILLIS;
+    private volatile long keepAliveMillis = DEFAULT_KEEP_ALIVE_MILLIS;
+    private volatile long lastEvictionTime = System.currentTimeMillis();
+    private volatile long connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
+    private volatile long readTimeoutMillis = DEFAULT_READ_TIMEOUT_MILLIS;
+    private volatile long connectionPoolTimeoutMillis = DEFAULT_CONNECTION_POOL_TIMEOUT_MILLIS;
+    private volatile long callTimeoutMillis;
+    private volatile ResponseCache responseCache;
+    private volatile RedmineMetrics metrics = NoOpRedmineMetrics.INSTANCE;
+    private volatile RetryPolicy retryPolicy = RetryPolicy.NONE;
+    private volatile RequestLimiter requestLimiter;
+    private volatile CircuitBreaker circuitBreaker;
+    private final List<RequestInterceptor> interceptors = new CopyOnWriteArrayList<RequestInterceptor>();
+
+    public Communicator() {
+        this(DEFAULT_MAX_CONNECTIONS, DEFAULT_MAX_CONNECTIONS_PER_ROUTE);
+    }
+
+    public Communicator(int maxConnections, int maxConnectionsPerRoute) {
+        httpclient = HttpUtil.getNewHttpClient(maxConnections, maxConnectionsPerRoute);
+        httpclient.setKeepAliveStrategy(new DefaultConnectionKeepAliveStrategy() {
+            @Override
+            public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+                long duration = super.getKeepAliveDuration(response, context);
+                // server did not say how long it keeps the connection open
+                return duration < 0 ? keepAliveMillis : duration;
+            }
+        });
+        configureProxy(httpclient);
+        addMetricsInterceptors(httpclient);
+        httpclient.addRequestInterceptor(new HttpRequestInterceptor() {
+            @Override
+            public void process(HttpRequest request, HttpContext context) {
+                // redirects keep the headers of the original request
+                HttpHost target = (HttpHost) context.getAttribute(ExecutionContext.HTTP_TARGET_HOST);
+                if (target != null && !isAuthOrigin(URIConfigurator.getOrigin(target.getSchemeName(),
+                        target.getHostName(), target.getPort()))) {
+                    request.removeHeaders("Authorization");
+                    request.removeHeaders(API_KEY_HEADER);
+                }
+            }
+        });
+    }
+
+    private boolean isAuthOrigin(String origin) {
+        String current = authOrigin;
+        return current == null || current.equals(origin);
+    }
+
+    /**
+     * The request interceptors run when the connection is ready. The response interceptor is
+     * added before the one decompressing the content, so it sees the bytes as they were sent.
+     */
+    private static void addMetricsInterceptors(DefaultHttpClient httpclient) {
+        httpclient.addRequestInterceptor(new HttpRequestInterceptor() {
+            @Override
+            public void process(HttpRequest request, HttpContext context) {
+                RequestTracker tracker = (RequestTracker) context.getAttribute(RequestTracker.CONTEXT_ATTRIBUTE);
+                if (tracker != null) {
+                    tracker.connected();
+                }
+            }
+        });
+        httpclient.addResponseInterceptor(new HttpResponseInterceptor() {
+            @Override
+            public void process(HttpResponse response, HttpContext context) {
+                RequestTracker tracker = (RequestTracker) context.getAttribute(RequestTracker.CONTEXT_ATTRIBUTE);
+                if (tracker != null && response.getEntity() != null) {
+                    response.setEntity(tracker.wrapWireEntity(response.getEntity()));
+                }
+            }
+        }, 0);
+    }
 
     // TODO lots of usages process 404 code themselves, but some don't.
     // check if we can process 404 code in this method instead of forcing clients to deal with it.
@@ -31,62 +151,528 @@ public class Communicator {
     /**
      * @return the response body
      */
-    public String sendRequest(HttpRequest request) throws RedmineException {
-        logger.debug(request.getRequestLine().toString());
-        DefaultHttpClient httpclient = HttpUtil.getNewHttpClient();
+    public String sendRequest(final HttpRequest request) throws RedmineException {
+        return send(request, new RequestAction<String>() {
+            @Override
+            public String perform(RequestTracker tracker) throws RedmineException {
+                HttpResponse httpResponse = execute(request, tracker);
+                return readBody(httpResponse.getEntity(), tracker);
+            }
+        });
+    }
 
-        configureProxy(httpclient);
+    /**
+     * Same as {@link #sendRequest(HttpRequest)}, but the response content is passed to the parser
+     * as a stream while it is being received instead of being converted to a String first.
+     *
+     * @return the parsed response content
+     */
+    public <T> T sendRequest(final HttpRequest request, final ContentParser<T> parser) throws RedmineException {
+        return send(request, new RequestAction<T>() {
+            @Override
+            public T perform(RequestTracker tracker) throws RedmineException {
+                ResponseCache cache = responseCache;
+                if (cache == null || !(request instanceof HttpGet)) {
+                    return parse(execute(request, tracker), parser, tracker);
+                }
+                return sendConditionalRequest((HttpGet) request, parser, cache, tracker);
+            }
+        });
+    }
 
-        if (login != null) {
-            // replaced because of http://code.google.com/p/redmine-java-api/issues/detail?id=72
-//			httpclient.getCredentialsProvider().setCredentials(
-//                new AuthScope(AuthScope.ANY_HOST, AuthScope.ANY_PORT),
-//                new UsernamePasswordCredentials(login, password));
-            String credentials;
+    /**
+     * Copies the response content to the stream as it is received. The response cache is not used.
+     *
+     * @return number of bytes copied
+     */
+    public long download(final HttpGet request, final OutputStream out) throws RedmineException {
+        return send(request, new RequestAction<Long>() {
+            @Override
+            public Long perform(RequestTracker tracker) throws RedmineException {
+                HttpResponse httpResponse = execute(request, tracker);
+                checkDownloadStatus(httpResponse, false);
+                return parse(httpResponse, new ContentParser<Long>() {
+                    @Override
+                    public Long parse(InputStream content) throws IOException {
+                        byte[] buffer = new byte[DOWNLOAD_BUFFER_SIZE];
+                        long total = 0;
+                        int read;
+                        while ((read = content.read(buffer)) != -1) {
+                            out.write(buffer, 0, read);
+                            total += read;
+                        }
+                        return total;
+                    }
+                }, tracker);
+            }
+        }, false);
+    }
+
+    /**
+     * Same as {@link #download(HttpGet, OutputStream)}, but the content is transferred to the
+     * file channel starting from its current position.
+     */
+    public long download(final HttpGet request, final FileChannel channel) throws RedmineException {
+        final long start;
+        try {
+            start = channel.position();
+        } catch (IOException e) {
+            throw new RedmineTransportException(e);
+        }
+        long end = send(request, new RequestAction<Long>() {
+            @Override
+            public Long perform(RequestTracker tracker) throws RedmineException {
+                HttpResponse httpResponse = execute(request, tracker);
+                checkDownloadStatus(httpResponse, false);
+                return parse(httpResponse, new ChannelWriter(channel, start), tracker);
+            }
+        });
+        try {
+            channel.position(end);
+        } catch (IOException e) {
+            throw new RedmineTransportException(e);
+        }
+        return end - start;
+    }
+
+    /**
+     * Requests bytes from firstByte to lastByte (inclusive) with a "Range" header and writes them
+     * to the channel at the same position. The channel position is neither used nor changed,
+     * so several ranges of one file can be loaded concurrently. The content is requested without
+     * compression, because the range of an encoded response refers to the encoded bytes.
+     *
+     * @param lastByte            -1 to load everything starting from the firstByte.
+     * @param wholeContentAllowed whether to accept the whole content (written from position 0) when
+     *                            the server ignores the "Range" header.
+     * @return the position after the last written byte.
+     * @throws RedmineFormatException the server sent an encoded or another range or the content is shorter
+     *                                or longer than announced in "Content-Range" / "Content-Length".
+     */
+    public long downloadRange(final HttpGet request, final FileChannel channel, final long firstByte, long lastByte,
+                              final boolean wholeContentAllowed) throws RedmineException {
+        request.setHeader("Range", "bytes=" + firstByte + "-" + (lastByte < 0 ? "" : String.valueOf(lastByte)));
+        request.setHeader(IDENTITY_ENCODING_HEADER);
+        return send(request, new RequestAction<Long>() {
+            @Override
+            public Long perform(RequestTracker tracker) throws RedmineException {
+                HttpResponse httpResponse = execute(request, tracker);
+                boolean partial = checkDownloadStatus(httpResponse, true);
+                String encoding = getHeaderValue(httpResponse, "Content-Encoding");
+                boolean encoded = encoding != null && !"identity".equalsIgnoreCase(encoding.trim());
+                long start;
+                long expectedEnd;
+                if (partial) {
+                    String contentRange = getHeaderValue(httpResponse, "Content-Range");
+                    if (encoded || contentRange != null && !contentRange.startsWith("bytes " + firstByte + "-")) {
+                        releaseConnection(httpResponse);
+                        throw new RedmineFormatException("Server sent range '" + contentRange + "' with encoding '"
+                                + encoding + "' instead of the requested one starting at " + firstByte);
+                    }
+                    start = firstByte;
+                    expectedEnd = getRangeEnd(contentRange);
+                } else {
+                    if (firstByte > 0 && !wholeContentAllowed) {
+                        releaseConnection(httpResponse);
+                        throw new RedmineCommunicationException("Server does not support range requests");
+                    }
+                    start = 0;
+                    HttpEntity entity = httpResponse.getEntity();
+                    // the length of encoded content is unknown before it is decoded
+                    expectedEnd = encoded || entity == null ? -1 : entity.getContentLength();
+                }
+                long end = parse(httpResponse, new ChannelWriter(channel, start), tracker);
+                if (expectedEnd >= 0 && end != expectedEnd) {
+                    throw new RedmineFormatException("Downloaded content ends at " + end
+                            + " instead of " + expectedEnd);
+                }
+                return end;
+            }
+        });
+    }
+
+    /**
+     * @param contentRange value of the "Content-Range" header like "bytes 0-99/1000".
+     * @return position after the last byte of the range or -1 if unknown.
+     */
+    private static long getRangeEnd(String contentRange) throws RedmineFormatException {
+        if (contentRange == null) {
+            return -1;
+        }
+        int dash = contentRange.indexOf('-');
+        int slash = contentRange.indexOf('/', dash);
+        if (dash < 0 || slash < 0) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentRange.substring(dash + 1, slash).trim()) + 1;
+        } catch (NumberFormatException e) {
+            throw new RedmineFormatException("Bad Content-Range: " + contentRange);
+        }
+    }
+
+    /**
+     * Sends the request and processes the response, see {@link #send(HttpRequest, RequestAction)}.
+     */
+    private interface RequestAction<T> {
+        T perform(RequestTracker tracker) throws RedmineException;
+    }
+
+    private <T> T send(HttpRequest request, RequestAction<T> action) throws RedmineException {
+        return send(request, action, true);
+    }
+
+    /**
+     * Runs the action which sends the request and reads the response, then reports the result
+     * to the interceptors and metrics. Failed attempts are repeated according to the retry policy,
+     * each attempt is reported separately and starts with the headers the request had before the first one.
+     * All attempts must be finished by the deadline of the current
+     * call or, if there is none, in the call timeout.
+     *
+     * @param restartable whether the action can be repeated after it has read a part of the content.
+     */
+    private <T> T send(HttpRequest request, RequestAction<T> action, boolean restartable) throws RedmineException {
+        Deadline deadline = Deadline.current();
+        if (deadline == null && callTimeoutMillis > 0) {
+            deadline = Deadline.after(callTimeoutMillis);
+        }
+        // headers added by the interceptors are removed before the next attempt
+        Header[] headers = request.getAllHeaders();
+        for (int attempt = 1; ; attempt++) {
+            if (attempt > 1) {
+                request.setHeaders(headers);
+            }
+            RequestTracker tracker = RequestTracker.create(request);
+            tracker.setInterceptors(interceptors.toArray(new RequestInterceptor[0]));
+            setTimeouts(request, tracker, deadline);
+            CircuitBreaker breaker = circuitBreaker;
+            long permission = breaker == null ? 0 : breaker.acquirePermission(tracker.getUri());
+            RequestLimiter limiter = requestLimiter;
+            if (limiter != null) {
+                try {
+                    tracker.queued(acquire(limiter, tracker.getUri(), deadline));
+                } catch (RedmineCommunicationException e) {
+                    if (breaker != null) {
+                        breaker.cancel(tracker.getUri(), permission);
+                    }
+                    throw e;
+                }
+            }
+            long sendStart = System.nanoTime();
+            boolean failed = true;
+            RedmineException error;
+            try {
+                T result = action.perform(tracker);
+                tracker.completed();
+                failed = false;
+                afterResponse(tracker, result);
+                return result;
+            } catch (RedmineException e) {
+                // errors reported by the server don't mean it's unavailable
+                failed = e instanceof RedmineCommunicationException;
+                onError(tracker, e);
+                error = e;
+            } catch (RuntimeException e) {
+                onError(tracker, e);
+                throw e;
+            } finally {
+                if (limiter != null) {
+                    limiter.release(tracker.getUri());
+                }
+                if (breaker != null) {
+                    breaker.onResult(tracker.getUri(), permission, failed, System.nanoTime() - sendStart);
+                }
+                finish(tracker);
+            }
+            long delay = getRetryDelay(request, error, attempt, restartable || tracker.getContentBytes() == 0);
+            if (delay < 0 || (deadline != null && delay >= deadline.getRemainingMillis())) {
+                throw error;
+            }
+            logger.debug("attempt " + attempt + " of " + tracker.getMethod() + " " + tracker.getUri()
+                    + " failed, retrying in " + delay + " ms: " + error);
             try {
-                credentials = String.valueOf(Base64Encoder.encode((login + ':' + password).getBytes(CHARSET)));
-            } catch (UnsupportedEncodingException e) {
-                throw new RedmineInternalError(e);
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw error;
             }
-            request.addHeader("Authorization", "Basic: " + credentials);
         }
+    }
+
+    /**
+     * Sets the request timeouts, limited by the time left until the deadline.
+     *
+     * @throws RedmineTimeoutException the deadline has passed.
+     */
+    @SuppressWarnings("deprecation")
+    private void setTimeouts(HttpRequest request, RequestTracker tracker, Deadline deadline)
+            throws RedmineTimeoutException {
+        long remainingMillis = 0;
+        if (deadline != null) {
+            remainingMillis = deadline.getRemainingMillis();
+            if (remainingMillis <= 0) {
+                throw new RedmineTimeoutException("Call deadline has passed before " + tracker.getMethod()
+                        + " " + tracker.getUri());
+            }
+        }
+        HttpParams params = request.getParams();
+        HttpConnectionParams.setConnectionTimeout(params, getTimeout(connectTimeoutMillis, remainingMillis));
+        HttpConnectionParams.setSoTimeout(params, getTimeout(readTimeoutMillis, remainingMillis));
+        // HttpClient 4.1 reads the pool timeout from the deprecated parameter
+        ConnManagerParams.setTimeout(params, getTimeout(connectionPoolTimeoutMillis, remainingMillis));
+    }
+
+    /**
+     * @return the smaller of the positive values or 0 (no timeout) if both are 0.
+     */
+    private static int getTimeout(long timeoutMillis, long remainingMillis) {
+        long timeout;
+        if (timeoutMillis <= 0) {
+            timeout = remainingMillis;
+        } else if (remainingMillis <= 0) {
+            timeout = timeoutMillis;
+        } else {
+            timeout = Math.min(timeoutMillis, remainingMillis);
+        }
+        return (int) Math.min(timeout, Integer.MAX_VALUE);
+    }
+
+    private static RedmineTransportException transportError(IOException e) {
+        if (e instanceof SocketTimeoutException || e instanceof ConnectTimeoutException) {
+            return new RedmineTimeoutException(e);
+        }
+        return new RedmineTransportException(e);
+    }
+
+    /**
+     * Waits for the limiter, but not longer than the time left until the deadline.
+     *
+     * @return time spent waiting for the limiter in nanoseconds.
+     * @throws RedmineTimeoutException the request can't be sent before the deadline.
+     */
+    private static long acquire(RequestLimiter limiter, URI uri, Deadline deadline)
+            throws RedmineCommunicationException {
+        try {
+            if (deadline == null) {
+                return limiter.acquire(uri);
+            }
+            long queued = limiter.tryAcquire(uri, deadline.getRemainingMillis(), TimeUnit.MILLISECONDS);
+            if (queued < 0) {
+                throw new RedmineTimeoutException("Call deadline has passed while waiting for the request limiter"
+                        + " to send " + uri);
+            }
+            return queued;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RedmineCommunicationException("Interrupted while waiting to send a request to " + uri);
+        }
+    }
+
+    /**
+     * @return delay before the next attempt or -1 if the request must not be repeated.
+     */
+    private long getRetryDelay(HttpRequest request, RedmineException error, int attempt, boolean restartable) {
+        RetryPolicy policy = retryPolicy;
+        if (attempt >= policy.getMaxAttempts() || !restartable
+                || !RetryPolicy.isIdempotent(request.getRequestLine().getMethod())) {
+            return -1;
+        }
+        if (request instanceof HttpEntityEnclosingRequest) {
+            HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            if (entity != null && !entity.isRepeatable()) {
+                return -1;
+            }
+        }
+        if (error instanceof RedmineUnavailableException) {
+            return policy.getDelayMillis(attempt, ((RedmineUnavailableException) error).getRetryAfterMillis());
+        }
+        if (error instanceof RedmineTransportException) {
+            return policy.getDelayMillis(attempt, -1);
+        }
+        return -1;
+    }
+
+    /**
+     * @return whether the response has "206 Partial Content" status.
+     * @throws RedmineCommunicationException the response is not successful. An error page
+     *                                       must not be saved as the downloaded content.
+     */
+    private boolean checkDownloadStatus(HttpResponse httpResponse, boolean partialAllowed)
+            throws RedmineException {
+        int responseCode = httpResponse.getStatusLine().getStatusCode();
+        if (responseCode == HttpStatus.SC_OK) {
+            return false;
+        }
+        if (partialAllowed && responseCode == HttpStatus.SC_PARTIAL_CONTENT) {
+            return true;
+        }
+        releaseConnection(httpResponse);
+        throw new RedmineCommunicationException("Download failed, server returned " + httpResponse.getStatusLine());
+    }
+
+    /**
+     * Writes the content to the channel starting at the given position.
+     * Returns the position after the last written byte.
+     */
+    private static final class ChannelWriter implements ContentParser<Long> {
+        private final FileChannel channel;
+        private final long start;
+
+        private ChannelWriter(FileChannel channel, long start) {
+            this.channel = channel;
+            this.start = start;
+        }
+
+        @Override
+        public Long parse(InputStream content) throws IOException {
+            ReadableByteChannel source = Channels.newChannel(content);
+            long position = start;
+            long transferred;
+            while ((transferred = channel.transferFrom(source, position, DOWNLOAD_BUFFER_SIZE)) > 0) {
+                position += transferred;
+            }
+            return position;
+        }
+    }
+
+    /**
+     * Revalidates the cached response with "If-None-Match" / "If-Modified-Since" headers and
+     * parses it again when the server responds with "304 Not Modified", so every caller gets its
+     * own objects and may change them. Responses with validators are read into memory before
+     * parsing to be kept in the cache.
+     */
+    private <T> T sendConditionalRequest(HttpGet request, ContentParser<T> parser, ResponseCache cache,
+                                         RequestTracker tracker) throws RedmineException {
+        String key = request.getURI().toString();
+        ResponseCache.Entry cached = cache.get(key);
+        if (cached != null) {
+            if (cached.eTag != null) {
+                request.setHeader("If-None-Match", cached.eTag);
+            }
+            if (cached.lastModified != null) {
+                request.setHeader("If-Modified-Since", cached.lastModified);
+            }
+        }
+        HttpResponse httpResponse = execute(request, tracker);
+        if (cached != null && httpResponse.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+            releaseConnection(httpResponse);
+            return parseBuffered(cached.content, parser, tracker);
+        }
+        String eTag = getHeaderValue(httpResponse, "ETag");
+        String lastModified = getHeaderValue(httpResponse, "Last-Modified");
+        if (eTag == null && lastModified == null) {
+            return parse(httpResponse, parser, tracker);
+        }
+        byte[] content = readBytes(httpResponse.getEntity(), tracker);
+        cache.put(key, new ResponseCache.Entry(eTag, lastModified, content));
+        return parseBuffered(content, parser, tracker);
+    }
 
-        request.addHeader("Accept-Encoding", "gzip,deflate");
+    private static <T> T parseBuffered(byte[] content, ContentParser<T> parser, RequestTracker tracker)
+            throws RedmineException {
+        try {
+            return tracker.parseBuffered(parser, content);
+        } catch (IOException e) {
+            throw new RedmineFormatException(e);
+        }
+    }
+
+    /**
+     * @return the delay from "Retry-After" header (seconds or HTTP date) or -1 if there is no valid header.
+     */
+    private static long getRetryAfterMillis(HttpResponse response) {
+        String value = getHeaderValue(response, "Retry-After");
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Math.max(0, Long.parseLong(value.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            try {
+                return Math.max(0, DateUtils.parseDate(value).getTime() - System.currentTimeMillis());
+            } catch (DateParseException e1) {
+                return -1;
+            }
+        }
+    }
+
+    private static String getHeaderValue(HttpResponse response, String name) {
+        Header header = response.getFirstHeader(name);
+        return header == null ? null : header.getValue();
+    }
+
+    private <T> T parse(HttpResponse httpResponse, ContentParser<T> parser, RequestTracker tracker)
+            throws RedmineException {
+        HttpEntity responseEntity = httpResponse.getEntity();
+        try {
+            InputStream content = responseEntity == null
+                    ? new ByteArrayInputStream(new byte[0]) : responseEntity.getContent();
+            try {
+                return tracker.parse(parser, content);
+            } finally {
+                releaseConnection(httpResponse);
+            }
+        } catch (IOException e) {
+            throw transportError(e);
+        }
+    }
+
+    /**
+     * Sends the request and checks the response code. The response content is not read
+     * for successful responses.
+     */
+    private HttpResponse execute(HttpRequest request, RequestTracker tracker) throws RedmineException {
+        logger.debug(request.getRequestLine().toString());
+        evictIdleConnections();
+
+        Header currentAuthHeader = authHeader;
+        if (currentAuthHeader != null
+                && isAuthOrigin(URIConfigurator.getOrigin(((HttpUriRequest) request).getURI()))) {
+            request.setHeader(currentAuthHeader);
+        }
+
+        if (!request.containsHeader(ACCEPT_ENCODING_HEADER.getName())) {
+            request.setHeader(ACCEPT_ENCODING_HEADER);
+        }
+        for (RequestInterceptor interceptor : tracker.getInterceptors()) {
+            interceptor.beforeSend(request, tracker);
+        }
         HttpResponse httpResponse;
+        HttpContext context = new BasicHttpContext();
+        context.setAttribute(RequestTracker.CONTEXT_ATTRIBUTE, tracker);
         try {
-            httpResponse = httpclient.execute((HttpUriRequest) request);
+            httpResponse = httpclient.execute((HttpUriRequest) request, context);
         } catch (ClientProtocolException e1) {
             throw new RedmineFormatException(e1);
         } catch (IOException e1) {
-            throw new RedmineTransportException(e1);
+            throw transportError(e1);
         }
 
         int responseCode = httpResponse.getStatusLine().getStatusCode();
+        tracker.responseReceived(responseCode);
         if (responseCode == HttpStatus.SC_UNAUTHORIZED) {
+            releaseConnection(httpResponse);
             throw new RedmineAuthenticationException("Authorization error. Please check if you provided a valid API access key or Login and Password and REST API service is enabled on the server.");
         }
         if (responseCode == HttpStatus.SC_FORBIDDEN) {
+            releaseConnection(httpResponse);
             throw new NotAuthorizedException("Forbidden. Please check the user has proper permissions.");
         }
 
-        HttpEntity responseEntity = httpResponse.getEntity();
-        String responseBody;
-        try {
-            responseBody = EntityUtils.toString(responseEntity);
-        } catch (ParseException e) {
-            throw new RedmineFormatException(e);
-        } catch (IOException e) {
-            throw new RedmineTransportException(e);
-        }
-
         if (responseCode == HttpStatus.SC_NOT_FOUND) {
+            String responseBody = readBody(httpResponse.getEntity(), tracker);
             throw new NotFoundException("Server returned '404 not found'. response body:" + responseBody);
         }
 
         if (responseCode == HttpStatus.SC_UNPROCESSABLE_ENTITY) {
+            String responseBody = readBody(httpResponse.getEntity(), tracker);
             List<String> errors = RedmineXMLParser.parseErrors(responseBody);
             throw new RedmineProcessingException(errors);
         }
+        if (retryPolicy.isRetryableStatus(responseCode)) {
+            releaseConnection(httpResponse);
+            throw new RedmineUnavailableException("Server returned " + httpResponse.getStatusLine(), responseCode,
+                    getRetryAfterMillis(httpResponse));
+        }
         /* 422 "invalid"
           <?xml version="1.0" encoding="UTF-8"?>
           <errors>
@@ -94,8 +680,103 @@ public class Communicator {
             <error>Identifier has already been taken</error>
           </errors>
            */
-        httpclient.getConnectionManager().shutdown();
-        return responseBody;
+        return httpResponse;
+    }
+
+    private static String readBody(HttpEntity responseEntity, final RequestTracker tracker) throws RedmineException {
+        try {
+            return EntityUtils.toString(new HttpEntityWrapper(responseEntity) {
+                @Override
+                public InputStream getContent() throws IOException {
+                    return tracker.wrapContent(super.getContent());
+                }
+            });
+        } catch (ParseException e) {
+            throw new RedmineFormatException(e);
+        } catch (IOException e) {
+            throw transportError(e);
+        }
+    }
+
+    private static byte[] readBytes(HttpEntity responseEntity, final RequestTracker tracker) throws RedmineException {
+        if (responseEntity == null) {
+            return new byte[0];
+        }
+        try {
+            return EntityUtils.toByteArray(new HttpEntityWrapper(responseEntity) {
+                @Override
+                public InputStream getContent() throws IOException {
+                    return tracker.wrapContent(super.getContent());
+                }
+            });
+        } catch (IOException e) {
+            throw transportError(e);
+        }
+    }
+
+    private void afterResponse(RequestTracker tracker, Object result) {
+        RequestInterceptor[] chain = tracker.getInterceptors();
+        for (int i = chain.length - 1; i >= 0; i--) {
+            try {
+                chain[i].afterResponse(tracker, result);
+            } catch (RuntimeException e) {
+                logger.error(e, "interceptor failed to process response of " + tracker.getMethod() + " "
+                        + tracker.getUri());
+            }
+        }
+    }
+
+    private void onError(RequestTracker tracker, Exception error) {
+        RequestInterceptor[] chain = tracker.getInterceptors();
+        for (int i = chain.length - 1; i >= 0; i--) {
+            try {
+                chain[i].onError(tracker, error);
+            } catch (RuntimeException e) {
+                logger.error(e, "interceptor failed to process error of " + tracker.getMethod() + " "
+                        + tracker.getUri());
+            }
+        }
+    }
+
+    /**
+     * Reports the request to the metrics.
+     */
+    private void finish(RequestTracker tracker) {
+        RedmineMetrics currentMetrics = metrics;
+        if (currentMetrics == NoOpRedmineMetrics.INSTANCE) {
+            return;
+        }
+        try {
+            currentMetrics.requestCompleted(tracker.getStatistics());
+        } catch (RuntimeException e) {
+            logger.error(e, "metrics failed to process " + tracker.getMethod() + " " + tracker.getUri());
+        }
+    }
+
+    /**
+     * The connection goes back to the pool only after the response content is consumed.
+     */
+    private void releaseConnection(HttpResponse httpResponse) {
+        try {
+            EntityUtils.consume(httpResponse.getEntity());
+        } catch (IOException e) {
+            logger.debug("can't release the connection: " + e);
+        }
+    }
+
+    /**
+     * Closes expired and idle pooled connections. This is done from the request thread
+     * at most once per idle timeout period, so no dedicated eviction thread is needed.
+     */
+    private void evictIdleConnections() {
+        long now = System.currentTimeMillis();
+        if (now - lastEvictionTime < idleConnectionTimeoutMillis) {
+            return;
+        }
+        lastEvictionTime = now;
+        ClientConnectionManager connectionManager = httpclient.getConnectionManager();
+        connectionManager.closeExpiredConnections();
+        connectionManager.closeIdleConnections(idleConnectionTimeoutMillis, TimeUnit.MILLISECONDS);
     }
 
     private void configureProxy(DefaultHttpClient httpclient) {
@@ -120,13 +801,179 @@ public class Communicator {
         }
     }
 
+    public void setMaxConnections(int maxConnections) {
+        getPoolingConnectionManager().setMaxTotal(maxConnections);
+    }
+
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        getPoolingConnectionManager().setDefaultMaxPerRoute(maxConnectionsPerRoute);
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return getPoolingConnectionManager().getDefaultMaxPerRoute();
+    }
+
+    /**
+     * @param idleConnectionTimeoutMillis pooled connections unused for this time are closed.
+     */
+    public void setIdleConnectionTimeout(long idleConnectionTimeoutMillis) {
+        this.idleConnectionTimeoutMillis = idleConnectionTimeoutMillis;
+    }
+
+    /**
+     * @param keepAliveMillis how long to keep a connection open when the server does not send
+     *                        a "Keep-Alive" header.
+     */
+    public void setKeepAliveDuration(long keepAliveMillis) {
+        this.keepAliveMillis = keepAliveMillis;
+    }
+
+    /**
+     * @param connectTimeoutMillis time to wait for a new connection to be established, 0 for no limit.
+     */
+    public void setConnectTimeout(long connectTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+    }
+
+    /**
+     * @param readTimeoutMillis time to wait for the next data from the server, 0 for no limit.
+     */
+    public void setReadTimeout(long readTimeoutMillis) {
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    /**
+     * @param connectionPoolTimeoutMillis time to wait for a free connection in the pool, 0 for no limit.
+     */
+    public void setConnectionPoolTimeout(long connectionPoolTimeoutMillis) {
+        this.connectionPoolTimeoutMillis = connectionPoolTimeoutMillis;
+    }
+
+    /**
+     * @param callTimeoutMillis time for a request including retries when it's not a part of a call
+     *                          with a {@link Deadline}, 0 for no limit.
+     */
+    public void setCallTimeout(long callTimeoutMillis) {
+        this.callTimeoutMillis = callTimeoutMillis;
+    }
+
+    public long getCallTimeout() {
+        return callTimeoutMillis;
+    }
+
+    /**
+     * @param responseCache cache for the parsed results of GET requests sent with a {@link ContentParser}
+     *                      or NULL to disable conditional requests.
+     */
+    public void setResponseCache(ResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    /**
+     * @param metrics receives statistics of all requests, NULL to disable.
+     */
+    public void setMetrics(RedmineMetrics metrics) {
+        this.metrics = metrics == null ? NoOpRedmineMetrics.INSTANCE : metrics;
+    }
+
+    /**
+     * @param retryPolicy how to repeat failed requests, NULL for {@link RetryPolicy#NONE}.
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy == null ? RetryPolicy.NONE : retryPolicy;
+    }
+
+    /**
+     * @param requestLimiter limits for requests to the server, NULL for no limits.
+     */
+    public void setRequestLimiter(RequestLimiter requestLimiter) {
+        this.requestLimiter = requestLimiter;
+    }
+
+    /**
+     * @param circuitBreaker the breaker to stop sending requests to a failing server, NULL for none.
+     */
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * @param uri any URI on the server.
+     * @return the circuit breaker state for the server, {@link CircuitBreaker.State#CLOSED} if there's no breaker.
+     */
+    public CircuitBreaker.State getCircuitBreakerState(URI uri) {
+        CircuitBreaker breaker = circuitBreaker;
+        return breaker == null ? CircuitBreaker.State.CLOSED : breaker.getState(uri);
+    }
+
+    public void addInterceptor(RequestInterceptor interceptor) {
+        interceptors.add(interceptor);
+    }
+
+    public void removeInterceptor(RequestInterceptor interceptor) {
+        interceptors.remove(interceptor);
+    }
+
+    private ThreadSafeClientConnManager getPoolingConnectionManager() {
+        return (ThreadSafeClientConnManager) httpclient.getConnectionManager();
+    }
+
+    /**
+     * Closes all pooled connections. The communicator can't be used after this call.
+     */
+    public void shutdown() {
+        httpclient.getConnectionManager().shutdown();
+    }
+
+    /**
+     * Sets the login and the password for "Basic" authentication, the change is seen by all
+     * requests sent after it. Replaces the key set by {@link #setApiKeyHeader(String)}.
+     *
+     * @param login NULL to send no credentials.
+     */
     public void setCredentials(String login, String password) {
-        this.login = login;
-        this.password = password;
+        if (login == null) {
+            this.authHeader = null;
+            return;
+        }
+        // replaced because of http://code.google.com/p/redmine-java-api/issues/detail?id=72
+//			httpclient.getCredentialsProvider().setCredentials(
+//                new AuthScope(AuthScope.ANY_HOST, AuthScope.ANY_PORT),
+//                new UsernamePasswordCredentials(login, password));
+        String encoded;
+        try {
+            encoded = String.valueOf(Base64Encoder.encode((login + ':' + password).getBytes(CHARSET)));
+        } catch (UnsupportedEncodingException e) {
+            throw new RedmineInternalError(e);
+        }
+        this.authHeader = new BasicHeader("Authorization", "Basic: " + encoded);
+    }
+
+    /**
+     * @param serverURI the auth header is sent only to URIs with the protocol, host and port of
+     *                  this URI. NULL (default) sends it with every request.
+     */
+    public void setAuthenticatedServer(URI serverURI) {
+        this.authOrigin = serverURI == null ? null : URIConfigurator.getOrigin(serverURI);
+    }
+
+    /**
+     * Sends the API access key in "X-Redmine-API-Key" header, so it does not appear in URIs.
+     * Replaces the credentials set by {@link #setCredentials(String, String)}.
+     *
+     * @param apiAccessKey NULL to send no key.
+     */
+    public void setApiKeyHeader(String apiAccessKey) {
+        this.authHeader = apiAccessKey == null ? null : new BasicHeader(API_KEY_HEADER, apiAccessKey);
     }
 
     public String sendGet(URI uri) throws RedmineException {
         HttpGet http = new HttpGet(uri);
         return sendRequest(http);
     }
+
+    public <T> T sendGet(URI uri, ContentParser<T> parser) throws RedmineException {
+        HttpGet http = new HttpGet(uri);
+        return sendRequest(http, parser);
+    }
 }
@@ -0,0 +1,14 @@
+package org.redmine.ta.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Converts the (already decompressed) response content into a result object while it is
+ * being received, so the response never has to be kept in memory as a whole.
+ *
+ * @see Communicator#sendRequest(org.apache.http.HttpRequest, ContentParser)
+ */
+public interface ContentParser<T> {
+    T parse(InputStream content) throws IOException;
+}
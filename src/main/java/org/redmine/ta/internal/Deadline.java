@@ -0,0 +1,81 @@
+package org.redmine.ta.internal;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The time by which a high-level call, like loading all pages of a list, must be finished.
+ * The deadline of the current call is kept in a thread local variable, so every request sent
+ * for the call gets only the remaining time. Worker threads loading pages for the call
+ * {@link #enter(Deadline) enter} the caller's deadline.
+ */
+public final class Deadline {
+
+    private static final ThreadLocal<Deadline> current = new ThreadLocal<Deadline>();
+
+    private final long deadlineNanos;
+
+    private Deadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * @return the deadline in the given time from now.
+     */
+    public static Deadline after(long timeoutMillis) {
+        return new Deadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+    }
+
+    /**
+     * @return the deadline of the call made by the current thread or NULL if there is none.
+     */
+    public static Deadline current() {
+        return current.get();
+    }
+
+    /**
+     * Starts a call which must be finished in the given time. If the thread is already making
+     * a call with an earlier deadline, the earlier one is kept.
+     *
+     * @param timeoutMillis the call timeout, 0 for no timeout.
+     * @return the deadline to pass to {@link #exit(Deadline)} when the call is finished.
+     */
+    public static Deadline enter(long timeoutMillis) {
+        return enter(timeoutMillis > 0 ? after(timeoutMillis) : null);
+    }
+
+    /**
+     * Same as {@link #enter(long)} for the known deadline.
+     *
+     * @param deadline the deadline or NULL for none.
+     */
+    public static Deadline enter(Deadline deadline) {
+        Deadline previous = current.get();
+        if (deadline != null && (previous == null || deadline.deadlineNanos - previous.deadlineNanos < 0)) {
+            current.set(deadline);
+        }
+        return previous;
+    }
+
+    /**
+     * Restores the deadline returned by {@link #enter(long)}.
+     */
+    public static void exit(Deadline previous) {
+        if (previous == null) {
+            current.remove();
+        } else {
+            current.set(previous);
+        }
+    }
+
+    /**
+     * @return time left in milliseconds, not positive when the deadline has passed.
+     */
+    public long getRemainingMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+    }
+
+    @Override
+    public String toString() {
+        return "Deadline{remainingMillis=" + getRemainingMillis() + '}';
+    }
+}
@@ -3,13 +3,13 @@ package org.redmine.ta.internal;
 import java.security.KeyStore;
 
 import org.apache.http.HttpVersion;
-import org.apache.http.conn.ClientConnectionManager;
 import org.apache.http.conn.scheme.PlainSocketFactory;
 import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.scheme.SchemeRegistry;
 import org.apache.http.conn.ssl.SSLSocketFactory;
 import org.apache.http.impl.client.ContentEncodingHttpClient;
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
 import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
 import org.apache.http.params.BasicHttpParams;
 import org.apache.http.params.HttpParams;
@@ -17,7 +17,25 @@ import org.apache.http.params.HttpProtocolParams;
 import org.apache.http.protocol.HTTP;
 
 class HttpUtil {
-    public static DefaultHttpClient getNewHttpClient() {
+
+    /**
+     * Creates a client backed by a pool of connections. The client is meant to be
+     * created once and reused for all requests, so that TCP and SSL handshakes are only
+     * paid when a new pooled connection has to be opened.
+     */
+    public static DefaultHttpClient getNewHttpClient(int maxConnections, int maxConnectionsPerRoute) {
+        HttpParams params = new BasicHttpParams();
+        HttpProtocolParams.setVersion(params, HttpVersion.HTTP_1_1);
+        HttpProtocolParams.setContentCharset(params, HTTP.UTF_8);
+
+        ThreadSafeClientConnManager ccm = new ThreadSafeClientConnManager(createSchemeRegistry());
+        ccm.setMaxTotal(maxConnections);
+        ccm.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+
+        return new ContentEncodingHttpClient(ccm, params);
+    }
+
+    private static SchemeRegistry createSchemeRegistry() {
         try {
             KeyStore trustStore = KeyStore.getInstance(KeyStore.getDefaultType());
             trustStore.load(null, null);
@@ -25,19 +43,12 @@ class HttpUtil {
             SSLSocketFactory sf = new FakeSSLSocketFactory(trustStore);
             sf.setHostnameVerifier(SSLSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER);
 
-            HttpParams params = new BasicHttpParams();
-            HttpProtocolParams.setVersion(params, HttpVersion.HTTP_1_1);
-            HttpProtocolParams.setContentCharset(params, HTTP.UTF_8);
-
             SchemeRegistry registry = new SchemeRegistry();
             registry.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
             registry.register(new Scheme("https", sf, 443));
-
-            ClientConnectionManager ccm = new ThreadSafeClientConnManager(params, registry);
-
-            return new ContentEncodingHttpClient(ccm, params);
+            return registry;
         } catch (Exception e) {
-            return new ContentEncodingHttpClient();
+            return SchemeRegistryFactory.createDefault();
         }
     }
 }
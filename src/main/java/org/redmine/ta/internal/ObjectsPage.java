@@ -0,0 +1,30 @@
+package org.redmine.ta.internal;
+
+import java.util.List;
+
+/**
+ * One page of objects loaded from a "list" response, e.g. "issues.xml?offset=25&amp;limit=25".
+ */
+public final class ObjectsPage<T> {
+    private final List<T> objects;
+    private final int totalCount;
+
+    public ObjectsPage(List<T> objects, int totalCount) {
+        this.objects = objects;
+        this.totalCount = totalCount;
+    }
+
+    /**
+     * @return objects on this page, never NULL
+     */
+    public List<T> getObjects() {
+        return objects;
+    }
+
+    /**
+     * @return number of objects on the server or -1 if the server did not report it.
+     */
+    public int getTotalCount() {
+        return totalCount;
+    }
+}
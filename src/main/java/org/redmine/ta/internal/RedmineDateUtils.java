@@ -3,6 +3,7 @@ package org.redmine.ta.internal;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.TimeZone;
 
 /**
  * Redmine date conversion utils.
@@ -12,6 +13,14 @@ import java.util.Date;
 public final class RedmineDateUtils {
     private static final String REDMINE_START_DATE_FORMAT = "yyyy-MM-dd";
     private static final ThreadLocal<SimpleDateFormat> sdf = new LocalDateFormat(REDMINE_START_DATE_FORMAT);
+    private static final ThreadLocal<SimpleDateFormat> utcTimestampFormat = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+            format.setTimeZone(TimeZone.getTimeZone("UTC"));
+            return format;
+        }
+    };
 
     private static SimpleDateFormat getShortFormat() {
         SimpleDateFormat guess = sdf.get();
@@ -30,4 +39,11 @@ public final class RedmineDateUtils {
     public static Date parseShortDate(String date) throws ParseException {
         return getShortFormat().parse(date);
     }
+
+    /**
+     * @return timestamp as accepted by Redmine filters, e.g. "2012-03-01T10:15:00Z".
+     */
+    public static String formatTimestampUTC(Date date) {
+        return utcTimestampFormat.get().format(date);
+    }
 }
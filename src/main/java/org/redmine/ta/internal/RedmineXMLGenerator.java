@@ -4,6 +4,7 @@ import org.redmine.ta.beans.*;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
 
 /**
  * Can't use Castor here because this "post" format differs from "get" one. see
@@ -77,11 +78,38 @@ public class RedmineXMLGenerator {
             appendIfNotNull(b,"category_id",category.getId());
         }
 
+        appendUploads(b, issue.getAttachments());
+
         b.append("</issue>");
 
         return b.toString();
     }
 
+    /**
+     * Uploaded files (attachments with a token) are attached to the issue.
+     */
+    private static void appendUploads(StringBuilder b, List<Attachment> attachments) {
+        boolean started = false;
+        for (Attachment attachment : attachments) {
+            if (attachment.getToken() == null) {
+                continue;
+            }
+            if (!started) {
+                b.append("<uploads type=\"array\">");
+                started = true;
+            }
+            b.append("<upload>");
+            appendIfNotNull(b, "token", attachment.getToken());
+            appendIfNotNull(b, "filename", attachment.getFileName());
+            appendIfNotNull(b, "description", attachment.getDescription());
+            appendIfNotNull(b, "content_type", attachment.getContentType());
+            b.append("</upload>");
+        }
+        if (started) {
+            b.append("</uploads>");
+        }
+    }
+
     public static String toXML(Object o) {
         // Redmine objects don't have some common base class
         if (o instanceof TimeEntry) {
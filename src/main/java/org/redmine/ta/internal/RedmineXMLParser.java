@@ -15,6 +15,11 @@
 */
 package org.redmine.ta.internal;
 
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -22,6 +27,10 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -45,6 +54,8 @@ import org.xml.sax.InputSource;
 public class RedmineXMLParser {
 
     private static final int UNKNOWN = -1;
+    private static final int XML_CHECK_LENGTH = 500;
+    private static final String CHARSET = "UTF-8";
     private static final String MAPPING_PROJECTS_LIST = "/mapping_projects_list.xml";
     private static final String MAPPING_ISSUES = "/mapping_issues_list.xml";
     private static final String MAPPING_USERS = "/mapping_users.xml";
@@ -55,8 +66,12 @@ public class RedmineXMLParser {
     private static final String MAPPING_ATTACHMENTS = "/mapping_attachments_list.xml";
     private static final String MAPPING_NEWS = "/mapping_news_list.xml";
 
-    // TODO optimize : pre-load xml
+    private static final boolean STREAM_PARSER_AVAILABLE = isStreamParserAvailable();
+
     private static final Map<Class<?>, String> fromRedmineMap = new HashMap<Class<?>, String>();
+    private static final Map<String, Mapping> mappings = new HashMap<String, Mapping>();
+    private static final ConcurrentMap<String, Queue<Unmarshaller>> unmarshallers
+            = new ConcurrentHashMap<String, Queue<Unmarshaller>>();
     private static final Map<Class<?>, Collection<Pattern>> badPatterns = new HashMap<Class<?>, Collection<Pattern>>();
 
     static {
@@ -134,20 +149,37 @@ public class RedmineXMLParser {
         return parseObjectsFromXML(Project.class, xml);
     }
 
-    private static Unmarshaller getUnmarshaller(String configFile,
-                                                Class<?> classToUse) {
-//		String configFile = configFilesMap.get(classToUse);
-        InputSource inputSource = new InputSource(
-                RedmineXMLParser.class.getResourceAsStream(configFile));
-        ClassLoader cl = RedmineXMLParser.class.getClassLoader();
-        // Note: Castor XML is packed in a separate OSGI bundle, so
-        // must set the classloader so that Castor will see our classes
-        Mapping mapping = new Mapping(cl);
-        mapping.loadMapping(inputSource);
+    /**
+     * Unmarshallers are not thread-safe, so each one is taken from the pool for one response and
+     * returned with {@link #releaseUnmarshaller(String, Unmarshaller)} after it. The pool is not bound
+     * to threads, so short-lived (e.g. virtual) threads reuse them as well. It keeps as many
+     * unmarshallers as responses were parsed at the same time.
+     */
+    private static Unmarshaller getUnmarshaller(String key, String configFile, Class<?> classToUse) {
+        Queue<Unmarshaller> pool = unmarshallers.get(key);
+        Unmarshaller unmarshaller = pool == null ? null : pool.poll();
+        return unmarshaller != null ? unmarshaller : createUnmarshaller(getMapping(configFile), classToUse);
+    }
+
+    private static void releaseUnmarshaller(String key, Unmarshaller unmarshaller) {
+        Queue<Unmarshaller> pool = unmarshallers.get(key);
+        if (pool == null) {
+            Queue<Unmarshaller> newPool = new ConcurrentLinkedQueue<Unmarshaller>();
+            pool = unmarshallers.putIfAbsent(key, newPool);
+            if (pool == null) {
+                pool = newPool;
+            }
+        }
+        pool.offer(unmarshaller);
+    }
 
+    private static Unmarshaller createUnmarshaller(Mapping mapping, Class<?> classToUse) {
         Unmarshaller unmarshaller;
         try {
-            unmarshaller = new Unmarshaller(mapping);
+            // the mapping is shared between threads, don't let Castor initialize it concurrently
+            synchronized (mapping) {
+                unmarshaller = new Unmarshaller(mapping);
+            }
         } catch (MappingException e) {
             throw new RuntimeException(e);
         }
@@ -156,6 +188,26 @@ public class RedmineXMLParser {
         return unmarshaller;
     }
 
+    /**
+     * Each mapping file is read and parsed only once.
+     */
+    private static Mapping getMapping(String configFile) {
+        synchronized (mappings) {
+            Mapping mapping = mappings.get(configFile);
+            if (mapping == null) {
+                InputSource inputSource = new InputSource(
+                        RedmineXMLParser.class.getResourceAsStream(configFile));
+                ClassLoader cl = RedmineXMLParser.class.getClassLoader();
+                // Note: Castor XML is packed in a separate OSGI bundle, so
+                // must set the classloader so that Castor will see our classes
+                mapping = new Mapping(cl);
+                mapping.loadMapping(inputSource);
+                mappings.put(configFile, mapping);
+            }
+            return mapping;
+        }
+    }
+
     /**
      * @throws RuntimeException if the text does not start with a valid XML tag.
      */
@@ -178,12 +230,16 @@ public class RedmineXMLParser {
            body = removeBadTags(elementClass, body);
 
            String configFile = fromRedmineMap.get(elementClass);
-           Unmarshaller unmarshaller = getUnmarshaller(configFile, resultClass);
+           String key = configFile + ':' + resultClass.getName();
+           Unmarshaller unmarshaller = getUnmarshaller(key, configFile, resultClass);
 
            StringReader reader = null;
            try {
                reader = new StringReader(body);
-               return resultClass.cast(unmarshaller.unmarshal(reader));
+               T result = resultClass.cast(unmarshaller.unmarshal(reader));
+               // a failed unmarshaller may keep the state of the broken document, so it is dropped
+               releaseUnmarshaller(key, unmarshaller);
+               return result;
            } catch (Exception e) {
                throw new RuntimeException(e);
            } finally {
@@ -194,11 +250,113 @@ public class RedmineXMLParser {
        }
 
 	public static <T> List<T> parseObjectsFromXML(Class<T> classs, String body)	{
-    	return unmarshal(classs, body, ArrayList.class);
+        if (canUseStreamParser(classs)) {
+            verifyStartsAsXML(body);
+            return RedmineXMLStreamParser.parseObjects(classs, new StringReader(body));
+        }
+    	return parseObjectsWithCastor(classs, body);
     }
 
 	public static <T> T parseObjectFromXML(Class<T> classs, String xml) {
-    	return unmarshal(classs, xml, classs);
+        if (canUseStreamParser(classs)) {
+            verifyStartsAsXML(xml);
+            return RedmineXMLStreamParser.parseObject(classs, new StringReader(xml));
+        }
+    	return parseObjectWithCastor(classs, xml);
+    }
+
+    /**
+     * Parses a "list" response straight from the response content. Objects not supported by the
+     * stream parser are read into a String and parsed with Castor.
+     */
+    public static <T> ObjectsPage<T> parseObjectsPage(Class<T> classs, InputStream content) throws IOException {
+        InputStream verified = verifyStartsAsXML(content);
+        if (canUseStreamParser(classs)) {
+            return RedmineXMLStreamParser.parseObjectsPage(classs, verified);
+        }
+        String body = readString(verified);
+        return new ObjectsPage<T>(parseObjectsWithCastor(classs, body), parseObjectsTotalCount(body));
+    }
+
+    public static <T> T parseObjectFromXML(Class<T> classs, InputStream content) throws IOException {
+        InputStream verified = verifyStartsAsXML(content);
+        if (canUseStreamParser(classs)) {
+            List<T> objects = RedmineXMLStreamParser.parseObjectsPage(classs, verified).getObjects();
+            return objects.isEmpty() ? null : objects.get(0);
+        }
+        return parseObjectWithCastor(classs, readString(verified));
+    }
+
+    public static <T> ContentParser<ObjectsPage<T>> getObjectsPageParser(final Class<T> classs) {
+        return new ContentParser<ObjectsPage<T>>() {
+            @Override
+            public ObjectsPage<T> parse(InputStream content) throws IOException {
+                return parseObjectsPage(classs, content);
+            }
+        };
+    }
+
+    public static <T> ContentParser<T> getObjectParser(final Class<T> classs) {
+        return new ContentParser<T>() {
+            @Override
+            public T parse(InputStream content) throws IOException {
+                return parseObjectFromXML(classs, content);
+            }
+        };
+    }
+
+    /**
+     * Checks the beginning of the content the same way {@link #verifyStartsAsXML(String)} does.
+     *
+     * @return stream to read the whole content from, including the checked part.
+     */
+    static InputStream verifyStartsAsXML(InputStream content) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(content);
+        buffered.mark(XML_CHECK_LENGTH);
+        byte[] start = new byte[XML_CHECK_LENGTH];
+        int length = 0;
+        int read;
+        while (length < start.length && (read = buffered.read(start, length, start.length - length)) > 0) {
+            length += read;
+        }
+        buffered.reset();
+        verifyStartsAsXML(new String(start, 0, length, CHARSET));
+        return buffered;
+    }
+
+    private static String readString(InputStream content) throws IOException {
+        Reader reader = new InputStreamReader(content, CHARSET);
+        StringBuilder builder = new StringBuilder();
+        char[] buffer = new char[4096];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            builder.append(buffer, 0, read);
+        }
+        return builder.toString();
+    }
+
+    static <T> List<T> parseObjectsWithCastor(Class<T> classs, String body) {
+        return unmarshal(classs, body, ArrayList.class);
+    }
+
+    static <T> T parseObjectWithCastor(Class<T> classs, String xml) {
+        return unmarshal(classs, xml, classs);
+    }
+
+    private static boolean canUseStreamParser(Class<?> classs) {
+        return STREAM_PARSER_AVAILABLE && RedmineXMLStreamParser.supports(classs);
+    }
+
+    /**
+     * StAX is not available on Android, Castor is used for all objects there.
+     */
+    private static boolean isStreamParserAvailable() {
+        try {
+            Class.forName("javax.xml.stream.XMLInputFactory");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
     }
 
     public static List<User> parseUsersFromXML(String body) {
@@ -240,6 +398,27 @@ public class RedmineXMLParser {
         return errors;
     }
 
+    /**
+     * @param responseBody sample parameter:
+     * <pre>
+     * 	&lt;?xml version="1.0" encoding="UTF-8"?>
+     * 	&lt;upload>
+     * 		&lt;token>7167.ed1ccdb093229ca1bd0b043618d88743&lt;/token>
+     * 	&lt;/upload>
+     * </pre>
+     * @throws RuntimeException if the response has no token.
+     */
+    public static String parseUploadToken(String responseBody) {
+        verifyStartsAsXML(responseBody);
+        String openTag = "<token>";
+        int begin = responseBody.indexOf(openTag);
+        int end = responseBody.indexOf("</token>");
+        if (begin < 0 || end < begin) {
+            throw new RuntimeException("RedmineXMLParser: no upload token in the response:\n" + responseBody);
+        }
+        return responseBody.substring(begin + openTag.length(), end).trim();
+    }
+
     public static List<TimeEntry> parseTimeEntries(String xml) {
         return parseObjectsFromXML(TimeEntry.class, xml);
     }
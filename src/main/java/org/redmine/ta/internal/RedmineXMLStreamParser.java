@@ -0,0 +1,709 @@
+/*
+   Copyright 2010-2012 Alexey Skorokhodov.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package org.redmine.ta.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.redmine.ta.beans.Attachment;
+import org.redmine.ta.beans.CustomField;
+import org.redmine.ta.beans.Issue;
+import org.redmine.ta.beans.IssueCategory;
+import org.redmine.ta.beans.IssueRelation;
+import org.redmine.ta.beans.Journal;
+import org.redmine.ta.beans.Project;
+import org.redmine.ta.beans.TimeEntry;
+import org.redmine.ta.beans.Tracker;
+import org.redmine.ta.beans.User;
+import org.redmine.ta.beans.Version;
+
+/**
+ * StAX-based parser for the objects, which are loaded in large lists (issues, projects, users,
+ * time entries, versions). Binds XML elements straight to the beans, following the same rules
+ * as the Castor mapping files do. Other objects are still parsed with Castor.
+ *
+ * @see RedmineXMLParser
+ */
+final class RedmineXMLStreamParser {
+
+    private static final XMLInputFactory factory = createFactory();
+    private static final Map<Class<?>, BeanReader<?>> readers = new HashMap<Class<?>, BeanReader<?>>();
+
+    private static final RedmineDateHandler longDateHandler = new RedmineLongDateHandler();
+    private static final RedmineDateHandler shortDateHandler = new RedmineShortDateHandler();
+
+    private static final ThreadLocal<DatatypeFactory> datatypeFactory = new ThreadLocal<DatatypeFactory>() {
+        @Override
+        protected DatatypeFactory initialValue() {
+            try {
+                return DatatypeFactory.newInstance();
+            } catch (DatatypeConfigurationException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    };
+
+    static {
+        readers.put(Issue.class, new BeanReader<Issue>("issue") {
+            @Override
+            Issue read(XMLStreamReader reader) throws XMLStreamException {
+                return readIssue(reader);
+            }
+        });
+        readers.put(Project.class, new BeanReader<Project>("project") {
+            @Override
+            Project read(XMLStreamReader reader) throws XMLStreamException {
+                return readProject(reader);
+            }
+        });
+        readers.put(User.class, new BeanReader<User>("user") {
+            @Override
+            User read(XMLStreamReader reader) throws XMLStreamException {
+                return readUser(reader);
+            }
+        });
+        readers.put(TimeEntry.class, new BeanReader<TimeEntry>("time_entry") {
+            @Override
+            TimeEntry read(XMLStreamReader reader) throws XMLStreamException {
+                return readTimeEntry(reader);
+            }
+        });
+        readers.put(Version.class, new BeanReader<Version>("version") {
+            @Override
+            Version read(XMLStreamReader reader) throws XMLStreamException {
+                return readVersion(reader);
+            }
+        });
+    }
+
+    private RedmineXMLStreamParser() {
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory f = XMLInputFactory.newInstance();
+        f.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        f.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        return f;
+    }
+
+    static boolean supports(Class<?> classs) {
+        return readers.containsKey(classs);
+    }
+
+    /**
+     * Parses both "list" responses (&lt;issues type="array"...>&lt;issue>...) and single object
+     * responses (&lt;issue>...).
+     */
+    static <T> List<T> parseObjects(Class<T> classs, Reader xml) {
+        return readPage(getReader(classs), createReader(xml)).getObjects();
+    }
+
+    /**
+     * Same as {@link #parseObjects(Class, Reader)}, but reads the raw response content. The
+     * encoding is taken from the XML declaration.
+     */
+    static <T> ObjectsPage<T> parseObjectsPage(Class<T> classs, InputStream xml) throws IOException {
+        try {
+            return readPage(getReader(classs), createReader(xml));
+        } catch (RuntimeException e) {
+            // the content stream failed, e.g. the connection was reset while reading the response
+            IOException readError = findIOException(e);
+            if (readError != null) {
+                throw readError;
+            }
+            throw e;
+        }
+    }
+
+    private static IOException findIOException(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOException) {
+                return (IOException) cause;
+            }
+            if (cause instanceof XMLStreamException
+                    && ((XMLStreamException) cause).getNestedException() instanceof IOException) {
+                return (IOException) ((XMLStreamException) cause).getNestedException();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the objects and the "total_count" attribute of the root element (-1 if there's none).
+     */
+    private static <T> ObjectsPage<T> readPage(BeanReader<T> beanReader, XMLStreamReader reader) {
+        List<T> result = new ArrayList<T>();
+        int totalCount = -1;
+        try {
+            reader.nextTag();
+            if (beanReader.elementName.equals(reader.getLocalName())) {
+                result.add(beanReader.read(reader));
+            } else {
+                Integer total = getIntegerAttribute(reader, "total_count");
+                if (total != null) {
+                    totalCount = total;
+                }
+                while (nextChildElement(reader)) {
+                    if (beanReader.elementName.equals(reader.getLocalName())) {
+                        result.add(beanReader.read(reader));
+                    } else {
+                        skipElement(reader);
+                    }
+                }
+            }
+            return new ObjectsPage<T>(result, totalCount);
+        } catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        } finally {
+            close(reader);
+        }
+    }
+
+    /**
+     * @return the object or NULL if the response has no such object.
+     */
+    static <T> T parseObject(Class<T> classs, Reader xml) {
+        List<T> objects = parseObjects(classs, xml);
+        return objects.isEmpty() ? null : objects.get(0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> BeanReader<T> getReader(Class<T> classs) {
+        BeanReader<T> beanReader = (BeanReader<T>) readers.get(classs);
+        if (beanReader == null) {
+            throw new IllegalArgumentException("Unsupported class " + classs.getName());
+        }
+        return beanReader;
+    }
+
+    private static XMLStreamReader createReader(Reader xml) {
+        try {
+            // factory configuration is not changed after creation, but implementations
+            // do not promise thread safety of createXMLStreamReader()
+            synchronized (factory) {
+                return factory.createXMLStreamReader(xml);
+            }
+        } catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static XMLStreamReader createReader(InputStream xml) {
+        try {
+            synchronized (factory) {
+                return factory.createXMLStreamReader(xml);
+            }
+        } catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void close(XMLStreamReader reader) {
+        try {
+            reader.close();
+        } catch (XMLStreamException e) {
+            // nothing to do, the content is already parsed
+        }
+    }
+
+    private static Issue readIssue(XMLStreamReader reader) throws XMLStreamException {
+        Issue issue = new Issue();
+        while (nextChildElement(reader)) {
+            String name = reader.getLocalName();
+            if ("id".equals(name)) {
+                issue.setId(readInteger(reader));
+            } else if ("parent".equals(name)) {
+                issue.setParentId(getIntegerAttribute(reader, "id"));
+                skipElement(reader);
+            } else if ("subject".equals(name)) {
+                issue.setSubject(readText(reader));
+            } else if ("tracker".equals(name)) {
+                issue.setTracker(readTrackerReference(reader));
+            } else if ("fixed_version".equals(name)) {
+                issue.setTargetVersion(readVersionReference(reader));
+            } else if ("estimated_hours".equals(name)) {
+                issue.setEstimatedHours(readFloat(reader));
+            } else if ("spent_hours".equals(name)) {
+                issue.setSpentHours(readFloat(reader));
+            } else if ("done_ratio".equals(name)) {
+                issue.setDoneRatio(readInteger(reader));
+            } else if ("assigned_to".equals(name)) {
+                issue.setAssignee(readUserReference(reader));
+            } else if ("author".equals(name)) {
+                issue.setAuthor(readUserReference(reader));
+            } else if ("project".equals(name)) {
+                issue.setProject(readProjectReference(reader));
+            } else if ("priority".equals(name)) {
+                issue.setPriorityText(reader.getAttributeValue(null, "name"));
+                issue.setPriorityId(getIntegerAttribute(reader, "id"));
+                skipElement(reader);
+            } else if ("start_date".equals(name)) {
+                issue.setStartDate(readDate(reader, shortDateHandler));
+            } else if ("due_date".equals(name)) {
+                issue.setDueDate(readDate(reader, shortDateHandler));
+            } else if ("description".equals(name)) {
+                issue.setDescription(readText(reader));
+            } else if ("created_on".equals(name)) {
+                issue.setCreatedOn(readDate(reader, longDateHandler));
+            } else if ("updated_on".equals(name)) {
+                issue.setUpdatedOn(readDate(reader, longDateHandler));
+            } else if ("status".equals(name)) {
+                issue.setStatusId(getIntegerAttribute(reader, "id"));
+                issue.setStatusName(reader.getAttributeValue(null, "name"));
+                skipElement(reader);
+            } else if ("custom_fields".equals(name)) {
+                readCustomFields(reader, issue.getCustomFields());
+            } else if ("journals".equals(name)) {
+                readJournals(reader, issue.getJournals());
+            } else if ("relations".equals(name)) {
+                readRelations(reader, issue.getRelations());
+            } else if ("attachments".equals(name)) {
+                readAttachments(reader, issue.getAttachments());
+            } else if ("category".equals(name)) {
+                issue.setCategory(readCategoryReference(reader));
+            } else {
+                skipElement(reader);
+            }
+        }
+        return issue;
+    }
+
+    private static Project readProject(XMLStreamReader reader) throws XMLStreamException {
+        Project project = new Project();
+        while (nextChildElement(reader)) {
+            String name = reader.getLocalName();
+            if ("id".equals(name)) {
+                project.setId(readInteger(reader));
+            } else if ("parent".equals(name)) {
+                project.setParentId(getIntegerAttribute(reader, "id"));
+                skipElement(reader);
+            } else if ("name".equals(name)) {
+                project.setName(readText(reader));
+            } else if ("identifier".equals(name)) {
+                project.setIdentifier(readText(reader));
+            } else if ("description".equals(name)) {
+                project.setDescription(readText(reader));
+            } else if ("homepage".equals(name)) {
+                project.setHomepage(readText(reader));
+            } else if ("custom_fields".equals(name)) {
+                readCustomFields(reader, project.getCustomFields());
+            } else if ("created_on".equals(name)) {
+                project.setCreatedOn(readDate(reader, longDateHandler));
+            } else if ("updated_on".equals(name)) {
+                project.setUpdatedOn(readDate(reader, longDateHandler));
+            } else if ("trackers".equals(name)) {
+                project.setTrackers(readTrackers(reader));
+            } else {
+                skipElement(reader);
+            }
+        }
+        return project;
+    }
+
+    private static User readUser(XMLStreamReader reader) throws XMLStreamException {
+        User user = new User();
+        while (nextChildElement(reader)) {
+            String name = reader.getLocalName();
+            if ("id".equals(name)) {
+                user.setId(readInteger(reader));
+            } else if ("login".equals(name)) {
+                user.setLogin(readText(reader));
+            } else if ("password".equals(name)) {
+                user.setPassword(readText(reader));
+            } else if ("firstname".equals(name)) {
+                user.setFirstName(readText(reader));
+            } else if ("lastname".equals(name)) {
+                user.setLastName(readText(reader));
+            } else if ("mail".equals(name)) {
+                user.setMail(readText(reader));
+            } else if ("created_on".equals(name)) {
+                user.setCreatedOn(readDate(reader, longDateHandler));
+            } else if ("last_login_on".equals(name)) {
+                user.setLastLoginOn(readDate(reader, longDateHandler));
+            } else if ("custom_fields".equals(name)) {
+                readCustomFields(reader, user.getCustomFields());
+            } else {
+                skipElement(reader);
+            }
+        }
+        return user;
+    }
+
+    private static TimeEntry readTimeEntry(XMLStreamReader reader) throws XMLStreamException {
+        TimeEntry entry = new TimeEntry();
+        while (nextChildElement(reader)) {
+            String name = reader.getLocalName();
+            if ("id".equals(name)) {
+                entry.setId(readInteger(reader));
+            } else if ("issue".equals(name)) {
+                entry.setIssueId(getIntegerAttribute(reader, "id"));
+                skipElement(reader);
+            } else if ("project".equals(name)) {
+                entry.setProjectId(getIntegerAttribute(reader, "id"));
+                entry.setProjectName(reader.getAttributeValue(null, "name"));
+                skipElement(reader);
+            } else if ("user".equals(name)) {
+                entry.setUserId(getIntegerAttribute(reader, "id"));
+                entry.setUserName(reader.getAttributeValue(null, "name"));
+                skipElement(reader);
+            } else if ("activity".equals(name)) {
+                entry.setActivityId(getIntegerAttribute(reader, "id"));
+                entry.setActivityName(reader.getAttributeValue(null, "name"));
+                skipElement(reader);
+            } else if ("hours".equals(name)) {
+                entry.setHours(readFloat(reader));
+            } else if ("comments".equals(name)) {
+                entry.setComment(readText(reader));
+            } else if ("spent_on".equals(name)) {
+                entry.setSpentOn(readDate(reader, shortDateHandler));
+            } else if ("created_on".equals(name)) {
+                entry.setCreatedOn(readDate(reader, longDateHandler));
+            } else if ("updated_on".equals(name)) {
+                entry.setUpdatedOn(readDate(reader, longDateHandler));
+            } else {
+                skipElement(reader);
+            }
+        }
+        return entry;
+    }
+
+    private static Version readVersion(XMLStreamReader reader) throws XMLStreamException {
+        Version version = new Version();
+        while (nextChildElement(reader)) {
+            String name = reader.getLocalName();
+            if ("id".equals(name)) {
+                version.setId(readInteger(reader));
+            } else if ("name".equals(name)) {
+                version.setName(readText(reader));
+            } else if ("description".equals(name)) {
+                version.setDescription(readText(reader));
+            } else if ("status".equals(name)) {
+                version.setStatus(readText(reader));
+            } else if ("due_date".equals(name)) {
+                version.setDueDate(readDate(reader, shortDateHandler));
+            } else if ("created_on".equals(name)) {
+                version.setCreatedOn(readDate(reader, longDateHandler));
+            } else if ("updated_on".equals(name)) {
+                version.setUpdatedOn(readDate(reader, longDateHandler));
+            } else if ("project".equals(name)) {
+                version.setProject(readProjectReference(reader));
+            } else {
+                skipElement(reader);
+            }
+        }
+        return version;
+    }
+
+    private static void readCustomFields(XMLStreamReader reader, List<CustomField> fields) throws XMLStreamException {
+        while (nextChildElement(reader)) {
+            if ("custom_field".equals(reader.getLocalName())) {
+                CustomField field = new CustomField();
+                Integer id = getIntegerAttribute(reader, "id");
+                if (id != null) {
+                    field.setId(id);
+                }
+                field.setName(reader.getAttributeValue(null, "name"));
+                while (nextChildElement(reader)) {
+                    if ("value".equals(reader.getLocalName())) {
+                        field.setValue(readText(reader));
+                    } else {
+                        skipElement(reader);
+                    }
+                }
+                fields.add(field);
+            } else {
+                skipElement(reader);
+            }
+        }
+    }
+
+    private static void readJournals(XMLStreamReader reader, List<Journal> journals) throws XMLStreamException {
+        while (nextChildElement(reader)) {
+            if ("journal".equals(reader.getLocalName())) {
+                Journal journal = new Journal();
+                Integer id = getIntegerAttribute(reader, "id");
+                if (id != null) {
+                    journal.setId(id);
+                }
+                while (nextChildElement(reader)) {
+                    String name = reader.getLocalName();
+                    if ("user".equals(name)) {
+                        journal.setUser(readUserReference(reader));
+                    } else if ("notes".equals(name)) {
+                        journal.setNotes(readText(reader));
+                    } else if ("created_on".equals(name)) {
+                        journal.setCreatedOn(readDate(reader, longDateHandler));
+                    } else {
+                        skipElement(reader);
+                    }
+                }
+                journals.add(journal);
+            } else {
+                skipElement(reader);
+            }
+        }
+    }
+
+    private static void readRelations(XMLStreamReader reader, List<IssueRelation> relations) throws XMLStreamException {
+        while (nextChildElement(reader)) {
+            if ("relation".equals(reader.getLocalName())) {
+                IssueRelation relation = new IssueRelation();
+                relation.setId(getIntegerAttribute(reader, "id"));
+                relation.setIssueId(getIntegerAttribute(reader, "issue_id"));
+                relation.setIssueToId(getIntegerAttribute(reader, "issue_to_id"));
+                relation.setType(reader.getAttributeValue(null, "relation_type"));
+                relation.setDelay(getIntegerAttribute(reader, "delay"));
+                skipElement(reader);
+                relations.add(relation);
+            } else {
+                skipElement(reader);
+            }
+        }
+    }
+
+    private static void readAttachments(XMLStreamReader reader, List<Attachment> attachments) throws XMLStreamException {
+        while (nextChildElement(reader)) {
+            if ("attachment".equals(reader.getLocalName())) {
+                attachments.add(readAttachment(reader));
+            } else {
+                skipElement(reader);
+            }
+        }
+    }
+
+    private static Attachment readAttachment(XMLStreamReader reader) throws XMLStreamException {
+        Attachment attachment = new Attachment();
+        while (nextChildElement(reader)) {
+            String name = reader.getLocalName();
+            if ("id".equals(name)) {
+                attachment.setId(readInteger(reader));
+            } else if ("filename".equals(name)) {
+                attachment.setFileName(readText(reader));
+            } else if ("filesize".equals(name)) {
+                String text = readText(reader).trim();
+                if (text.length() > 0) {
+                    attachment.setFileSize(Long.parseLong(text));
+                }
+            } else if ("content_type".equals(name)) {
+                attachment.setContentType(readText(reader));
+            } else if ("description".equals(name)) {
+                attachment.setDescription(readText(reader));
+            } else if ("content_url".equals(name)) {
+                attachment.setContentURL(readText(reader));
+            } else if ("created_on".equals(name)) {
+                attachment.setCreatedOn(readISODate(reader));
+            } else if ("author".equals(name)) {
+                attachment.setAuthor(readUserReference(reader));
+            } else {
+                skipElement(reader);
+            }
+        }
+        return attachment;
+    }
+
+    /**
+     * &lt;trackers>&lt;tracker id="1" name="Bug"/>...&lt;/trackers>
+     */
+    private static List<Tracker> readTrackers(XMLStreamReader reader) throws XMLStreamException {
+        List<Tracker> trackers = new ArrayList<Tracker>();
+        while (nextChildElement(reader)) {
+            if ("tracker".equals(reader.getLocalName())) {
+                trackers.add(readTrackerReference(reader));
+            } else {
+                skipElement(reader);
+            }
+        }
+        return trackers;
+    }
+
+    private static Tracker readTrackerReference(XMLStreamReader reader) throws XMLStreamException {
+        Tracker tracker = new Tracker();
+        tracker.setId(getIntegerAttribute(reader, "id"));
+        tracker.setName(reader.getAttributeValue(null, "name"));
+        skipElement(reader);
+        return tracker;
+    }
+
+    private static Version readVersionReference(XMLStreamReader reader) throws XMLStreamException {
+        Version version = new Version();
+        version.setId(getIntegerAttribute(reader, "id"));
+        version.setName(reader.getAttributeValue(null, "name"));
+        skipElement(reader);
+        return version;
+    }
+
+    private static IssueCategory readCategoryReference(XMLStreamReader reader) throws XMLStreamException {
+        IssueCategory category = new IssueCategory();
+        category.setId(getIntegerAttribute(reader, "id"));
+        category.setName(reader.getAttributeValue(null, "name"));
+        skipElement(reader);
+        return category;
+    }
+
+    private static User readUserReference(XMLStreamReader reader) throws XMLStreamException {
+        User user = new User();
+        user.setId(getIntegerAttribute(reader, "id"));
+        String fullName = reader.getAttributeValue(null, "name");
+        if (fullName != null) {
+            user.setFullName(fullName);
+        }
+        skipElement(reader);
+        return user;
+    }
+
+    private static Project readProjectReference(XMLStreamReader reader) throws XMLStreamException {
+        Project project = new Project();
+        project.setId(getIntegerAttribute(reader, "id"));
+        project.setName(reader.getAttributeValue(null, "name"));
+        project.setIdentifier(reader.getAttributeValue(null, "identifier"));
+        skipElement(reader);
+        return project;
+    }
+
+    /**
+     * Moves to the next child element of the current element.
+     *
+     * @return false if the end of the current element is reached.
+     */
+    private static boolean nextChildElement(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            }
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Moves to the end of the current element, ignoring its content.
+     */
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * @return text of the current element (whitespace preserved), ignoring any nested elements.
+     */
+    private static String readText(XMLStreamReader reader) throws XMLStreamException {
+        StringBuilder text = new StringBuilder();
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    if (depth == 1) {
+                        text.append(reader.getText());
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return text.toString();
+    }
+
+    private static Integer readInteger(XMLStreamReader reader) throws XMLStreamException {
+        return toInteger(readText(reader));
+    }
+
+    /**
+     * Empty values are loaded as NULL. see bug https://www.hostedredmine.com/issues/8240
+     */
+    private static Float readFloat(XMLStreamReader reader) throws XMLStreamException {
+        String text = readText(reader).trim();
+        return text.length() == 0 ? null : Float.valueOf(text);
+    }
+
+    private static Date readDate(XMLStreamReader reader, RedmineDateHandler handler) throws XMLStreamException {
+        String text = readText(reader);
+        if (text.length() == 0) {
+            return null;
+        }
+        try {
+            return handler.getDate(text);
+        } catch (ParseException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /**
+     * Full ISO 8601 dateTime, e.g. "2011-01-20T18:33:29-08:00" or "2011-01-21T02:33:29Z".
+     */
+    private static Date readISODate(XMLStreamReader reader) throws XMLStreamException {
+        String text = readText(reader).trim();
+        if (text.length() == 0) {
+            return null;
+        }
+        return datatypeFactory.get().newXMLGregorianCalendar(text).toGregorianCalendar().getTime();
+    }
+
+    private static Integer getIntegerAttribute(XMLStreamReader reader, String name) {
+        String value = reader.getAttributeValue(null, name);
+        return value == null ? null : toInteger(value);
+    }
+
+    private static Integer toInteger(String text) {
+        String trimmed = text.trim();
+        return trimmed.length() == 0 ? null : Integer.valueOf(trimmed);
+    }
+
+    private abstract static class BeanReader<T> {
+        private final String elementName;
+
+        BeanReader(String elementName) {
+            this.elementName = elementName;
+        }
+
+        /**
+         * Reads the current element. Leaves the reader at the end of the element.
+         */
+        abstract T read(XMLStreamReader reader) throws XMLStreamException;
+    }
+}
@@ -0,0 +1,235 @@
+package org.redmine.ta.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpRequest;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.redmine.ta.RequestContext;
+import org.redmine.ta.RequestInterceptor;
+import org.redmine.ta.RequestStatistics;
+
+/**
+ * Measures one request for {@link org.redmine.ta.RedmineMetrics} and keeps its context for
+ * {@link org.redmine.ta.RequestInterceptor}s. Used from the request thread only.
+ */
+final class RequestTracker implements RequestContext {
+
+    /**
+     * HTTP context attribute the tracker is kept in while HttpClient executes the request.
+     */
+    static final String CONTEXT_ATTRIBUTE = "redmine.request.tracker";
+
+    private final String method;
+    private final URI uri;
+    private final long startNanos;
+    private long queueNanos;
+    private long connectedNanos;
+    private long responseNanos;
+    private long parseNanos;
+    private long transferNanos;
+    private long wireBytes;
+    private long contentBytes;
+    private int statusCode;
+    private boolean completed;
+    private Map<String, Object> attributes;
+    private RequestInterceptor[] interceptors = new RequestInterceptor[0];
+
+    RequestTracker(String method, URI uri) {
+        this.method = method;
+        this.uri = uri;
+        this.startNanos = System.nanoTime();
+    }
+
+    @Override
+    public String getMethod() {
+        return method;
+    }
+
+    @Override
+    public URI getUri() {
+        return uri;
+    }
+
+    @Override
+    public String getEndpoint() {
+        return URIConfigurator.getEndpointName(method, uri);
+    }
+
+    @Override
+    public Class<?> getObjectType() {
+        return URIConfigurator.getObjectClass(uri);
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return attributes == null ? null : attributes.get(name);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        if (attributes == null) {
+            attributes = new HashMap<String, Object>();
+        }
+        attributes.put(name, value);
+    }
+
+    /**
+     * @param interceptors the interceptors called for this request, so all calls for one request
+     *                     see the same list even when it is changed concurrently.
+     */
+    void setInterceptors(RequestInterceptor[] interceptors) {
+        this.interceptors = interceptors;
+    }
+
+    RequestInterceptor[] getInterceptors() {
+        return interceptors;
+    }
+
+    /**
+     * @param queueNanos time spent waiting for {@link org.redmine.ta.RequestLimiter}.
+     */
+    void queued(long queueNanos) {
+        this.queueNanos = queueNanos;
+    }
+
+    /**
+     * Called when the connection is ready and the request is about to be sent.
+     */
+    void connected() {
+        if (connectedNanos == 0) {
+            connectedNanos = System.nanoTime();
+        }
+    }
+
+    void responseReceived(int statusCode) {
+        this.responseNanos = System.nanoTime();
+        this.statusCode = statusCode;
+    }
+
+    @Override
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    long getContentBytes() {
+        return contentBytes;
+    }
+
+    void completed() {
+        this.completed = true;
+    }
+
+    /**
+     * @return the entity which counts the content bytes as they come from the network.
+     */
+    HttpEntity wrapWireEntity(HttpEntity entity) {
+        return new HttpEntityWrapper(entity) {
+            @Override
+            public InputStream getContent() throws IOException {
+                return new CountingInputStream(super.getContent(), false);
+            }
+        };
+    }
+
+    /**
+     * @return the stream which counts the read content bytes and the time spent reading them.
+     */
+    InputStream wrapContent(InputStream content) {
+        return new CountingInputStream(content, true);
+    }
+
+    /**
+     * Runs the parser, the time spent in the parser except for reading the content is the parse time.
+     */
+    <T> T parse(ContentParser<T> parser, InputStream content) throws IOException {
+        long transferBefore = transferNanos;
+        long start = System.nanoTime();
+        try {
+            return parser.parse(wrapContent(content));
+        } finally {
+            parseNanos += System.nanoTime() - start - (transferNanos - transferBefore);
+        }
+    }
+
+    /**
+     * Runs the parser on the content, which was already read or taken from the cache,
+     * all the time is the parse time.
+     */
+    <T> T parseBuffered(ContentParser<T> parser, byte[] content) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return parser.parse(new ByteArrayInputStream(content));
+        } finally {
+            parseNanos += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public RequestStatistics getStatistics() {
+        long end = System.nanoTime();
+        long connectEnd = connectedNanos == 0 ? (responseNanos == 0 ? end : responseNanos) : connectedNanos;
+        long waitNanos = responseNanos == 0 ? 0 : responseNanos - connectEnd;
+        return new RequestStatistics(getEndpoint(), method, uri.toString(),
+                statusCode, completed, queueNanos, Math.max(connectEnd - startNanos - queueNanos, 0),
+                Math.max(waitNanos, 0), transferNanos,
+                Math.max(parseNanos, 0), end - startNanos, wireBytes, contentBytes);
+    }
+
+    static RequestTracker create(HttpRequest request) {
+        URI uri = request instanceof HttpUriRequest ? ((HttpUriRequest) request).getURI()
+                : URI.create(request.getRequestLine().getUri());
+        return new RequestTracker(request.getRequestLine().getMethod(), uri);
+    }
+
+    private final class CountingInputStream extends FilterInputStream {
+        private final boolean content;
+
+        private CountingInputStream(InputStream in, boolean content) {
+            super(in);
+            this.content = content;
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            int b = super.read();
+            count(b < 0 ? -1 : 1, start);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            int read = super.read(b, off, len);
+            count(read, start);
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long start = System.nanoTime();
+            long skipped = super.skip(n);
+            count(skipped, start);
+            return skipped;
+        }
+
+        private void count(long bytes, long start) {
+            if (content) {
+                transferNanos += System.nanoTime() - start;
+                if (bytes > 0) {
+                    contentBytes += bytes;
+                }
+            } else if (bytes > 0) {
+                wireBytes += bytes;
+            }
+        }
+    }
+}
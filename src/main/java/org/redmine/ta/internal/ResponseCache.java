@@ -0,0 +1,58 @@
+package org.redmine.ta.internal;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Contents of GET responses together with their "ETag" and "Last-Modified" validators.
+ * The contents are kept unparsed, so callers never share the parsed objects.
+ * The least recently used entries are removed when the cache is full.
+ *
+ * @see Communicator#setResponseCache(ResponseCache)
+ */
+public final class ResponseCache {
+
+    private final Map<String, Entry> entries;
+
+    public ResponseCache(final int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Max entries number must be positive: " + maxEntries);
+        }
+        entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    synchronized Entry get(String uri) {
+        return entries.get(uri);
+    }
+
+    synchronized void put(String uri, Entry entry) {
+        entries.put(uri, entry);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    static final class Entry {
+        final String eTag;
+        final String lastModified;
+        final byte[] content;
+
+        Entry(String eTag, String lastModified, byte[] content) {
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.content = content;
+        }
+    }
+}
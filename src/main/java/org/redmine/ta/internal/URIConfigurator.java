@@ -11,16 +11,18 @@ import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 public class URIConfigurator {
     private static final String XML_URL_POSTFIX = ".xml";
 
     private static final Map<Class<?>, String> urls = new HashMap<Class<?>, String>();
+    private static final Map<String, Class<?>> classes = new HashMap<String, Class<?>>();
     
     static {
         urls.put(User.class, "users");
@@ -35,25 +37,79 @@ public class URIConfigurator {
         urls.put(Attachment.class, "attachments");
         urls.put(News.class, "news");
         urls.put(IssueRelation.class, "relations");    	
+        for (Map.Entry<Class<?>, String> entry : urls.entrySet()) {
+            classes.put(entry.getValue(), entry.getKey());
+        }
     }
 
-    private final URL baseURL;
-    private final String apiAccessKey;
+    /**
+     * "protocol://host:port" of the server.
+     */
+    private final String serverPrefix;
+    /**
+     * Normalized "protocol://host:port" of the server, see {@link #getOrigin(String, String, int)}.
+     */
+    private final String serverOrigin;
+    private final String basePath;
+    /**
+     * Encoded "key=..." query parameter or NULL.
+     */
+    private final String keyParameter;
 
+    /**
+     * @param apiAccessKey the key added to URIs as "key" parameter or NULL if the key is not sent
+     *                     or is sent in a header.
+     */
     public URIConfigurator(String host, String apiAccessKey) {
         if (host == null || host.isEmpty()) {
             throw new IllegalArgumentException("The host parameter is NULL or empty");
         }
+        URL baseURL;
     	try {
-			this.baseURL = new URL(host);
+			baseURL = new URL(host);
 		} catch (MalformedURLException e) {
 			throw new IllegalArgumentException("Illegal host URL " + host, e);
 		}
-        this.apiAccessKey = apiAccessKey;
+        StringBuilder prefix = new StringBuilder(baseURL.getProtocol()).append("://").append(baseURL.getHost());
+        if (baseURL.getPort() > 0) {
+            prefix.append(':').append(baseURL.getPort());
+        }
+        this.serverPrefix = prefix.toString();
+        this.serverOrigin = getOrigin(baseURL.getProtocol(), baseURL.getHost(), baseURL.getPort());
+        this.basePath = baseURL.getPath();
+        this.keyParameter = apiAccessKey == null ? null : URLEncodedUtils.format(
+                Collections.singletonList(new BasicNameValuePair("key", apiAccessKey)), "UTF-8");
+    }
+
+    /**
+     * @return "protocol://host:port" in lower case with the default port of the protocol if the port is -1.
+     *         Credentials are sent only to URIs with the origin of the server.
+     */
+    public static String getOrigin(String scheme, String host, int port) {
+        String lowerScheme = scheme == null ? "" : scheme.toLowerCase(Locale.ENGLISH);
+        if (port < 0) {
+            port = "https".equals(lowerScheme) ? 443 : "http".equals(lowerScheme) ? 80 : port;
+        }
+        return lowerScheme + "://" + (host == null ? "" : host.toLowerCase(Locale.ENGLISH)) + ":" + port;
+    }
+
+    public static String getOrigin(URI uri) {
+        return getOrigin(uri.getScheme(), uri.getHost(), uri.getPort());
+    }
+
+    public String getServerOrigin() {
+        return serverOrigin;
+    }
+
+    /**
+     * @return "protocol://host[:port]/path" of the server without credentials.
+     */
+    public String getServerURI() {
+        return serverPrefix + basePath;
     }
 
     public URI createURI(String query) {
-        return createURI(query, new ArrayList<NameValuePair>());
+        return createURI(query, Collections.<NameValuePair>emptyList());
     }
 
     public URI createURI(String query, NameValuePair... param) {
@@ -62,27 +118,108 @@ public class URIConfigurator {
 
     /**
      * @param query e.g. "/issues.xml"
-     * @return URI with auth parameter "key" if not in "basic auth mode.
+     * @return URI with auth parameter "key" if the key is sent as a parameter.
      */
     public URI createURI(String query, List<NameValuePair> params) {
-        if (apiAccessKey != null) {
-        	/* NEVER modify passed parameters list! It may be unmodifiable list.*/
-        	params = new ArrayList<NameValuePair>(params);
-            params.add(new BasicNameValuePair("key", apiAccessKey));
+        String path = basePath;
+        if (!query.isEmpty()) {
+            path += "/" + query;
         }
-        URI uri;
-        try {
-            URL url = baseURL;
-            String path = url.getPath();
-            if (!query.isEmpty()) {
-                path += "/" + query;
+        StringBuilder uri = new StringBuilder(serverPrefix);
+        if (!path.startsWith("/")) {
+            uri.append('/');
+        }
+        uri.append(path).append('?').append(URLEncodedUtils.format(params, "UTF-8"));
+        if (keyParameter != null) {
+            if (!params.isEmpty()) {
+                uri.append('&');
             }
-            uri = URIUtils.createURI(url.getProtocol(), url.getHost(), url.getPort(), path,
-                    URLEncodedUtils.format(params, "UTF-8"), null);
+            uri.append(keyParameter);
+        }
+        try {
+            return new URI(uri.toString());
         } catch (URISyntaxException e) {
             throw new RedmineInternalError(e);
         }
-        return uri;
+    }
+
+    /**
+     * @param uri absolute URI returned by the server, e.g. attachment "content_url".
+     * @return the same URI with auth parameter "key" if the key is sent as a parameter and the URI
+     *         has the protocol, host and port of the server.
+     */
+    public URI addAPIKey(String uri) {
+        try {
+            URI parsed = new URI(uri);
+            if (keyParameter == null || !serverOrigin.equals(getOrigin(parsed))) {
+                return parsed;
+            }
+            String query = parsed.getRawQuery();
+            query = (query == null || query.isEmpty()) ? keyParameter : query + "&" + keyParameter;
+            return URIUtils.createURI(parsed.getScheme(), parsed.getHost(), parsed.getPort(),
+                    parsed.getRawPath(), query, parsed.getRawFragment());
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Illegal URI " + uri, e);
+        }
+    }
+
+    /**
+     * Names the request for statistics: HTTP method and the type of the requested object, like
+     * "GET Issue" for both "/issues.xml" and "/issues/5.xml". Other requests are named by the last
+     * path segment which is not a number, like "POST uploads".
+     *
+     * @see #getObjectClass(URI)
+     */
+    public static String getEndpointName(String method, URI uri) {
+        Class<?> objectClass = getObjectClass(uri);
+        if (objectClass != null) {
+            return method + " " + objectClass.getSimpleName();
+        }
+        String[] segments = getPathSegments(uri);
+        for (int i = segments.length - 1; i >= 0; i--) {
+            if (segments[i].length() > 0 && !isNumber(segments[i])) {
+                return method + " " + segments[i];
+            }
+        }
+        return method + " /";
+    }
+
+    /**
+     * @return the bean class of the last path segment known as a bean URL, like Version for
+     *         "/projects/3/versions.xml", or NULL if there is none.
+     */
+    public static Class<?> getObjectClass(URI uri) {
+        String[] segments = getPathSegments(uri);
+        for (int i = segments.length - 1; i >= 0; i--) {
+            Class<?> objectClass = classes.get(segments[i]);
+            if (objectClass != null) {
+                return objectClass;
+            }
+        }
+        return null;
+    }
+
+    private static String[] getPathSegments(URI uri) {
+        String path = uri.getRawPath();
+        if (path == null) {
+            return new String[0];
+        }
+        String[] segments = path.split("/");
+        for (int i = 0; i < segments.length; i++) {
+            if (segments[i].endsWith(XML_URL_POSTFIX)) {
+                segments[i] = segments[i].substring(0, segments[i].length() - XML_URL_POSTFIX.length());
+            }
+        }
+        return segments;
+    }
+
+    private static boolean isNumber(String segment) {
+        for (int i = 0; i < segment.length(); i++) {
+            if (!Character.isDigit(segment.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
     }
 
     private String getClassUrl(Class<?> zz) {
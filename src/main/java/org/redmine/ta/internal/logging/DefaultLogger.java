@@ -12,7 +12,7 @@ public final class DefaultLogger implements Logger {
     /**
      * default level is INFO
      */
-    private LogLevel logLevel = LogLevel.INFO;
+    private volatile LogLevel logLevel = LogLevel.INFO;
 
     public DefaultLogger(String identifier) {
         this.identifier = identifier;
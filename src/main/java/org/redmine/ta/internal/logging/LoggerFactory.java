@@ -53,12 +53,12 @@ public final class LoggerFactory {
     }
 
     /**
-     * Delivers the {@link Logger} associated to the given identifier.
+     * Delivers the {@link Logger} associated to the given identifier. Can be called from any thread.
      *
      * @param identifier the identifier
      * @return the {@link Logger}
      */
-    public static Logger getLogger(String identifier) {
+    public static synchronized Logger getLogger(String identifier) {
         // lazy loading of properties
         if (logLevel == null) {
             init();
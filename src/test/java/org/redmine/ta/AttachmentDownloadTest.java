@@ -0,0 +1,214 @@
+package org.redmine.ta;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.redmine.ta.beans.Attachment;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class AttachmentDownloadTest {
+
+    private final byte[] content = new byte[100003];
+    private final List<String> ranges = Collections.synchronizedList(new ArrayList<String>());
+    private final List<String> encodings = Collections.synchronizedList(new ArrayList<String>());
+    private volatile boolean rangesSupported = true;
+    private volatile boolean rangesCompressed;
+    private volatile long latencyMillis;
+
+    private HttpServer server;
+    private RedmineManager manager;
+    private Attachment attachment;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        new Random(1).nextBytes(content);
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/attachments/download/1/file.bin", new RangeHandler());
+        server.start();
+        String host = "http://localhost:" + server.getAddress().getPort();
+        manager = new RedmineManager(host, "key");
+        attachment = new Attachment();
+        attachment.setContentURL(host + "/attachments/download/1/file.bin");
+        attachment.setFileSize(content.length);
+        file = File.createTempFile("attachment", ".bin");
+    }
+
+    @After
+    public void tearDown() {
+        manager.shutdown();
+        server.stop(0);
+        file.delete();
+    }
+
+    @Test
+    public void rangesAreLoadedIntoTheirPlaces() throws Exception {
+        assertEquals(content.length, manager.downloadAttachmentContent(attachment, file, 4));
+        assertArrayEquals(content, readFile());
+        assertEquals(4, ranges.size());
+        assertTrue(ranges.contains("bytes=0-25000"));
+        assertTrue(ranges.contains("bytes=75003-100002"));
+    }
+
+    @SuppressWarnings("deprecation")
+    @Test
+    public void rangesAreLimitedByConnectionsPerHost() throws Exception {
+        manager.setMaxConnectionsPerHost(2);
+        manager.setConnectionPoolTimeout(100);
+        latencyMillis = 300;
+        assertEquals(content.length, manager.downloadAttachmentContent(attachment, file, 6));
+        assertArrayEquals(content, readFile());
+        assertEquals(2, ranges.size());
+    }
+
+    @Test
+    public void wholeContentIsUsedWhenRangesAreNotSupported() throws Exception {
+        rangesSupported = false;
+        assertEquals(content.length, manager.downloadAttachmentContent(attachment, file, 4));
+        assertArrayEquals(content, readFile());
+        assertEquals(1, ranges.size());
+    }
+
+    @Test
+    public void downloadIsResumedFromFileLength() throws Exception {
+        writeFile(1000);
+        assertEquals(content.length, manager.resumeAttachmentDownload(attachment, file));
+        assertArrayEquals(content, readFile());
+        assertEquals(Collections.singletonList("bytes=1000-"), ranges);
+    }
+
+    @Test
+    public void resumedDownloadStartsOverWhenRangesAreNotSupported() throws Exception {
+        rangesSupported = false;
+        writeFile(1000);
+        assertEquals(content.length, manager.resumeAttachmentDownload(attachment, file));
+        assertArrayEquals(content, readFile());
+    }
+
+    @Test
+    public void completeFileIsNotLoadedAgain() throws Exception {
+        writeFile(content.length);
+        assertEquals(content.length, manager.resumeAttachmentDownload(attachment, file));
+        assertTrue(ranges.isEmpty());
+    }
+
+    @Test
+    public void rangesAreRequestedWithoutCompression() throws Exception {
+        writeFile(1000);
+        manager.resumeAttachmentDownload(attachment, file);
+        assertEquals(Collections.singletonList("identity"), encodings);
+    }
+
+    @Test
+    public void compressedRangeIsRejected() throws Exception {
+        rangesCompressed = true;
+        writeFile(1000);
+        try {
+            manager.resumeAttachmentDownload(attachment, file);
+            fail("compressed range must not be written to the file");
+        } catch (RedmineFormatException e) {
+            // expected
+        }
+        assertEquals(1000, file.length());
+    }
+
+    @Test
+    public void resumedDownloadFailsWhenSizeDiffers() throws Exception {
+        attachment.setFileSize(content.length + 10);
+        writeFile(1000);
+        try {
+            manager.resumeAttachmentDownload(attachment, file);
+            fail("file is shorter than the attachment");
+        } catch (RedmineFormatException e) {
+            // expected
+        }
+    }
+
+    private void writeFile(int length) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content, 0, length);
+        } finally {
+            out.close();
+        }
+    }
+
+    private byte[] readFile() throws IOException {
+        byte[] result = new byte[(int) file.length()];
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            in.readFully(result);
+        } finally {
+            in.close();
+        }
+        return result;
+    }
+
+    /**
+     * Supports single "bytes=first-last" and "bytes=first-" ranges.
+     */
+    private class RangeHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            ranges.add(String.valueOf(range));
+            encodings.add(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+            if (latencyMillis > 0) {
+                try {
+                    Thread.sleep(latencyMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            int first = 0;
+            int last = content.length - 1;
+            int status = 200;
+            if (range != null && rangesSupported) {
+                String[] bounds = range.substring("bytes=".length()).split("-", -1);
+                first = Integer.parseInt(bounds[0]);
+                if (bounds[1].length() > 0) {
+                    last = Integer.parseInt(bounds[1]);
+                }
+                status = 206;
+                exchange.getResponseHeaders().add("Content-Range",
+                        "bytes " + first + "-" + last + "/" + content.length);
+            }
+            byte[] body = new byte[last - first + 1];
+            System.arraycopy(content, first, body, 0, body.length);
+            if (status == 206 && rangesCompressed) {
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+                gzip.write(body);
+                gzip.close();
+                body = compressed.toByteArray();
+                exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            }
+            exchange.sendResponseHeaders(status, body.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(body);
+            out.close();
+        }
+    }
+}
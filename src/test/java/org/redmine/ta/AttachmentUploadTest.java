@@ -0,0 +1,100 @@
+package org.redmine.ta;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.redmine.ta.beans.Attachment;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class AttachmentUploadTest {
+
+    private final byte[] content = new byte[70001];
+    private HttpServer server;
+    private RedmineManager manager;
+    private volatile byte[] received;
+    private volatile String receivedContentType;
+    private volatile String receivedTransferEncoding;
+
+    @Before
+    public void setUp() throws IOException {
+        new Random(1).nextBytes(content);
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/uploads.xml", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                receivedContentType = exchange.getRequestHeaders().getFirst("Content-Type");
+                receivedTransferEncoding = exchange.getRequestHeaders().getFirst("Transfer-Encoding");
+                received = readAll(exchange.getRequestBody());
+                byte[] body = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                        + "<upload><token>7167.ed1ccdb093229ca1bd0b043618d88743</token></upload>").getBytes("UTF-8");
+                exchange.sendResponseHeaders(201, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+        manager = new RedmineManager("http://localhost:" + server.getAddress().getPort(), "key");
+    }
+
+    @After
+    public void tearDown() {
+        manager.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    public void fileIsUploaded() throws Exception {
+        File file = File.createTempFile("upload", ".log");
+        try {
+            OutputStream out = new FileOutputStream(file);
+            out.write(content);
+            out.close();
+
+            Attachment attachment = manager.uploadAttachment("build.log", "text/plain", file);
+            assertEquals("7167.ed1ccdb093229ca1bd0b043618d88743", attachment.getToken());
+            assertEquals("build.log", attachment.getFileName());
+            assertEquals("text/plain", attachment.getContentType());
+            assertEquals(content.length, attachment.getFileSize());
+            assertArrayEquals(content, received);
+            assertEquals("application/octet-stream", receivedContentType);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void streamOfUnknownLengthIsSentInChunks() throws Exception {
+        Attachment attachment = manager.uploadAttachment("build.log", "text/plain",
+                new ByteArrayInputStream(content), -1);
+        assertEquals("7167.ed1ccdb093229ca1bd0b043618d88743", attachment.getToken());
+        assertArrayEquals(content, received);
+        assertEquals("chunked", receivedTransferEncoding);
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
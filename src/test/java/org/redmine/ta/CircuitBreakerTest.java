@@ -0,0 +1,185 @@
+package org.redmine.ta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+
+    private static final URI SERVER = URI.create("http://redmine.org/issues.xml");
+    private static final URI OTHER_SERVER = URI.create("http://other.redmine.org/issues.xml");
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void circuitIsOpenedByFailures() throws RedmineException {
+        CircuitBreaker breaker = new CircuitBreaker(0.5, 4, 60000);
+        breaker.setMinimumCalls(4);
+        call(breaker, SERVER, false, FAST);
+        call(breaker, SERVER, true, FAST);
+        call(breaker, SERVER, false, FAST);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(SERVER));
+        call(breaker, SERVER, true, FAST);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState(SERVER));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(OTHER_SERVER));
+        try {
+            breaker.acquirePermission(SERVER);
+            fail("Must have failed");
+        } catch (RedmineCircuitOpenException e) {
+            assertEquals(true, e.getRemainingOpenMillis() > 0);
+        }
+        breaker.acquirePermission(OTHER_SERVER);
+    }
+
+    @Test
+    public void oldResultsLeaveTheWindow() throws RedmineException {
+        CircuitBreaker breaker = new CircuitBreaker(0.5, 4, 60000);
+        breaker.setMinimumCalls(4);
+        call(breaker, SERVER, true, FAST);
+        for (int i = 0; i < 10; i++) {
+            call(breaker, SERVER, false, FAST);
+        }
+        call(breaker, SERVER, true, FAST);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(SERVER));
+    }
+
+    @Test
+    public void circuitIsOpenedBySlowCalls() throws RedmineException {
+        CircuitBreaker breaker = new CircuitBreaker(1, 0.5, 100, 2, 60000);
+        call(breaker, SERVER, false, FAST);
+        call(breaker, SERVER, false, SLOW);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState(SERVER));
+    }
+
+    @Test
+    public void successfulTrialCallsCloseTheCircuit() throws RedmineException, InterruptedException {
+        CircuitBreaker breaker = openedBreaker();
+        Thread.sleep(30);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState(SERVER));
+        long first = breaker.acquirePermission(SERVER);
+        long second = breaker.acquirePermission(SERVER);
+        try {
+            breaker.acquirePermission(SERVER);
+            fail("Only 2 trial calls are allowed");
+        } catch (RedmineCircuitOpenException e) {
+            assertEquals(0, e.getRemainingOpenMillis());
+        }
+        breaker.onResult(SERVER, first, false, FAST);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState(SERVER));
+        breaker.onResult(SERVER, second, false, FAST);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(SERVER));
+    }
+
+    @Test
+    public void failedTrialCallOpensTheCircuit() throws RedmineException, InterruptedException {
+        CircuitBreaker breaker = openedBreaker();
+        Thread.sleep(30);
+        call(breaker, SERVER, true, FAST);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState(SERVER));
+    }
+
+    @Test
+    public void cancelledTrialCallCanBeRepeated() throws RedmineException, InterruptedException {
+        CircuitBreaker breaker = openedBreaker();
+        breaker.setHalfOpenCalls(1);
+        Thread.sleep(30);
+        breaker.cancel(SERVER, breaker.acquirePermission(SERVER));
+        call(breaker, SERVER, false, FAST);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(SERVER));
+    }
+
+    @Test
+    public void resultsOfCallsStartedBeforeOpeningAreIgnored() throws RedmineException, InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(1, 1, 20);
+        breaker.setHalfOpenCalls(1);
+        long oldPermission = breaker.acquirePermission(SERVER);
+        call(breaker, SERVER, true, FAST);
+        Thread.sleep(30);
+        long trial = breaker.acquirePermission(SERVER);
+        breaker.onResult(SERVER, oldPermission, false, FAST);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState(SERVER));
+        breaker.onResult(SERVER, trial, false, FAST);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(SERVER));
+    }
+
+    @Test
+    public void managerFailsFastWhileServerIsUnavailable() throws IOException, RedmineException, InterruptedException {
+        FakeRedmineServer server = new FakeRedmineServer();
+        server.setIssuesNumber(10);
+        server.start();
+        RedmineManager manager = new RedmineManager(server.getURI(), "key");
+        try {
+            CircuitBreaker breaker = new CircuitBreaker(0.5, 4, 100);
+            breaker.setMinimumCalls(2);
+            breaker.setHalfOpenCalls(1);
+            manager.setCircuitBreaker(breaker);
+            server.failNextRequests(2, 503);
+            for (int i = 0; i < 2; i++) {
+                try {
+                    manager.getIssueById(1);
+                    fail("Must have failed");
+                } catch (RedmineUnavailableException e) {
+                    // expected
+                }
+            }
+            assertEquals(CircuitBreaker.State.OPEN, manager.getCircuitBreakerState());
+            try {
+                manager.getIssueById(1);
+                fail("Must have failed");
+            } catch (RedmineCircuitOpenException e) {
+                // expected
+            }
+            assertEquals(2, server.getRequestsCount());
+
+            Thread.sleep(150);
+            assertEquals(CircuitBreaker.State.HALF_OPEN, manager.getCircuitBreakerState());
+            assertEquals(Integer.valueOf(1), manager.getIssueById(1).getId());
+            assertEquals(CircuitBreaker.State.CLOSED, manager.getCircuitBreakerState());
+        } finally {
+            manager.shutdown();
+            server.stop();
+        }
+    }
+
+    @Test
+    public void notFoundIsNotFailure() throws IOException, RedmineException {
+        FakeRedmineServer server = new FakeRedmineServer();
+        server.setIssuesNumber(1);
+        server.start();
+        RedmineManager manager = new RedmineManager(server.getURI(), "key");
+        try {
+            CircuitBreaker breaker = new CircuitBreaker(0.5, 2, 60000);
+            manager.setCircuitBreaker(breaker);
+            for (int i = 0; i < 3; i++) {
+                try {
+                    manager.getIssueById(100);
+                    fail("Must have failed");
+                } catch (NotFoundException e) {
+                    // expected
+                }
+            }
+            assertEquals(CircuitBreaker.State.CLOSED, manager.getCircuitBreakerState());
+        } finally {
+            manager.shutdown();
+            server.stop();
+        }
+    }
+
+    private static CircuitBreaker openedBreaker() throws RedmineException {
+        CircuitBreaker breaker = new CircuitBreaker(1, 1, 20);
+        breaker.setHalfOpenCalls(2);
+        call(breaker, SERVER, true, FAST);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState(SERVER));
+        return breaker;
+    }
+
+    private static void call(CircuitBreaker breaker, URI uri, boolean failed, long durationNanos)
+            throws RedmineException {
+        breaker.onResult(uri, breaker.acquirePermission(uri), failed, durationNanos);
+    }
+}
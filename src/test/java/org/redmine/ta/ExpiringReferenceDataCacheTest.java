@@ -0,0 +1,62 @@
+package org.redmine.ta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class ExpiringReferenceDataCacheTest {
+
+    @Test
+    public void hitsAndMissesAreCounted() {
+        ExpiringReferenceDataCache cache = new ExpiringReferenceDataCache(10, 60000);
+        assertNull(cache.get("statuses"));
+        cache.put("statuses", "value");
+        assertEquals("value", cache.get("statuses"));
+        assertEquals("value", cache.get("statuses"));
+
+        CacheStatistics statistics = cache.getStatistics();
+        assertEquals(2, statistics.getHits());
+        assertEquals(1, statistics.getMisses());
+        assertEquals(2.0 / 3, statistics.getHitRate(), 0.0001);
+    }
+
+    @Test
+    public void leastRecentlyUsedValueIsEvicted() {
+        ExpiringReferenceDataCache cache = new ExpiringReferenceDataCache(2, 60000);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.get("a");
+        cache.put("c", "3");
+
+        assertNull(cache.get("b"));
+        assertEquals("1", cache.get("a"));
+        assertEquals("3", cache.get("c"));
+        assertEquals(1, cache.getStatistics().getEvictions());
+    }
+
+    @Test
+    public void expiredValueIsNotReturned() throws InterruptedException {
+        ExpiringReferenceDataCache cache = new ExpiringReferenceDataCache(10, 1);
+        cache.put("a", "1");
+        Thread.sleep(10);
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    public void invalidatedValuesAreRemoved() {
+        ExpiringReferenceDataCache cache = new ExpiringReferenceDataCache(10, 60000);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.invalidate("a");
+        assertNull(cache.get("a"));
+        assertEquals("2", cache.get("b"));
+        cache.invalidateAll();
+        assertNull(cache.get("b"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroSizeIsRejected() {
+        new ExpiringReferenceDataCache(0, 1000);
+    }
+}
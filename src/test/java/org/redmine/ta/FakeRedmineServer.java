@@ -0,0 +1,574 @@
+package org.redmine.ta;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-process stand-in for a Redmine server, to run the API against without a real
+ * Redmine installation. Serves generated issues, projects, users and time entries with
+ * "offset"/"limit" paging like Redmine 1.1+ does.
+ * <p>Latency and errors can be injected to measure pagination, connection reuse and
+ * concurrency, see {@link #setLatencyMillis(long)}, {@link #setErrorRate(double, int)} and
+ * {@link #failNextRequests(int, int)}.
+ * <p>Supported requests:
+ * <ul>
+ * <li>GET /issues.xml (project_id, issue_id, offset, limit), GET /issues/{id}.xml</li>
+ * <li>GET /projects.xml, GET /projects/{id or identifier}.xml</li>
+ * <li>GET /users.xml, GET /users/{id}.xml, GET /users/current.xml</li>
+ * <li>GET /time_entries.xml (issue_id, offset, limit)</li>
+ * </ul>
+ * Dataset sizes and settings must be configured before {@link #start()}, latency and error
+ * injection can be changed at any time.
+ * <p>Run with "-Dsun.net.httpserver.nodelay=true" when measuring latency, otherwise the
+ * JDK server delays small responses by Nagle's algorithm.
+ */
+public class FakeRedmineServer {
+
+    /**
+     * Redmine never returns more than 100 objects per page, whatever "limit" is requested.
+     */
+    public static final int DEFAULT_MAX_PAGE_SIZE = 100;
+
+    /**
+     * "Status" for injected errors: the response is cut in the middle and the connection is closed.
+     */
+    public static final int DROP_CONNECTION = 0;
+
+    private static final String XML_PREFIX = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n";
+
+    private int projectsNumber = 10;
+    private int issuesNumber = 1000;
+    private int usersNumber = 50;
+    private int timeEntriesNumber = 1000;
+    private int maxPageSize = DEFAULT_MAX_PAGE_SIZE;
+    private int descriptionLength = 500;
+
+    private volatile long latencyMillis;
+    private volatile double errorRate;
+    private volatile int errorStatus = 503;
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+    private volatile int failureStatus;
+    private volatile long firstFailedRequest;
+    private volatile long lastFailedRequest;
+    private volatile int retryAfterSeconds = -1;
+
+    private final AtomicLong requestsCount = new AtomicLong();
+    private final AtomicLong failedRequestsCount = new AtomicLong();
+    private final Set<Integer> clientPorts = Collections.synchronizedSet(new HashSet<Integer>());
+    private final Set<Integer> deletedRelations = Collections.synchronizedSet(new HashSet<Integer>());
+    private final AtomicInteger activeRequests = new AtomicInteger();
+    private final AtomicInteger maxActiveRequests = new AtomicInteger();
+    private final Random random = new Random();
+
+    private String[] projects;
+    private String[] projectKeys;
+    private String[] issues;
+    private int[] issueProjects;
+    private String[] users;
+    private String[] timeEntries;
+    private int[] timeEntryIssues;
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public void setProjectsNumber(int projectsNumber) {
+        this.projectsNumber = projectsNumber;
+    }
+
+    public void setIssuesNumber(int issuesNumber) {
+        this.issuesNumber = issuesNumber;
+    }
+
+    public void setUsersNumber(int usersNumber) {
+        this.usersNumber = usersNumber;
+    }
+
+    public void setTimeEntriesNumber(int timeEntriesNumber) {
+        this.timeEntriesNumber = timeEntriesNumber;
+    }
+
+    /**
+     * Upper bound for "limit" request parameter. Default is {@link #DEFAULT_MAX_PAGE_SIZE}.
+     */
+    public void setMaxPageSize(int maxPageSize) {
+        this.maxPageSize = maxPageSize;
+    }
+
+    /**
+     * Approximate length of issue descriptions, to control the response size.
+     */
+    public void setDescriptionLength(int descriptionLength) {
+        this.descriptionLength = descriptionLength;
+    }
+
+    /**
+     * Delay added to every response, models network round trip and server processing time.
+     */
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * Makes the given share of requests (0..1) fail with the HTTP status.
+     */
+    public void setErrorRate(double errorRate, int status) {
+        this.errorStatus = status;
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * Makes the next <code>count</code> requests fail with the HTTP status.
+     *
+     * @param status HTTP status or {@link #DROP_CONNECTION}.
+     */
+    public void failNextRequests(int count, int status) {
+        this.failureStatus = status;
+        failuresLeft.set(count);
+    }
+
+    /**
+     * Makes requests with the given numbers fail with the HTTP status. Requests are numbered from 1,
+     * see {@link #getRequestsCount()}.
+     *
+     * @param status HTTP status or {@link #DROP_CONNECTION}.
+     */
+    public void failRequests(long firstRequest, int count, int status) {
+        this.failureStatus = status;
+        this.firstFailedRequest = firstRequest;
+        this.lastFailedRequest = firstRequest + count - 1;
+    }
+
+    /**
+     * @param retryAfterSeconds value of "Retry-After" header sent with injected errors, -1 for no header.
+     */
+    public void setRetryAfterSeconds(int retryAfterSeconds) {
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public void start() throws IOException {
+        generateDataset();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new RedmineHandler());
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return URI to pass to RedmineManager constructor
+     */
+    public String getURI() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    public long getRequestsCount() {
+        return requestsCount.get();
+    }
+
+    public long getFailedRequestsCount() {
+        return failedRequestsCount.get();
+    }
+
+    /**
+     * @return number of TCP connections opened by clients so far
+     */
+    public int getConnectionsCount() {
+        return clientPorts.size();
+    }
+
+    /**
+     * @return the largest number of requests handled at the same time so far
+     */
+    public int getMaxActiveRequests() {
+        return maxActiveRequests.get();
+    }
+
+    /**
+     * @return IDs of relations deleted with "DELETE /relations/ID.xml" requests. Any ID can be deleted.
+     */
+    public Set<Integer> getDeletedRelations() {
+        return deletedRelations;
+    }
+
+    public int getIssuesNumber() {
+        return issuesNumber;
+    }
+
+    public int getProjectsNumber() {
+        return projectsNumber;
+    }
+
+    public int getUsersNumber() {
+        return usersNumber;
+    }
+
+    public int getTimeEntriesNumber() {
+        return timeEntriesNumber;
+    }
+
+    /**
+     * @return identifier of the generated project with the given ID (starting with 1)
+     */
+    public String getProjectKey(int projectId) {
+        return projectKeys[projectId - 1];
+    }
+
+    /**
+     * Resets request counters.
+     */
+    public void resetStatistics() {
+        requestsCount.set(0);
+        failedRequestsCount.set(0);
+        clientPorts.clear();
+        deletedRelations.clear();
+        maxActiveRequests.set(0);
+    }
+
+    private void generateDataset() {
+        StringBuilder description = new StringBuilder();
+        while (description.length() < descriptionLength) {
+            description.append("Generated description text &amp; some &lt;escaped&gt; symbols. ");
+        }
+
+        projects = new String[projectsNumber];
+        projectKeys = new String[projectsNumber];
+        for (int i = 0; i < projectsNumber; i++) {
+            int id = i + 1;
+            projectKeys[i] = "project" + id;
+            projects[i] = "<project><id>" + id + "</id><name>Project " + id + "</name>"
+                    + "<identifier>" + projectKeys[i] + "</identifier>"
+                    + "<description>Generated project</description>"
+                    + "<created_on>2011-01-20T18:30:49-08:00</created_on>"
+                    + "<updated_on>2011-01-20T18:32:43-08:00</updated_on></project>";
+        }
+
+        users = new String[usersNumber];
+        for (int i = 0; i < usersNumber; i++) {
+            int id = i + 1;
+            users[i] = "<user><id>" + id + "</id><login>user" + id + "</login>"
+                    + "<firstname>First" + id + "</firstname><lastname>Last" + id + "</lastname>"
+                    + "<mail>user" + id + "@example.net</mail>"
+                    + "<created_on>2011-01-10T20:44:56-08:00</created_on>"
+                    + "<last_login_on>2011-01-28T10:54:22-08:00</last_login_on></user>";
+        }
+
+        issues = new String[issuesNumber];
+        issueProjects = new int[issuesNumber];
+        for (int i = 0; i < issuesNumber; i++) {
+            int id = i + 1;
+            int projectId = 1 + i % Math.max(projectsNumber, 1);
+            int userId = 1 + i % Math.max(usersNumber, 1);
+            issueProjects[i] = projectId;
+            issues[i] = "<issue><id>" + id + "</id>"
+                    + "<project name=\"Project " + projectId + "\" id=\"" + projectId + "\"/>"
+                    + "<tracker name=\"Bug\" id=\"1\"/><status name=\"New\" id=\"1\"/>"
+                    + "<priority name=\"Normal\" id=\"4\"/>"
+                    + "<author name=\"First" + userId + " Last" + userId + "\" id=\"" + userId + "\"/>"
+                    + "<subject>Generated issue " + id + "</subject>"
+                    + "<description>" + description + "</description>"
+                    + "<start_date>2011-09-08</start_date><due_date></due_date>"
+                    + "<done_ratio>" + (i % 100) + "</done_ratio><estimated_hours>8.0</estimated_hours>"
+                    + "<custom_fields type=\"array\"><custom_field name=\"my_custom_1\" id=\"1\">"
+                    + "<value>value " + id + "</value></custom_field></custom_fields>"
+                    + "<created_on>2011-12-06T18:33:43-08:00</created_on>"
+                    + "<updated_on>2011-12-06T18:33:43-08:00</updated_on></issue>";
+        }
+
+        timeEntries = new String[timeEntriesNumber];
+        timeEntryIssues = new int[timeEntriesNumber];
+        for (int i = 0; i < timeEntriesNumber; i++) {
+            int id = i + 1;
+            int issueId = 1 + i % Math.max(issuesNumber, 1);
+            int userId = 1 + i % Math.max(usersNumber, 1);
+            timeEntryIssues[i] = issueId;
+            timeEntries[i] = "<time_entry><id>" + id + "</id>"
+                    + "<project name=\"Project " + issueProjects[issueId - 1] + "\" id=\"" + issueProjects[issueId - 1] + "\"/>"
+                    + "<issue id=\"" + issueId + "\"/>"
+                    + "<user name=\"First" + userId + " Last" + userId + "\" id=\"" + userId + "\"/>"
+                    + "<activity name=\"Development\" id=\"9\"/><hours>1.5</hours>"
+                    + "<comments>generated time entry " + id + "</comments><spent_on>2011-01-31</spent_on>"
+                    + "<created_on>2011-01-31T11:11:07-08:00</created_on>"
+                    + "<updated_on>2011-01-31T11:11:07-08:00</updated_on></time_entry>";
+        }
+    }
+
+    private class RedmineHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            int active = activeRequests.incrementAndGet();
+            while (true) {
+                int max = maxActiveRequests.get();
+                if (active <= max || maxActiveRequests.compareAndSet(max, active)) {
+                    break;
+                }
+            }
+            try {
+                handleRequest(exchange);
+            } finally {
+                activeRequests.decrementAndGet();
+            }
+        }
+
+        private void handleRequest(HttpExchange exchange) throws IOException {
+            long requestNumber = requestsCount.incrementAndGet();
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            try {
+                if (latencyMillis > 0) {
+                    Thread.sleep(latencyMillis);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // the request body must be consumed to keep the connection reusable
+            drain(exchange);
+
+            int injectedStatus = getInjectedErrorStatus(requestNumber);
+            if (injectedStatus >= 0) {
+                failedRequestsCount.incrementAndGet();
+                if (injectedStatus == DROP_CONNECTION) {
+                    dropConnection(exchange);
+                }
+                if (retryAfterSeconds >= 0) {
+                    exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfterSeconds));
+                }
+                send(exchange, injectedStatus, "Injected error");
+                return;
+            }
+            String path = exchange.getRequestURI().getPath();
+            if ("DELETE".equals(exchange.getRequestMethod()) && path.startsWith("/relations/")) {
+                deletedRelations.add(Integer.valueOf(objectKey(path)));
+                send(exchange, 200, "");
+                return;
+            }
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, "Only GET and relation DELETE requests are supported");
+                return;
+            }
+            Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+            String response = dispatch(path, params);
+            if (response == null) {
+                send(exchange, 404, "Not found");
+            } else {
+                send(exchange, 200, response);
+            }
+        }
+
+        /**
+         * @return the status to fail the request with or -1.
+         */
+        private int getInjectedErrorStatus(long requestNumber) {
+            if (requestNumber >= firstFailedRequest && requestNumber <= lastFailedRequest) {
+                return failureStatus;
+            }
+            while (true) {
+                int left = failuresLeft.get();
+                if (left <= 0) {
+                    break;
+                }
+                if (failuresLeft.compareAndSet(left, left - 1)) {
+                    return failureStatus;
+                }
+            }
+            double rate = errorRate;
+            if (rate > 0) {
+                synchronized (random) {
+                    if (random.nextDouble() < rate) {
+                        return errorStatus;
+                    }
+                }
+            }
+            return -1;
+        }
+
+        private String dispatch(String path, Map<String, String> params) {
+            if (path.equals("/issues.xml")) {
+                return issuesList(params);
+            }
+            if (path.equals("/projects.xml")) {
+                return list("projects", projects, null, params);
+            }
+            if (path.equals("/users.xml")) {
+                return list("users", users, null, params);
+            }
+            if (path.equals("/users/current.xml")) {
+                return usersNumber > 0 ? XML_PREFIX + users[0] : null;
+            }
+            if (path.equals("/time_entries.xml")) {
+                return timeEntriesList(params);
+            }
+            if (path.startsWith("/issues/")) {
+                return single(issues, path);
+            }
+            if (path.startsWith("/projects/")) {
+                String key = objectKey(path);
+                for (int i = 0; i < projectKeys.length; i++) {
+                    if (projectKeys[i].equals(key)) {
+                        return XML_PREFIX + projects[i];
+                    }
+                }
+                return single(projects, path);
+            }
+            if (path.startsWith("/users/")) {
+                return single(users, path);
+            }
+            return null;
+        }
+
+        private String issuesList(Map<String, String> params) {
+            Set<Integer> ids = parseIds(params.get("issue_id"));
+            String projectKey = params.get("project_id");
+            int projectId = 0;
+            if (projectKey != null) {
+                projectId = findProjectId(projectKey);
+                if (projectId == 0) {
+                    return null;
+                }
+            }
+            boolean[] filter = new boolean[issues.length];
+            for (int i = 0; i < issues.length; i++) {
+                filter[i] = (ids == null || ids.contains(i + 1))
+                        && (projectId == 0 || issueProjects[i] == projectId);
+            }
+            return list("issues", issues, filter, params);
+        }
+
+        private String timeEntriesList(Map<String, String> params) {
+            Set<Integer> ids = parseIds(params.get("issue_id"));
+            if (ids == null) {
+                return list("time_entries", timeEntries, null, params);
+            }
+            boolean[] filter = new boolean[timeEntries.length];
+            for (int i = 0; i < timeEntries.length; i++) {
+                filter[i] = ids.contains(timeEntryIssues[i]);
+            }
+            return list("time_entries", timeEntries, filter, params);
+        }
+
+        private int findProjectId(String key) {
+            for (int i = 0; i < projectKeys.length; i++) {
+                if (projectKeys[i].equals(key) || String.valueOf(i + 1).equals(key)) {
+                    return i + 1;
+                }
+            }
+            return 0;
+        }
+
+        private String list(String rootTag, String[] objects, boolean[] filter, Map<String, String> params) {
+            int offset = parseInt(params.get("offset"), 0);
+            int limit = Math.min(parseInt(params.get("limit"), 25), maxPageSize);
+            int total = 0;
+            StringBuilder b = new StringBuilder();
+            for (int i = 0; i < objects.length; i++) {
+                if (filter != null && !filter[i]) {
+                    continue;
+                }
+                if (total >= offset && total < offset + limit) {
+                    b.append(objects[i]).append('\n');
+                }
+                total++;
+            }
+            return XML_PREFIX + "<" + rootTag + " type=\"array\" total_count=\"" + total + "\" limit=\"" + limit
+                    + "\" offset=\"" + offset + "\">\n" + b + "</" + rootTag + ">";
+        }
+
+        private String single(String[] objects, String path) {
+            int id = parseInt(objectKey(path), 0);
+            if (id < 1 || id > objects.length) {
+                return null;
+            }
+            return XML_PREFIX + objects[id - 1];
+        }
+    }
+
+    private static String objectKey(String path) {
+        String name = path.substring(path.lastIndexOf('/') + 1);
+        return name.endsWith(".xml") ? name.substring(0, name.length() - ".xml".length()) : name;
+    }
+
+    private static Set<Integer> parseIds(String value) {
+        if (value == null) {
+            return null;
+        }
+        Set<Integer> ids = new HashSet<Integer>();
+        for (String id : value.split(",")) {
+            ids.add(parseInt(id.trim(), 0));
+        }
+        return ids;
+    }
+
+    private static int parseInt(String value, int defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static Map<String, String> parseQuery(String query) throws IOException {
+        Map<String, String> params = new HashMap<String, String>();
+        if (query == null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            String[] parts = pair.split("=", 2);
+            params.put(URLDecoder.decode(parts[0], "UTF-8"),
+                    parts.length > 1 ? URLDecoder.decode(parts[1], "UTF-8") : "");
+        }
+        return params;
+    }
+
+    private static void drain(HttpExchange exchange) throws IOException {
+        byte[] buffer = new byte[4096];
+        while (exchange.getRequestBody().read(buffer) != -1) {
+            // skip
+        }
+    }
+
+    /**
+     * Sends a half of a page and closes the connection.
+     */
+    private void dropConnection(HttpExchange exchange) throws IOException {
+        String page = XML_PREFIX + "<issues type=\"array\" total_count=\"" + issues.length + "\">\n"
+                + (issues.length > 0 ? issues[0] : "") + "</issues>";
+        byte[] bytes = page.getBytes("UTF-8");
+        exchange.sendResponseHeaders(200, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes, 0, bytes.length / 2);
+        out.flush();
+        // the server closes the connection when the handler fails
+        throw new IOException("Injected connection drop");
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes("UTF-8");
+        exchange.getResponseHeaders().set("Content-Type", "application/xml; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes);
+        out.close();
+    }
+}
@@ -0,0 +1,172 @@
+package org.redmine.ta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.redmine.ta.beans.Issue;
+import org.redmine.ta.beans.Project;
+import org.redmine.ta.beans.TimeEntry;
+import org.redmine.ta.beans.User;
+
+/**
+ * Runs RedmineManager against {@link FakeRedmineServer}, no real Redmine needed.
+ */
+public class FakeRedmineServerTest {
+
+    private FakeRedmineServer server;
+    private RedmineManager manager;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new FakeRedmineServer();
+        server.setProjectsNumber(3);
+        server.setIssuesNumber(250);
+        server.setUsersNumber(7);
+        server.setTimeEntriesNumber(40);
+        server.start();
+        manager = new RedmineManager(server.getURI(), "key");
+    }
+
+    @After
+    public void tearDown() {
+        manager.shutdown();
+        server.stop();
+    }
+
+    @Test
+    public void allIssuesAreLoadedPageByPage() throws RedmineException {
+        manager.setObjectsPerPage(100);
+        List<Issue> issues = manager.getIssues(null, null);
+        assertEquals(250, issues.size());
+        assertEquals(Integer.valueOf(1), issues.get(0).getId());
+        assertEquals(Integer.valueOf(250), issues.get(249).getId());
+        assertEquals(3, server.getRequestsCount());
+    }
+
+    @Test
+    public void pageSizeIsLimitedByServer() throws RedmineException {
+        manager.setObjectsPerPage(500);
+        assertEquals(250, manager.getIssues(null, null).size());
+        assertEquals(3, server.getRequestsCount());
+    }
+
+    @Test
+    public void pagesAreLoadedInParallelInServerOrder() throws RedmineException {
+        manager.setPageFetchParallelism(4);
+        List<Issue> issues = manager.getIssues(null, null);
+        assertEquals(250, issues.size());
+        for (int i = 0; i < issues.size(); i++) {
+            assertEquals(Integer.valueOf(i + 1), issues.get(i).getId());
+        }
+        assertEquals(10, server.getRequestsCount());
+    }
+
+    @Test
+    public void iteratorLoadsPagesOnDemand() {
+        Iterator<Issue> iterator = manager.iterateIssues(null, null).iterator();
+        for (int i = 1; i <= 30; i++) {
+            assertEquals(Integer.valueOf(i), iterator.next().getId());
+        }
+        assertEquals(2, server.getRequestsCount());
+        int count = 30;
+        while (iterator.hasNext()) {
+            iterator.next();
+            count++;
+        }
+        assertEquals(250, count);
+        assertEquals(10, server.getRequestsCount());
+    }
+
+    @Test
+    public void everyIteratorStartsFromFirstPage() {
+        Iterable<Issue> issues = manager.iterateIssues(null, null);
+        assertEquals(Integer.valueOf(1), issues.iterator().next().getId());
+        assertEquals(Integer.valueOf(1), issues.iterator().next().getId());
+        assertEquals(2, server.getRequestsCount());
+    }
+
+    @Test
+    public void issuesAreFilteredByProject() throws RedmineException {
+        List<Issue> issues = manager.getIssues(server.getProjectKey(2), null);
+        assertEquals(83, issues.size());
+        for (Issue issue : issues) {
+            assertEquals(Integer.valueOf(2), issue.getProject().getId());
+        }
+    }
+
+    @Test
+    public void nullIssueIdIsRejected() throws RedmineException {
+        try {
+            manager.getIssuesByIds(Arrays.asList(17, null));
+            fail("Must have failed");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(0, server.getRequestsCount());
+    }
+
+    @Test
+    public void issuesAreLoadedByIds() throws RedmineException {
+        List<Issue> issues = manager.getIssuesByIds(Arrays.asList(17, 3, 1000, 250));
+        List<Integer> ids = new ArrayList<Integer>();
+        for (Issue issue : issues) {
+            ids.add(issue.getId());
+        }
+        assertEquals(Arrays.asList(17, 3, 250), ids);
+    }
+
+    @Test
+    public void singleObjectsAreLoaded() throws RedmineException {
+        assertEquals("Generated issue 42", manager.getIssueById(42).getSubject());
+        Project project = manager.getProjectByKey(server.getProjectKey(3));
+        assertEquals(Integer.valueOf(3), project.getId());
+        User user = manager.getUserById(5);
+        assertEquals("user5", user.getLogin());
+        assertEquals("user1", manager.getCurrentUser().getLogin());
+    }
+
+    @Test(expected = NotFoundException.class)
+    public void missingIssueIsNotFound() throws RedmineException {
+        manager.getIssueById(251);
+    }
+
+    @Test
+    public void otherListsAreLoaded() throws RedmineException {
+        assertEquals(3, manager.getProjects().size());
+        assertEquals(7, manager.getUsers().size());
+        List<TimeEntry> timeEntries = manager.getTimeEntries();
+        assertEquals(40, timeEntries.size());
+        assertEquals(1, manager.getTimeEntriesForIssue(5).size());
+    }
+
+    @Test
+    public void connectionIsReusedBySequentialRequests() throws RedmineException {
+        for (int i = 1; i <= 10; i++) {
+            manager.getIssueById(i);
+        }
+        assertEquals(10, server.getRequestsCount());
+        assertEquals(1, server.getConnectionsCount());
+    }
+
+    @Test
+    public void injectedErrorFailsRequest() throws RedmineException {
+        server.failNextRequests(1, 503);
+        try {
+            manager.getIssueById(1);
+            fail("Must have failed");
+        } catch (RedmineUnavailableException e) {
+            assertEquals(503, e.getStatusCode());
+        }
+        assertEquals(1, server.getFailedRequestsCount());
+        assertEquals(Integer.valueOf(1), manager.getIssueById(1).getId());
+    }
+}
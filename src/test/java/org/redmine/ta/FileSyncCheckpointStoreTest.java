@@ -0,0 +1,63 @@
+package org.redmine.ta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FileSyncCheckpointStoreTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("checkpoints", ".properties");
+        file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+        new File(file.getPath() + ".bak").delete();
+    }
+
+    @Test
+    public void checkpointsAreKeptBetweenInstances() throws RedmineException {
+        SyncCheckpoint issues = new SyncCheckpoint(new Date(1000), 5);
+        SyncCheckpoint timeEntries = new SyncCheckpoint(new Date(2000), 7);
+        new FileSyncCheckpointStore(file).save("issues:project", issues);
+        new FileSyncCheckpointStore(file).save("time_entries", timeEntries);
+
+        FileSyncCheckpointStore store = new FileSyncCheckpointStore(file);
+        assertEquals(issues, store.load("issues:project"));
+        assertEquals(timeEntries, store.load("time_entries"));
+        assertNull(store.load("issues"));
+    }
+
+    @Test
+    public void savedCheckpointReplacesPrevious() throws RedmineException {
+        FileSyncCheckpointStore store = new FileSyncCheckpointStore(file);
+        store.save("issues", new SyncCheckpoint(new Date(1000), 5));
+        store.save("issues", new SyncCheckpoint(new Date(1000), 6));
+        assertEquals(new SyncCheckpoint(new Date(1000), 6), store.load("issues"));
+    }
+
+    @Test
+    public void backupIsReadWhenSaveWasInterrupted() throws RedmineException {
+        FileSyncCheckpointStore store = new FileSyncCheckpointStore(file);
+        store.save("issues", new SyncCheckpoint(new Date(1000), 5));
+        // the state between the renames on platforms where rename doesn't replace files
+        assertTrue(file.renameTo(new File(file.getPath() + ".bak")));
+        assertEquals(new SyncCheckpoint(new Date(1000), 5), store.load("issues"));
+
+        store.save("issues", new SyncCheckpoint(new Date(1000), 6));
+        assertEquals(new SyncCheckpoint(new Date(1000), 6), new FileSyncCheckpointStore(file).load("issues"));
+    }
+}
@@ -0,0 +1,63 @@
+package org.redmine.ta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+public class InMemoryRedmineMetricsTest {
+
+    @Test
+    public void requestsAreGroupedByEndpoint() {
+        InMemoryRedmineMetrics metrics = new InMemoryRedmineMetrics();
+        metrics.requestCompleted(statistics("GET Issue", 200, true, 100, 1000));
+        metrics.requestCompleted(statistics("GET Issue", 503, false, 20, 20));
+        metrics.requestCompleted(statistics("PUT Issue", 200, true, 0, 0));
+
+        Map<String, EndpointMetrics> endpoints = metrics.getEndpointMetrics();
+        assertEquals(2, endpoints.size());
+        EndpointMetrics get = endpoints.get("GET Issue");
+        assertEquals(2, get.getRequestsCount());
+        assertEquals(1, get.getErrorsCount());
+        assertEquals(Long.valueOf(1), get.getErrorsByStatus().get(503));
+        assertEquals(120, get.getWireBytes());
+        assertEquals(1020, get.getContentBytes());
+        assertEquals(1, endpoints.get("PUT Issue").getRequestsCount());
+    }
+
+    @Test
+    public void snapshotIsNotChangedByLaterRequests() {
+        InMemoryRedmineMetrics metrics = new InMemoryRedmineMetrics();
+        metrics.requestCompleted(statistics("GET Issue", 200, true, 1, 1));
+        EndpointMetrics snapshot = metrics.getEndpointMetrics("GET Issue");
+        metrics.requestCompleted(statistics("GET Issue", 200, true, 1, 1));
+        assertEquals(1, snapshot.getRequestsCount());
+        assertEquals(1, snapshot.getTotalTime().getCount());
+
+        metrics.reset();
+        assertNull(metrics.getEndpointMetrics("GET Issue"));
+    }
+
+    @Test
+    public void percentilesAreWithinBucketBounds() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1000000L);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(50500000L, histogram.getMeanNanos());
+        assertEquals(100000000L, histogram.getMaxNanos());
+        long median = histogram.getPercentileNanos(50);
+        assertEquals(true, median >= 50000000L && median <= 100000000L);
+        assertEquals(100000000L, histogram.getPercentileNanos(100));
+        assertEquals(0, new LatencyHistogram().getPercentileNanos(99));
+    }
+
+    private static RequestStatistics statistics(String endpoint, int status, boolean successful,
+                                                long wireBytes, long contentBytes) {
+        return new RequestStatistics(endpoint, "GET", "http://redmine.org/issues.xml", status, successful,
+                1000, 2000, 3000, 4000, 10000, wireBytes, contentBytes);
+    }
+}
@@ -0,0 +1,230 @@
+package org.redmine.ta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.redmine.ta.beans.Issue;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class IncrementalSyncTest {
+
+    private static final long BASE_TIME = 1325376000000L; // 2012-01-01T00:00:00Z
+
+    private final List<int[]> serverIssues = Collections.synchronizedList(new ArrayList<int[]>());
+    private final Map<String, SyncCheckpoint> checkpoints = new HashMap<String, SyncCheckpoint>();
+    private volatile int maxPageSize = 100;
+    private HttpServer server;
+    private RedmineManager manager;
+    private IncrementalSync sync;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/issues.xml", new IssuesHandler());
+        server.start();
+        manager = new RedmineManager("http://localhost:" + server.getAddress().getPort(), "key");
+        manager.setObjectsPerPage(2);
+        sync = new IncrementalSync(manager, new SyncCheckpointStore() {
+            @Override
+            public SyncCheckpoint load(String name) {
+                return checkpoints.get(name);
+            }
+
+            @Override
+            public void save(String name, SyncCheckpoint checkpoint) {
+                checkpoints.put(name, checkpoint);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        manager.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    public void onlyChangedIssuesAreLoadedAfterFirstRun() throws RedmineException {
+        addIssue(1, 10);
+        addIssue(2, 20);
+        addIssue(3, 20);
+        addIssue(4, 30);
+        addIssue(5, 40);
+
+        assertEquals(ids(1, 2, 3, 4, 5), syncIds());
+        assertEquals(ids(), syncIds());
+
+        updateIssue(2, 50);
+        addIssue(6, 50);
+        assertEquals(ids(2, 6), syncIds());
+    }
+
+    @Test
+    public void manyIssuesWithSameTimeAreLoadedOnce() throws RedmineException {
+        for (int id = 1; id <= 7; id++) {
+            addIssue(id, 10);
+        }
+        addIssue(8, 20);
+        assertEquals(ids(1, 2, 3, 4, 5, 6, 7, 8), syncIds());
+        assertEquals(ids(), syncIds());
+    }
+
+    @Test
+    public void issueUpdatedDuringRunDoesNotHideOthers() throws RedmineException {
+        for (int id = 1; id <= 5; id++) {
+            addIssue(id, 10);
+        }
+        final List<Integer> loaded = new ArrayList<Integer>();
+        sync.syncIssues(null, new SyncHandler<Issue>() {
+            @Override
+            public void onUpdated(Issue issue) {
+                loaded.add(issue.getId());
+                if (issue.getId() == 2) {
+                    // moves issue 1 to the end, issues 3, 4, 5 move back by one position
+                    updateIssue(1, 20);
+                }
+            }
+        });
+        assertEquals(ids(1, 2, 3, 4, 5, 1), loaded);
+        assertEquals(ids(), syncIds());
+    }
+
+    @Test
+    public void pagesSmallerThanRequestedAreContinued() throws RedmineException {
+        manager.setObjectsPerPage(10);
+        maxPageSize = 3;
+        for (int id = 1; id <= 7; id++) {
+            addIssue(id, id * 10);
+        }
+        assertEquals(ids(1, 2, 3, 4, 5, 6, 7), syncIds());
+        addIssue(8, 80);
+        assertEquals(ids(8), syncIds());
+    }
+
+    @Test
+    public void failedRunContinuesFromLastProcessedIssue() throws RedmineException {
+        for (int id = 1; id <= 5; id++) {
+            addIssue(id, id * 10);
+        }
+        final List<Integer> loaded = new ArrayList<Integer>();
+        try {
+            sync.syncIssues(null, new SyncHandler<Issue>() {
+                @Override
+                public void onUpdated(Issue issue) throws RedmineException {
+                    if (issue.getId() == 4) {
+                        throw new RedmineException("mirror is not available");
+                    }
+                    loaded.add(issue.getId());
+                }
+            });
+            fail("Must have failed");
+        } catch (RedmineException e) {
+            assertEquals(ids(1, 2, 3), loaded);
+        }
+        assertEquals(ids(4, 5), syncIds());
+    }
+
+    private List<Integer> syncIds() throws RedmineException {
+        final List<Integer> loaded = new ArrayList<Integer>();
+        sync.syncIssues(null, new SyncHandler<Issue>() {
+            @Override
+            public void onUpdated(Issue issue) {
+                loaded.add(issue.getId());
+            }
+        });
+        return loaded;
+    }
+
+    private void addIssue(int id, int updatedSeconds) {
+        serverIssues.add(new int[]{id, updatedSeconds});
+    }
+
+    private void updateIssue(int id, int updatedSeconds) {
+        for (int[] issue : serverIssues) {
+            if (issue[0] == id) {
+                issue[1] = updatedSeconds;
+            }
+        }
+    }
+
+    private static List<Integer> ids(Integer... ids) {
+        List<Integer> result = new ArrayList<Integer>();
+        Collections.addAll(result, ids);
+        return result;
+    }
+
+    /**
+     * Implements "updated_on>=", "sort=updated_on,id", "offset" and "limit" the same way Redmine does.
+     */
+    private class IssuesHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            Map<String, String> params = new HashMap<String, String>();
+            for (String pair : exchange.getRequestURI().getRawQuery().split("&")) {
+                String[] parts = pair.split("=", 2);
+                params.put(parts[0], URLDecoder.decode(parts[1], "UTF-8"));
+            }
+            SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+            format.setTimeZone(TimeZone.getTimeZone("UTC"));
+            long from = Long.MIN_VALUE;
+            String updatedOn = params.get("updated_on");
+            if (updatedOn != null) {
+                try {
+                    from = format.parse(updatedOn.substring(2)).getTime();
+                } catch (java.text.ParseException e) {
+                    throw new IOException(e.toString());
+                }
+            }
+            List<int[]> matching = new ArrayList<int[]>();
+            synchronized (serverIssues) {
+                for (int[] issue : serverIssues) {
+                    if (BASE_TIME + issue[1] * 1000L >= from) {
+                        matching.add(issue.clone());
+                    }
+                }
+            }
+            Collections.sort(matching, new Comparator<int[]>() {
+                @Override
+                public int compare(int[] o1, int[] o2) {
+                    return o1[1] != o2[1] ? o1[1] - o2[1] : o1[0] - o2[0];
+                }
+            });
+            int offset = Integer.parseInt(params.get("offset"));
+            int limit = Math.min(maxPageSize, Integer.parseInt(params.get("limit")));
+            StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            xml.append("<issues type=\"array\" total_count=\"").append(matching.size()).append("\" limit=\"")
+                    .append(limit).append("\" offset=\"").append(offset).append("\">");
+            for (int i = offset; i < Math.min(offset + limit, matching.size()); i++) {
+                xml.append("<issue><id>").append(matching.get(i)[0]).append("</id><updated_on>")
+                        .append(format.format(new Date(BASE_TIME + matching.get(i)[1] * 1000L)))
+                        .append("+00:00</updated_on></issue>");
+            }
+            xml.append("</issues>");
+            byte[] body = xml.toString().getBytes("UTF-8");
+            exchange.sendResponseHeaders(200, body.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(body);
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package org.redmine.ta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.redmine.ta.beans.Issue;
+
+public class IssueBatchLoaderTest {
+
+    // nothing listens on this port, so requests fail fast without a network
+    private static final String UNREACHABLE_HOST = "http://localhost:1";
+
+    private RedmineManager manager;
+    private IssueBatchLoader loader;
+
+    @Before
+    public void setUp() {
+        manager = new RedmineManager(UNREACHABLE_HOST, "key");
+        loader = new IssueBatchLoader(manager, 20);
+    }
+
+    @After
+    public void tearDown() {
+        loader.shutdown();
+        manager.shutdown();
+    }
+
+    @Test
+    public void allLookupsOfFailedBatchGetTheSameError() throws InterruptedException {
+        RedmineFuture<Issue> first = loader.load(1);
+        RedmineFuture<Issue> second = loader.load(2);
+        Throwable firstError = getError(first);
+        assertTrue("Got " + firstError, firstError instanceof RedmineTransportException);
+        assertSame(firstError, getError(second));
+    }
+
+    @Test
+    public void blockingGetThrowsRedmineException() {
+        try {
+            loader.get(1);
+            fail("Must have failed");
+        } catch (RedmineException e) {
+            assertTrue("Got " + e, e instanceof RedmineTransportException);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void cantLoadAfterShutdown() {
+        loader.shutdown();
+        loader.load(1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nullIdIsRejected() {
+        loader.load(null);
+    }
+
+    @Test
+    public void concurrentLookupsAreLoadedWithOneRequest() throws Exception {
+        FakeRedmineServer server = new FakeRedmineServer();
+        server.setIssuesNumber(50);
+        server.start();
+        RedmineManager serverManager = new RedmineManager(server.getURI(), "key");
+        final IssueBatchLoader serverLoader = new IssueBatchLoader(serverManager, 500);
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            List<Future<Issue>> results = new ArrayList<Future<Issue>>();
+            for (int i = 1; i <= 8; i++) {
+                final int id = i;
+                results.add(threads.submit(new Callable<Issue>() {
+                    @Override
+                    public Issue call() throws Exception {
+                        start.await();
+                        return serverLoader.get(id);
+                    }
+                }));
+            }
+            start.countDown();
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(Integer.valueOf(i + 1), results.get(i).get().getId());
+            }
+            assertEquals(1, server.getRequestsCount());
+        } finally {
+            threads.shutdownNow();
+            serverLoader.shutdown();
+            serverManager.shutdown();
+            server.stop();
+        }
+    }
+
+    @Test
+    public void slowBatchDoesNotDelayNextBatch() throws Exception {
+        FakeRedmineServer server = new FakeRedmineServer();
+        server.setIssuesNumber(50);
+        server.setLatencyMillis(1000);
+        server.start();
+        RedmineManager serverManager = new RedmineManager(server.getURI(), "key");
+        IssueBatchLoader serverLoader = new IssueBatchLoader(serverManager, 10);
+        try {
+            RedmineFuture<Issue> first = serverLoader.load(1);
+            Thread.sleep(200);
+            long start = System.currentTimeMillis();
+            assertEquals(Integer.valueOf(2), serverLoader.get(2).getId());
+            // the second batch would wait about 800 ms more behind the first one
+            assertTrue(System.currentTimeMillis() - start < 1600);
+            assertEquals(Integer.valueOf(1), first.get().getId());
+        } finally {
+            serverLoader.shutdown();
+            serverManager.shutdown();
+            server.stop();
+        }
+    }
+
+    private static Throwable getError(RedmineFuture<Issue> future) throws InterruptedException {
+        try {
+            future.get();
+            throw new AssertionError("Must have failed");
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package org.redmine.ta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.redmine.ta.beans.Issue;
+import org.redmine.ta.beans.Project;
+
+public class RedmineAsyncManagerTest {
+
+    // nothing listens on this port, so requests fail fast without a network
+    private static final String UNREACHABLE_HOST = "http://localhost:1";
+
+    private RedmineManager manager;
+    private RedmineAsyncManager asyncManager;
+
+    @Before
+    public void setUp() {
+        manager = new RedmineManager(UNREACHABLE_HOST, "key");
+        asyncManager = new RedmineAsyncManager(manager);
+    }
+
+    @After
+    public void tearDown() {
+        asyncManager.shutdown();
+        manager.shutdown();
+    }
+
+    @Test
+    public void errorIsPassedToCallback() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        asyncManager.getProjects().addCallback(new RedmineCallback<List<Project>>() {
+            @Override
+            public void onSuccess(List<Project> result) {
+                latch.countDown();
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                error.set(e);
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+        assertTrue("Got " + error.get(), error.get() instanceof RedmineTransportException);
+    }
+
+    @Test
+    public void errorIsThrownFromGet() throws InterruptedException {
+        try {
+            asyncManager.getIssueById(1).get();
+            fail("Must have failed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RedmineTransportException);
+        }
+    }
+
+    @Test
+    public void callbackAddedAfterCompletionIsCalledImmediately() {
+        RedmineFuture<String> future = new RedmineFuture<String>(new Callable<String>() {
+            @Override
+            public String call() {
+                return "done";
+            }
+        });
+        future.run();
+        final AtomicReference<String> result = new AtomicReference<String>();
+        future.addCallback(new RedmineCallback<String>() {
+            @Override
+            public void onSuccess(String value) {
+                result.set(value);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                result.set("failed");
+            }
+        });
+        assertEquals("done", result.get());
+    }
+
+    @Test
+    public void failedCallbackDoesNotStopOthers() throws Exception {
+        RedmineFuture<String> future = new RedmineFuture<String>(new Callable<String>() {
+            @Override
+            public String call() {
+                return "done";
+            }
+        });
+        final AtomicReference<String> result = new AtomicReference<String>();
+        future.addCallback(new RedmineCallback<String>() {
+            @Override
+            public void onSuccess(String value) {
+                throw new IllegalStateException("broken callback");
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+            }
+        });
+        future.addCallback(new RedmineCallback<String>() {
+            @Override
+            public void onSuccess(String value) {
+                result.set(value);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                result.set("failed");
+            }
+        });
+        future.run();
+        assertEquals("done", result.get());
+        assertEquals("done", future.get());
+    }
+
+    @Test
+    public void issuesAreLoadedByIds() throws Exception {
+        FakeRedmineServer server = new FakeRedmineServer();
+        server.setIssuesNumber(50);
+        server.start();
+        RedmineManager serverManager = new RedmineManager.Builder(server.getURI()).build();
+        RedmineAsyncManager serverAsyncManager = new RedmineAsyncManager(serverManager);
+        try {
+            List<Issue> issues = serverAsyncManager.getIssuesByIds(Arrays.asList(7, 3)).get();
+            assertEquals(2, issues.size());
+            assertEquals(Integer.valueOf(7), issues.get(0).getId());
+        } finally {
+            serverAsyncManager.shutdown();
+            serverManager.shutdown();
+            server.stop();
+        }
+    }
+
+    @Test
+    public void virtualThreadsOfManagerAreUsed() throws Exception {
+        FakeRedmineServer server = new FakeRedmineServer();
+        server.setIssuesNumber(50);
+        server.start();
+        RedmineManager serverManager = new RedmineManager.Builder(server.getURI()).virtualThreads(true).build();
+        RedmineAsyncManager serverAsyncManager = new RedmineAsyncManager(serverManager);
+        try {
+            assertEquals(Integer.valueOf(5), serverAsyncManager.getIssueById(5).get().getId());
+            // the manager's executor is not closed with the facade
+            serverAsyncManager.shutdown();
+            RedmineFuture<Issue> future = serverAsyncManager.getIssueById(6);
+            assertEquals(Integer.valueOf(6), future.get().getId());
+            assertEquals(serverManager.isUsingVirtualThreads(), true);
+        } catch (ExecutionException e) {
+            // without virtual threads the facade has its own pool, which rejects operations after shutdown
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+            assertEquals(serverManager.isUsingVirtualThreads(), false);
+        } finally {
+            serverManager.shutdown();
+            server.stop();
+        }
+    }
+
+    @Test
+    public void operationsFailAfterShutdown() throws InterruptedException {
+        asyncManager.shutdown();
+        RedmineFuture<Void> future = asyncManager.deleteIssue(1);
+        assertTrue(future.isDone());
+        try {
+            assertNull(future.get());
+            fail("Must have failed");
+        } catch (ExecutionException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package org.redmine.ta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.http.Header;
+import org.apache.http.HttpRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.redmine.ta.beans.Issue;
+import org.redmine.ta.beans.IssueRelation;
+import org.redmine.ta.internal.VirtualThreads;
+
+public class RedmineManagerBuilderTest {
+
+    private FakeRedmineServer server;
+    private RedmineManager manager;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new FakeRedmineServer();
+        server.setProjectsNumber(3);
+        server.setIssuesNumber(250);
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        if (manager != null) {
+            manager.shutdown();
+        }
+        server.stop();
+    }
+
+    @Test
+    public void managerIsConfiguredByBuilder() throws RedmineException {
+        InMemoryRedmineMetrics metrics = new InMemoryRedmineMetrics();
+        HeaderRecorder recorder = new HeaderRecorder();
+        manager = new RedmineManager.Builder(server.getURI())
+                .apiAccessKey("key")
+                .objectsPerPage(100)
+                .metrics(metrics)
+                .requestInterceptor(recorder)
+                .build();
+        assertEquals(100, manager.getObjectsPerPage());
+        assertEquals(250, manager.getIssues(null, null).size());
+        assertEquals(3, server.getRequestsCount());
+        assertEquals(3, metrics.getEndpointMetrics("GET Issue").getRequestsCount());
+        assertEquals(3, recorder.authorizations.size());
+        assertEquals(null, recorder.authorizations.get(0));
+    }
+
+    @Test
+    public void basicCredentialsAreSent() throws RedmineException {
+        HeaderRecorder recorder = new HeaderRecorder();
+        manager = new RedmineManager.Builder(server.getURI())
+                .credentials("user", "secret")
+                .requestInterceptor(recorder)
+                .build();
+        manager.getIssueById(1);
+        assertTrue(recorder.authorizations.get(0).startsWith("Basic"));
+    }
+
+    @Test
+    public void apiKeyIsSentInHeader() throws RedmineException {
+        HeaderRecorder recorder = new HeaderRecorder();
+        manager = new RedmineManager.Builder(server.getURI())
+                .apiAccessKeyInHeader("secret-key")
+                .requestInterceptor(recorder)
+                .build();
+        manager.getIssueById(1);
+        assertEquals("secret-key", recorder.apiKeys.get(0));
+        assertEquals(null, recorder.authorizations.get(0));
+        assertEquals(false, recorder.uris.get(0).contains("secret-key"));
+    }
+
+    @Test
+    public void apiKeyIsSentAsParameter() throws RedmineException {
+        HeaderRecorder recorder = new HeaderRecorder();
+        manager = new RedmineManager.Builder(server.getURI())
+                .credentials("user", "secret")
+                .apiAccessKey("secret-key")
+                .requestInterceptor(recorder)
+                .build();
+        manager.getIssueById(1);
+        assertEquals(null, recorder.apiKeys.get(0));
+        assertEquals(null, recorder.authorizations.get(0));
+        assertTrue(recorder.uris.get(0).endsWith("key=secret-key"));
+    }
+
+    @Test
+    public void virtualThreadsAreUsedWhenAvailable() throws RedmineException {
+        server.setLatencyMillis(20);
+        manager = new RedmineManager.Builder(server.getURI())
+                .objectsPerPage(25)
+                .pageFetchParallelism(4)
+                .virtualThreads(true)
+                .build();
+        assertEquals(VirtualThreads.isSupported(), manager.isUsingVirtualThreads());
+        assertEquals(250, manager.getIssues(null, null).size());
+        assertTrue(server.getMaxActiveRequests() <= 4);
+    }
+
+    @Test
+    public void relationsAreDeletedInParallel() throws RedmineException {
+        server.setLatencyMillis(50);
+        manager = new RedmineManager.Builder(server.getURI())
+                .pageFetchParallelism(3)
+                .virtualThreads(true)
+                .build();
+        Issue issue = new Issue();
+        for (int id = 1; id <= 6; id++) {
+            IssueRelation relation = new IssueRelation();
+            relation.setId(id);
+            issue.getRelations().add(relation);
+        }
+        manager.deleteIssueRelations(issue);
+        assertEquals(new HashSet<Integer>(Arrays.asList(1, 2, 3, 4, 5, 6)), server.getDeletedRelations());
+        assertTrue(server.getMaxActiveRequests() > 1);
+        assertTrue(server.getMaxActiveRequests() <= 3);
+    }
+
+    @Test
+    public void sharedReferenceDataCacheSeparatesServersAndUsers() throws Exception {
+        FakeRedmineServer otherServer = new FakeRedmineServer();
+        otherServer.setProjectsNumber(5);
+        otherServer.start();
+        ReferenceDataCache cache = new ExpiringReferenceDataCache(10, 60000);
+        manager = new RedmineManager.Builder(server.getURI()).apiAccessKey("key1").referenceDataCache(cache).build();
+        RedmineManager otherUser = new RedmineManager.Builder(server.getURI())
+                .apiAccessKey("key2").referenceDataCache(cache).build();
+        RedmineManager otherServerManager = new RedmineManager.Builder(otherServer.getURI())
+                .apiAccessKey("key1").referenceDataCache(cache).build();
+        try {
+            assertEquals(3, manager.getProjects().size());
+            assertEquals(5, otherServerManager.getProjects().size());
+            assertEquals(3, otherUser.getProjects().size());
+            assertEquals(2, server.getRequestsCount());
+            assertEquals(3, manager.getProjects().size());
+            assertEquals(2, server.getRequestsCount());
+        } finally {
+            otherUser.shutdown();
+            otherServerManager.shutdown();
+            otherServer.stop();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void illegalPageSizeIsRejected() {
+        new RedmineManager.Builder(server.getURI()).objectsPerPage(0);
+    }
+
+    @Test
+    public void oneManagerIsSharedByManyThreads() throws Exception {
+        manager = new RedmineManager.Builder(server.getURI())
+                .apiAccessKey("key")
+                .objectsPerPage(50)
+                .pageFetchParallelism(3)
+                .maxConnectionsPerHost(8)
+                .responseCacheSize(100)
+                .referenceDataCache(new ExpiringReferenceDataCache(10, 60000))
+                .build();
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+            for (int i = 0; i < 40; i++) {
+                final int id = i + 1;
+                results.add(threads.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws RedmineException {
+                        List<Issue> issues = manager.getIssues(null, null);
+                        assertEquals(Integer.valueOf(id), manager.getIssueById(id).getId());
+                        assertEquals(3, manager.getProjects().size());
+                        return issues.size();
+                    }
+                }));
+            }
+            for (Future<Integer> result : results) {
+                assertEquals(Integer.valueOf(250), result.get());
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    private static class HeaderRecorder implements RequestInterceptor {
+        private final List<String> authorizations = Collections.synchronizedList(new ArrayList<String>());
+        private final List<String> apiKeys = Collections.synchronizedList(new ArrayList<String>());
+        private final List<String> uris = Collections.synchronizedList(new ArrayList<String>());
+
+        @Override
+        public void beforeSend(HttpRequest request, RequestContext context) {
+            authorizations.add(getHeader(request, "Authorization"));
+            apiKeys.add(getHeader(request, "X-Redmine-API-Key"));
+            uris.add(context.getUri().toString());
+        }
+
+        private static String getHeader(HttpRequest request, String name) {
+            Header header = request.getFirstHeader(name);
+            return header == null ? null : header.getValue();
+        }
+
+        @Override
+        public void afterResponse(RequestContext context, Object result) {
+        }
+
+        @Override
+        public void onError(RequestContext context, Exception error) {
+        }
+    }
+}
@@ -725,6 +725,82 @@ public class RedmineManagerTest {
         }
     }
 
+    @Test
+    public void parallelPagingLoadsSameIssuesInSameOrder() throws RedmineException {
+        createIssues(27);
+        List<Issue> issues = mgr.getIssues(projectKey, null);
+
+        RedmineManager parallelMgr = new RedmineManager(testConfig.getURI());
+        parallelMgr.setLogin(testConfig.getLogin());
+        parallelMgr.setPassword(testConfig.getPassword());
+        parallelMgr.setObjectsPerPage(5);
+        parallelMgr.setPageFetchParallelism(4);
+        try {
+            List<Issue> loadedInParallel = parallelMgr.getIssues(projectKey, null);
+            Assert.assertEquals(issues, loadedInParallel);
+        } finally {
+            parallelMgr.shutdown();
+        }
+    }
+
+    @Test
+    public void iteratorLoadsAllPages() throws RedmineException {
+        createIssues(27);
+        List<Issue> issues = mgr.getIssues(projectKey, null);
+
+        List<Issue> iterated = new ArrayList<Issue>();
+        for (Issue issue : mgr.iterateIssues(projectKey, null)) {
+            iterated.add(issue);
+        }
+        Assert.assertEquals(issues, iterated);
+    }
+
+    @Test
+    public void issuesAreLoadedByIdsInGivenOrder() throws RedmineException {
+        List<Issue> created = createIssues(30);
+        List<Integer> ids = new ArrayList<Integer>();
+        for (int i = created.size() - 1; i >= 0; i--) {
+            ids.add(created.get(i).getId());
+        }
+        ids.add(created.get(0).getId());
+
+        List<Issue> loaded = mgr.getIssuesByIds(ids);
+        Assert.assertEquals(created.size(), loaded.size());
+        for (int i = 0; i < loaded.size(); i++) {
+            Assert.assertEquals(ids.get(i), loaded.get(i).getId());
+        }
+    }
+
+    @Test
+    public void batchLoaderLoadsSeveralIssues() throws Exception {
+        List<Issue> created = createIssues(3);
+        IssueBatchLoader loader = new IssueBatchLoader(mgr, 50);
+        try {
+            List<RedmineFuture<Issue>> futures = new ArrayList<RedmineFuture<Issue>>();
+            for (Issue issue : created) {
+                futures.add(loader.load(issue.getId()));
+            }
+            for (int i = 0; i < created.size(); i++) {
+                Assert.assertEquals(created.get(i).getSubject(), futures.get(i).get().getSubject());
+            }
+        } finally {
+            loader.shutdown();
+        }
+    }
+
+    @Test
+    public void statusesAreLoadedFromCache() throws RedmineException {
+        ExpiringReferenceDataCache cache = new ExpiringReferenceDataCache(10, 60000);
+        mgr.setReferenceDataCache(cache);
+        try {
+            List<IssueStatus> statuses = mgr.getStatuses();
+            Assert.assertEquals(statuses, mgr.getStatuses());
+            Assert.assertEquals(1, cache.getStatistics().getHits());
+        } finally {
+            mgr.setReferenceDataCache(null);
+        }
+    }
+
     private List<Issue> createIssues(int issuesNumber) throws RedmineException {
         List<Issue> issues = new ArrayList<Issue>(issuesNumber);
         for (int i = 0; i < issuesNumber; i++) {
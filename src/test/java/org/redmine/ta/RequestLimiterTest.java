@@ -0,0 +1,154 @@
+package org.redmine.ta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class RequestLimiterTest {
+
+    private static final URI SERVER = URI.create("http://redmine.org/issues.xml");
+    private static final URI OTHER_SERVER = URI.create("http://redmine.org:8080/issues.xml");
+
+    @Test
+    public void rateIsLimited() throws InterruptedException {
+        RequestLimiter limiter = new RequestLimiter(50, 1, 0);
+        long start = System.nanoTime();
+        long waited = 0;
+        for (int i = 0; i < 11; i++) {
+            waited += limiter.acquire(SERVER);
+            limiter.release(SERVER);
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("Elapsed " + elapsedMillis, elapsedMillis >= 190);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(waited) >= 190);
+    }
+
+    @Test
+    public void burstIsNotDelayed() throws InterruptedException {
+        RequestLimiter limiter = new RequestLimiter(1, 5, 0);
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire(SERVER);
+            limiter.release(SERVER);
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 500);
+    }
+
+    @Test
+    public void concurrentRequestsAreLimited() throws InterruptedException {
+        final RequestLimiter limiter = new RequestLimiter(0, 1, 2);
+        limiter.acquire(SERVER);
+        limiter.acquire(SERVER);
+        assertEquals(2, limiter.getInFlightRequests(SERVER));
+        final CountDownLatch acquired = new CountDownLatch(1);
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    limiter.acquire(SERVER);
+                    acquired.countDown();
+                } catch (InterruptedException e) {
+                    // test fails
+                }
+            }
+        };
+        thread.start();
+        assertEquals(false, acquired.await(100, TimeUnit.MILLISECONDS));
+        limiter.release(SERVER);
+        assertEquals(true, acquired.await(1, TimeUnit.SECONDS));
+        assertEquals(2, limiter.getInFlightRequests(SERVER));
+    }
+
+    @Test
+    public void serversAreLimitedSeparately() throws InterruptedException {
+        RequestLimiter limiter = new RequestLimiter(0, 1, 1);
+        limiter.acquire(SERVER);
+        limiter.acquire(OTHER_SERVER);
+        assertEquals(1, limiter.getInFlightRequests(SERVER));
+        assertEquals(1, limiter.getInFlightRequests(OTHER_SERVER));
+    }
+
+    @Test
+    public void waitForConcurrentRequestIsLimited() throws InterruptedException {
+        RequestLimiter limiter = new RequestLimiter(0, 1, 1);
+        limiter.acquire(SERVER);
+        long start = System.nanoTime();
+        assertEquals(-1, limiter.tryAcquire(SERVER, 100, TimeUnit.MILLISECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 90);
+        assertEquals(1, limiter.getInFlightRequests(SERVER));
+    }
+
+    @Test
+    public void tokenIsNotTakenWhenItComesTooLate() throws InterruptedException {
+        RequestLimiter limiter = new RequestLimiter(2, 1, 1);
+        limiter.acquire(SERVER);
+        limiter.release(SERVER);
+        long start = System.nanoTime();
+        assertEquals(-1, limiter.tryAcquire(SERVER, 100, TimeUnit.MILLISECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 100);
+        assertEquals(0, limiter.getInFlightRequests(SERVER));
+        // the refused request has not delayed the next one
+        assertTrue(limiter.tryAcquire(SERVER, 600, TimeUnit.MILLISECONDS) >= 0);
+    }
+
+    @Test
+    public void waitForLimiterIsLimitedByCallTimeout() throws IOException, RedmineException {
+        FakeRedmineServer server = new FakeRedmineServer();
+        server.setIssuesNumber(10);
+        server.start();
+        RedmineManager manager = new RedmineManager(server.getURI(), "key");
+        try {
+            manager.setRequestLimiter(new RequestLimiter(1, 1, 1));
+            manager.setCallTimeout(300);
+            manager.getIssueById(1);
+            long start = System.currentTimeMillis();
+            try {
+                manager.getIssueById(2);
+                fail("Must have failed");
+            } catch (RedmineTimeoutException e) {
+                // expected
+            }
+            assertTrue(System.currentTimeMillis() - start < 900);
+            assertEquals(1, server.getRequestsCount());
+        } finally {
+            manager.shutdown();
+            server.stop();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void burstMustBePositive() {
+        new RequestLimiter(10, 0, 0);
+    }
+
+    @Test
+    public void waitTimeIsReportedToMetrics() throws IOException, RedmineException {
+        FakeRedmineServer server = new FakeRedmineServer();
+        server.setIssuesNumber(10);
+        server.start();
+        RedmineManager manager = new RedmineManager(server.getURI(), "key");
+        try {
+            // cold requests are slow enough to refill the bucket
+            manager.getIssueById(1);
+            InMemoryRedmineMetrics metrics = new InMemoryRedmineMetrics();
+            manager.setMetrics(metrics);
+            manager.setRequestLimiter(new RequestLimiter(10, 1, 1));
+            for (int i = 1; i <= 5; i++) {
+                manager.getIssueById(i);
+            }
+            EndpointMetrics issues = metrics.getEndpointMetrics("GET Issue");
+            assertEquals(5, issues.getQueueTime().getCount());
+            assertTrue(issues.getQueueTime().getTotalNanos() >= TimeUnit.MILLISECONDS.toNanos(150));
+        } finally {
+            manager.shutdown();
+            server.stop();
+        }
+    }
+}
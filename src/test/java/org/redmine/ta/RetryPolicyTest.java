@@ -0,0 +1,79 @@
+package org.redmine.ta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class RetryPolicyTest {
+
+    @Test
+    public void backoffIsDoubledUpToMax() {
+        RetryPolicy policy = new RetryPolicy(10, 100, 1000).withJitter(0);
+        assertEquals(100, policy.getDelayMillis(1, -1));
+        assertEquals(200, policy.getDelayMillis(2, -1));
+        assertEquals(400, policy.getDelayMillis(3, -1));
+        assertEquals(800, policy.getDelayMillis(4, -1));
+        assertEquals(1000, policy.getDelayMillis(5, -1));
+        assertEquals(1000, policy.getDelayMillis(9, -1));
+    }
+
+    @Test
+    public void noDelayWhenAttemptsAreExhausted() {
+        RetryPolicy policy = new RetryPolicy(3, 100, 1000);
+        assertEquals(-1, policy.getDelayMillis(3, -1));
+        assertEquals(-1, RetryPolicy.NONE.getDelayMillis(1, -1));
+    }
+
+    @Test
+    public void jitterReducesDelay() {
+        RetryPolicy policy = new RetryPolicy(3, 1000, 1000).withJitter(0.25);
+        for (int i = 0; i < 100; i++) {
+            long delay = policy.getDelayMillis(1, -1);
+            assertTrue("Delay " + delay, delay >= 750 && delay <= 1000);
+        }
+    }
+
+    @Test
+    public void longerRetryAfterIsHonored() {
+        RetryPolicy policy = new RetryPolicy(3, 100, 1000).withJitter(0);
+        assertEquals(5000, policy.getDelayMillis(1, 5000));
+        assertEquals(100, policy.getDelayMillis(1, 10));
+    }
+
+    @Test
+    public void tooLongRetryAfterStopsRetries() {
+        RetryPolicy policy = new RetryPolicy(3, 100, 1000).withMaxRetryAfter(2000);
+        assertEquals(-1, policy.getDelayMillis(1, 5000));
+    }
+
+    @Test
+    public void retryAfterIsIgnoredWhenDisabled() {
+        RetryPolicy policy = new RetryPolicy(3, 100, 1000).withJitter(0).withMaxRetryAfter(0);
+        assertEquals(100, policy.getDelayMillis(1, 5000));
+    }
+
+    @Test
+    public void retryableStatusCodesCanBeChanged() {
+        RetryPolicy policy = new RetryPolicy(3, 100, 1000);
+        assertTrue(policy.isRetryableStatus(503));
+        assertFalse(policy.isRetryableStatus(500));
+        policy = policy.withRetryableStatusCodes(500, 503);
+        assertTrue(policy.isRetryableStatus(500));
+        assertFalse(policy.isRetryableStatus(502));
+    }
+
+    @Test
+    public void onlyIdempotentMethodsAreRetried() {
+        assertTrue(RetryPolicy.isIdempotent("GET"));
+        assertTrue(RetryPolicy.isIdempotent("PUT"));
+        assertTrue(RetryPolicy.isIdempotent("DELETE"));
+        assertFalse(RetryPolicy.isIdempotent("POST"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void attemptsNumberMustBePositive() {
+        new RetryPolicy(0, 100, 1000);
+    }
+}
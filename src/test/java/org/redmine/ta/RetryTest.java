@@ -0,0 +1,120 @@
+package org.redmine.ta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.redmine.ta.beans.Issue;
+
+/**
+ * Checks {@link RetryPolicy} handling with errors injected by {@link FakeRedmineServer}.
+ */
+public class RetryTest {
+
+    private FakeRedmineServer server;
+    private RedmineManager manager;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new FakeRedmineServer();
+        server.setProjectsNumber(2);
+        server.setIssuesNumber(250);
+        server.start();
+        manager = new RedmineManager(server.getURI(), "key");
+        manager.setRetryPolicy(new RetryPolicy(3, 10, 100));
+    }
+
+    @After
+    public void tearDown() {
+        manager.shutdown();
+        server.stop();
+    }
+
+    @Test
+    public void unavailableServerIsRetried() throws RedmineException {
+        server.failNextRequests(2, 503);
+        assertEquals(Integer.valueOf(7), manager.getIssueById(7).getId());
+        assertEquals(3, server.getRequestsCount());
+        assertEquals(2, server.getFailedRequestsCount());
+    }
+
+    @Test
+    public void lastErrorIsThrownWhenAttemptsAreExhausted() throws RedmineException {
+        server.failNextRequests(3, 502);
+        try {
+            manager.getIssueById(7);
+            fail("Must have failed");
+        } catch (RedmineUnavailableException e) {
+            assertEquals(502, e.getStatusCode());
+        }
+        assertEquals(3, server.getRequestsCount());
+    }
+
+    @Test
+    public void onlyFailedPageIsLoadedAgain() throws RedmineException {
+        manager.setObjectsPerPage(100);
+        server.failRequests(2, 1, FakeRedmineServer.DROP_CONNECTION);
+        List<Issue> issues = manager.getIssues(null, null);
+        assertEquals(250, issues.size());
+        assertEquals(Integer.valueOf(250), issues.get(249).getId());
+        assertEquals(4, server.getRequestsCount());
+        assertEquals(1, server.getFailedRequestsCount());
+    }
+
+    @Test
+    public void droppedConnectionFailsWithoutRetryPolicy() throws RedmineException {
+        manager.setRetryPolicy(null);
+        server.failNextRequests(1, FakeRedmineServer.DROP_CONNECTION);
+        try {
+            manager.getIssues(null, null);
+            fail("Must have failed");
+        } catch (RedmineTransportException e) {
+            // expected
+        }
+        assertEquals(1, server.getRequestsCount());
+    }
+
+    @Test
+    public void postIsNotRetried() throws RedmineException {
+        server.failNextRequests(1, 503);
+        Issue issue = new Issue();
+        issue.setSubject("not retried");
+        try {
+            manager.createIssue(server.getProjectKey(1), issue);
+            fail("Must have failed");
+        } catch (RedmineUnavailableException e) {
+            assertEquals(503, e.getStatusCode());
+        }
+        assertEquals(1, server.getRequestsCount());
+    }
+
+    @Test
+    public void retryAfterIsHonored() throws RedmineException {
+        server.setRetryAfterSeconds(1);
+        server.failNextRequests(1, 503);
+        long start = System.currentTimeMillis();
+        manager.getIssueById(7);
+        assertTrue(System.currentTimeMillis() - start >= 1000);
+        assertEquals(2, server.getRequestsCount());
+    }
+
+    @Test
+    public void tooLongRetryAfterIsNotWaited() throws RedmineException {
+        manager.setRetryPolicy(new RetryPolicy(3, 10, 100).withMaxRetryAfter(500));
+        server.setRetryAfterSeconds(1);
+        server.failNextRequests(1, 503);
+        try {
+            manager.getIssueById(7);
+            fail("Must have failed");
+        } catch (RedmineUnavailableException e) {
+            assertEquals(1000, e.getRetryAfterMillis());
+        }
+        assertEquals(1, server.getRequestsCount());
+    }
+}
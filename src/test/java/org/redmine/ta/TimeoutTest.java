@@ -0,0 +1,120 @@
+package org.redmine.ta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks request timeouts and call deadlines against a slow {@link FakeRedmineServer}.
+ */
+public class TimeoutTest {
+
+    private FakeRedmineServer server;
+    private RedmineManager manager;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new FakeRedmineServer();
+        server.setProjectsNumber(2);
+        server.setIssuesNumber(250);
+        server.start();
+        manager = new RedmineManager(server.getURI(), "key");
+    }
+
+    @After
+    public void tearDown() {
+        manager.shutdown();
+        server.stop();
+    }
+
+    @Test
+    public void hungRequestIsStoppedByReadTimeout() throws RedmineException {
+        server.setLatencyMillis(1000);
+        manager.setReadTimeout(100);
+        long start = System.currentTimeMillis();
+        try {
+            manager.getIssueById(1);
+            fail("Must have failed");
+        } catch (RedmineTimeoutException e) {
+            // expected
+        }
+        assertTrue(System.currentTimeMillis() - start < 900);
+    }
+
+    @Test
+    public void callTimeoutLimitsAllPages() throws RedmineException {
+        server.setLatencyMillis(100);
+        manager.setObjectsPerPage(25);
+        manager.setCallTimeout(350);
+        long start = System.currentTimeMillis();
+        try {
+            manager.getIssues(null, null);
+            fail("Must have failed");
+        } catch (RedmineTimeoutException e) {
+            // expected
+        }
+        assertTrue(System.currentTimeMillis() - start < 800);
+        assertTrue(server.getRequestsCount() < 10);
+    }
+
+    @Test
+    public void callTimeoutLimitsPagesLoadedInParallel() throws RedmineException {
+        server.setLatencyMillis(200);
+        manager.setObjectsPerPage(10);
+        manager.setPageFetchParallelism(2);
+        manager.setCallTimeout(500);
+        long start = System.currentTimeMillis();
+        try {
+            manager.getIssues(null, null);
+            fail("Must have failed");
+        } catch (RedmineTimeoutException e) {
+            // expected
+        }
+        assertTrue(System.currentTimeMillis() - start < 1000);
+    }
+
+    @Test
+    public void callTimeoutLimitsRetries() throws RedmineException {
+        manager.setRetryPolicy(new RetryPolicy(10, 100, 100).withJitter(0));
+        manager.setCallTimeout(350);
+        server.failNextRequests(100, 503);
+        long start = System.currentTimeMillis();
+        try {
+            manager.getIssueById(1);
+            fail("Must have failed");
+        } catch (RedmineUnavailableException e) {
+            // the last error is thrown when there's no time for the next attempt
+        }
+        assertTrue(System.currentTimeMillis() - start < 800);
+        assertTrue(server.getRequestsCount() <= 4);
+    }
+
+    @Test
+    public void fastCallsAreNotAffectedByCallTimeout() throws RedmineException {
+        manager.setCallTimeout(5000);
+        manager.setObjectsPerPage(100);
+        assertEquals(250, manager.getIssues(null, null).size());
+        assertEquals(Integer.valueOf(1), manager.getIssueById(1).getId());
+    }
+
+    @Test
+    public void waitForPooledConnectionIsLimited() throws RedmineException {
+        server.setLatencyMillis(300);
+        manager.setMaxConnectionsPerHost(1);
+        manager.setConnectionPoolTimeout(50);
+        manager.setObjectsPerPage(50);
+        manager.setPageFetchParallelism(2);
+        try {
+            manager.getIssues(null, null);
+            fail("Must have failed");
+        } catch (RedmineTimeoutException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,425 @@
+package org.redmine.ta.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.http.HttpRequest;
+import org.apache.http.client.methods.HttpGet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.redmine.ta.EndpointMetrics;
+import org.redmine.ta.InMemoryRedmineMetrics;
+import org.redmine.ta.NotFoundException;
+import org.redmine.ta.RedmineAuthenticationException;
+import org.redmine.ta.RedmineException;
+import org.redmine.ta.RequestContext;
+import org.redmine.ta.RequestInterceptor;
+import org.redmine.ta.RetryPolicy;
+import org.redmine.ta.beans.Issue;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class CommunicatorTest {
+
+    private static final String ETAG = "\"abc\"";
+    private static final int PROJECTS_CONTENT_LENGTH = 10000;
+
+    private HttpServer server;
+    private Communicator communicator;
+    private URI uri;
+    private final AtomicInteger notModifiedResponses = new AtomicInteger();
+    private final AtomicInteger parsedResponses = new AtomicInteger();
+    private final AtomicInteger unavailableResponses = new AtomicInteger();
+    private final byte[] attachment = new byte[300000];
+    private volatile Object lastResult;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/issues.xml", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    notModifiedResponses.incrementAndGet();
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+                byte[] body = "<issues/>".getBytes("UTF-8");
+                exchange.getResponseHeaders().add("ETag", ETAG);
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.createContext("/issues/1.xml", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    notModifiedResponses.incrementAndGet();
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+                byte[] body = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                        + "<issue><id>1</id><subject>Server subject</subject></issue>").getBytes("UTF-8");
+                exchange.getResponseHeaders().add("ETag", ETAG);
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.createContext("/attachments/download/1/file.bin", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.sendResponseHeaders(200, attachment.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(attachment);
+                out.close();
+            }
+        });
+        server.createContext("/projects.xml", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+                gzip.write(new byte[PROJECTS_CONTENT_LENGTH]);
+                gzip.close();
+                exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+                exchange.sendResponseHeaders(200, compressed.size());
+                OutputStream out = exchange.getResponseBody();
+                compressed.writeTo(out);
+                out.close();
+            }
+        });
+        server.createContext("/trackers.xml", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String tag = exchange.getRequestHeaders().getFirst("X-Request-Tag");
+                byte[] body = String.valueOf(tag).getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.createContext("/unavailable-once", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                if (unavailableResponses.getAndIncrement() == 0) {
+                    exchange.sendResponseHeaders(503, -1);
+                    exchange.close();
+                    return;
+                }
+                List<String> tags = exchange.getRequestHeaders().get("X-Request-Tag");
+                byte[] body = String.valueOf(tags).getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.createContext("/key.txt", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String key = exchange.getRequestHeaders().getFirst(Communicator.API_KEY_HEADER);
+                byte[] body = String.valueOf(key).getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.createContext("/redirect", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.getResponseHeaders().add("Location",
+                        "http://127.0.0.1:" + server.getAddress().getPort() + "/key.txt");
+                exchange.sendResponseHeaders(302, -1);
+                exchange.close();
+            }
+        });
+        server.start();
+        uri = URI.create("http://localhost:" + server.getAddress().getPort() + "/issues.xml");
+        communicator = new Communicator();
+        new Random(1).nextBytes(attachment);
+    }
+
+    @After
+    public void tearDown() {
+        communicator.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    public void cachedResultIsReturnedWhenNotModified() throws Exception {
+        communicator.setResponseCache(new ResponseCache(10));
+        Object first = communicator.sendGet(uri, new CountingParser());
+        Object second = communicator.sendGet(uri, new CountingParser());
+
+        // the cached content is parsed again, so callers don't share objects
+        assertNotSame(first, second);
+        assertEquals(2, parsedResponses.get());
+        assertEquals(1, notModifiedResponses.get());
+    }
+
+    @Test
+    public void changesOfReturnedObjectDontAffectCachedResult() throws Exception {
+        communicator.setResponseCache(new ResponseCache(10));
+        URI issueUri = URI.create("http://localhost:" + server.getAddress().getPort() + "/issues/1.xml");
+        Issue first = communicator.sendGet(issueUri, RedmineXMLParser.getObjectParser(Issue.class));
+        assertEquals("Server subject", first.getSubject());
+        first.setSubject("Local change");
+
+        Issue second = communicator.sendGet(issueUri, RedmineXMLParser.getObjectParser(Issue.class));
+        assertEquals(1, notModifiedResponses.get());
+        assertEquals("Server subject", second.getSubject());
+    }
+
+    @Test
+    public void conditionalHeadersAreNotSentWithoutCache() throws Exception {
+        communicator.sendGet(uri, new CountingParser());
+        communicator.sendGet(uri, new CountingParser());
+
+        assertEquals(2, parsedResponses.get());
+        assertEquals(0, notModifiedResponses.get());
+    }
+
+    @Test
+    public void contentIsCopiedToStream() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long size = communicator.download(new HttpGet(getAttachmentURI()), out);
+        assertEquals(attachment.length, size);
+        assertArrayEquals(attachment, out.toByteArray());
+    }
+
+    @Test
+    public void contentIsTransferredToFileChannel() throws Exception {
+        File file = File.createTempFile("attachment", ".bin");
+        try {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                long size = communicator.download(new HttpGet(getAttachmentURI()), raf.getChannel());
+                assertEquals(attachment.length, size);
+                assertEquals(attachment.length, raf.getChannel().position());
+            } finally {
+                raf.close();
+            }
+            assertArrayEquals(attachment, readFile(file));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void requestStatisticsAreReported() throws Exception {
+        InMemoryRedmineMetrics metrics = new InMemoryRedmineMetrics();
+        communicator.setMetrics(metrics);
+        communicator.sendGet(uri, new CountingParser());
+        communicator.sendGet(uri);
+
+        EndpointMetrics issues = metrics.getEndpointMetrics("GET Issue");
+        assertEquals(2, issues.getRequestsCount());
+        assertEquals(0, issues.getErrorsCount());
+        assertEquals(18, issues.getContentBytes());
+        assertEquals(18, issues.getWireBytes());
+        assertEquals(2, issues.getTotalTime().getCount());
+        assertTrue(issues.getTotalTime().getTotalNanos() >= issues.getWaitTime().getTotalNanos()
+                + issues.getTransferTime().getTotalNanos() + issues.getParseTime().getTotalNanos());
+    }
+
+    @Test
+    public void compressedAndDecompressedSizesAreReported() throws Exception {
+        InMemoryRedmineMetrics metrics = new InMemoryRedmineMetrics();
+        communicator.setMetrics(metrics);
+        communicator.sendGet(uri.resolve("/projects.xml"), new CountingParser());
+
+        EndpointMetrics projects = metrics.getEndpointMetrics("GET Project");
+        assertEquals(PROJECTS_CONTENT_LENGTH, projects.getContentBytes());
+        assertTrue(projects.getWireBytes() > 0);
+        assertTrue(projects.getWireBytes() < PROJECTS_CONTENT_LENGTH);
+    }
+
+    @Test
+    public void errorsAreCountedByStatus() throws Exception {
+        InMemoryRedmineMetrics metrics = new InMemoryRedmineMetrics();
+        communicator.setMetrics(metrics);
+        try {
+            communicator.sendGet(uri.resolve("/users/5.xml"), new CountingParser());
+            fail("Must have failed");
+        } catch (NotFoundException e) {
+            // expected
+        }
+        EndpointMetrics users = metrics.getEndpointMetrics("GET User");
+        assertEquals(1, users.getErrorsCount());
+        assertEquals(Long.valueOf(1), users.getErrorsByStatus().get(404));
+    }
+
+    @Test
+    public void interceptorCanChangeRequest() throws Exception {
+        communicator.addInterceptor(new RecordingInterceptor("tagger") {
+            @Override
+            public void beforeSend(HttpRequest request, RequestContext context) throws RedmineException {
+                super.beforeSend(request, context);
+                request.addHeader("X-Request-Tag", "call-site-1");
+            }
+        });
+        assertEquals("call-site-1", communicator.sendGet(uri.resolve("/trackers.xml")));
+    }
+
+    @Test
+    public void headersAddedByInterceptorAreSentOnceOnRetry() throws Exception {
+        communicator.setRetryPolicy(new RetryPolicy(2, 10, 100));
+        communicator.addInterceptor(new RecordingInterceptor("tagger") {
+            @Override
+            public void beforeSend(HttpRequest request, RequestContext context) throws RedmineException {
+                super.beforeSend(request, context);
+                request.addHeader("X-Request-Tag", "call-site-1");
+            }
+        });
+        assertEquals("[call-site-1]", communicator.sendGet(uri.resolve("/unavailable-once")));
+        assertEquals(2, unavailableResponses.get());
+    }
+
+    @Test
+    public void credentialsAreSentOnlyToAuthenticatedServer() throws Exception {
+        communicator.setApiKeyHeader("secret");
+        communicator.setAuthenticatedServer(uri.resolve("/"));
+        assertEquals("secret", communicator.sendGet(uri.resolve("/key.txt")));
+        URI otherHost = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/key.txt");
+        assertEquals("null", communicator.sendGet(otherHost));
+        // redirects keep the headers of the original request
+        assertEquals("null", communicator.sendGet(uri.resolve("/redirect")));
+    }
+
+    @Test
+    public void interceptorsAreCalledAroundRequest() throws Exception {
+        List<String> calls = new ArrayList<String>();
+        communicator.addInterceptor(new RecordingInterceptor("first", calls));
+        communicator.addInterceptor(new RecordingInterceptor("second", calls));
+        Object result = communicator.sendGet(uri, new CountingParser());
+
+        assertEquals(Arrays.asList("first.beforeSend GET Issue", "second.beforeSend GET Issue",
+                "second.afterResponse 200 Issue", "first.afterResponse 200 Issue"), calls);
+        assertSame(result, lastResult);
+    }
+
+    @Test
+    public void interceptorsAreNotifiedOfErrors() throws Exception {
+        List<String> calls = new ArrayList<String>();
+        communicator.addInterceptor(new RecordingInterceptor("first", calls));
+        try {
+            communicator.sendGet(uri.resolve("/users/5.xml"), new CountingParser());
+            fail("Must have failed");
+        } catch (NotFoundException e) {
+            // expected
+        }
+        assertEquals(Arrays.asList("first.beforeSend GET User", "first.onError 404 NotFoundException"), calls);
+    }
+
+    @Test
+    public void interceptorCanCancelRequest() throws Exception {
+        final List<String> calls = new ArrayList<String>();
+        communicator.addInterceptor(new RecordingInterceptor("first", calls));
+        communicator.addInterceptor(new RecordingInterceptor("auth", calls) {
+            @Override
+            public void beforeSend(HttpRequest request, RequestContext context) throws RedmineException {
+                throw new RedmineAuthenticationException("no token");
+            }
+        });
+        try {
+            communicator.sendGet(uri, new CountingParser());
+            fail("Must have failed");
+        } catch (RedmineAuthenticationException e) {
+            // expected
+        }
+        assertEquals(0, parsedResponses.get());
+        assertEquals(Arrays.asList("first.beforeSend GET Issue", "auth.onError 0 RedmineAuthenticationException",
+                "first.onError 0 RedmineAuthenticationException"), calls);
+    }
+
+    private URI getAttachmentURI() {
+        return uri.resolve("/attachments/download/1/file.bin");
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        byte[] content = new byte[(int) file.length()];
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            in.readFully(content);
+        } finally {
+            in.close();
+        }
+        return content;
+    }
+
+    private class RecordingInterceptor implements RequestInterceptor {
+        private final String name;
+        private final List<String> calls;
+
+        RecordingInterceptor(String name) {
+            this(name, new ArrayList<String>());
+        }
+
+        RecordingInterceptor(String name, List<String> calls) {
+            this.name = name;
+            this.calls = calls;
+        }
+
+        @Override
+        public void beforeSend(HttpRequest request, RequestContext context) throws RedmineException {
+            context.setAttribute(name, Boolean.TRUE);
+            calls.add(name + ".beforeSend " + context.getEndpoint());
+        }
+
+        @Override
+        public void afterResponse(RequestContext context, Object result) {
+            assertEquals(Boolean.TRUE, context.getAttribute(name));
+            lastResult = result;
+            calls.add(name + ".afterResponse " + context.getStatusCode() + " "
+                    + context.getObjectType().getSimpleName());
+        }
+
+        @Override
+        public void onError(RequestContext context, Exception error) {
+            calls.add(name + ".onError " + context.getStatusCode() + " " + error.getClass().getSimpleName());
+        }
+    }
+
+    private class CountingParser implements ContentParser<Object> {
+        @Override
+        public Object parse(InputStream content) throws IOException {
+            parsedResponses.incrementAndGet();
+            while (content.read() != -1) {
+                // read the whole response
+            }
+            return new Object();
+        }
+    }
+}
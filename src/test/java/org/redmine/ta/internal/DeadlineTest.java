@@ -0,0 +1,49 @@
+package org.redmine.ta.internal;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class DeadlineTest {
+
+    @Test
+    public void earlierDeadlineIsKept() {
+        Deadline outer = Deadline.after(1000);
+        Deadline previous = Deadline.enter(outer);
+        assertNull(previous);
+        try {
+            Deadline inner = Deadline.enter(60000);
+            assertSame(outer, Deadline.current());
+            Deadline.exit(inner);
+
+            Deadline shorter = Deadline.after(10);
+            inner = Deadline.enter(shorter);
+            assertSame(shorter, Deadline.current());
+            Deadline.exit(inner);
+            assertSame(outer, Deadline.current());
+        } finally {
+            Deadline.exit(previous);
+        }
+        assertNull(Deadline.current());
+    }
+
+    @Test
+    public void zeroTimeoutMeansNoDeadline() {
+        Deadline previous = Deadline.enter(0);
+        try {
+            assertNull(Deadline.current());
+        } finally {
+            Deadline.exit(previous);
+        }
+    }
+
+    @Test
+    public void remainingTimeDecreases() throws InterruptedException {
+        Deadline deadline = Deadline.after(50);
+        assertTrue(deadline.getRemainingMillis() <= 50);
+        Thread.sleep(60);
+        assertTrue(deadline.getRemainingMillis() <= 0);
+    }
+}
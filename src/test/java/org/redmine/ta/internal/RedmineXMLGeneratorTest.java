@@ -1,8 +1,10 @@
 package org.redmine.ta.internal;
 
 import org.junit.Test;
+import org.redmine.ta.beans.Attachment;
 import org.redmine.ta.beans.Issue;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class RedmineXMLGeneratorTest {
@@ -16,4 +18,25 @@ public class RedmineXMLGeneratorTest {
         String generatedXML = RedmineXMLGenerator.toXML("some_project_key", issue);
         assertTrue(generatedXML.contains("<priority_id>1</priority_id>"));
     }
+
+    @Test
+    public void uploadedAttachmentsAreAddedByToken() {
+        Issue issue = new Issue();
+        Attachment uploaded = new Attachment();
+        uploaded.setToken("7167.ed1c");
+        uploaded.setFileName("build.log");
+        uploaded.setContentType("text/plain");
+        issue.getAttachments().add(uploaded);
+        issue.getAttachments().add(new Attachment());
+        String generatedXML = RedmineXMLGenerator.toXML("some_project_key", issue);
+        assertTrue(generatedXML.contains("<uploads type=\"array\"><upload><token>7167.ed1c</token>"
+                + "<filename>build.log</filename><content_type>text/plain</content_type></upload></uploads>"));
+    }
+
+    @Test
+    public void uploadsAreNotAddedWithoutTokens() {
+        Issue issue = new Issue();
+        issue.getAttachments().add(new Attachment());
+        assertFalse(RedmineXMLGenerator.toXML("some_project_key", issue).contains("uploads"));
+    }
 }
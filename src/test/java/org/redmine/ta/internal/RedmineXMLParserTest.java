@@ -7,7 +7,9 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.List;
 
 import org.junit.Assert;
@@ -236,6 +238,34 @@ public class RedmineXMLParserTest {
         DateComparator.testShortDate(2011, Calendar.JANUARY, 30, obj2.getSpentOn());
     }
 
+    @Test
+    public void castorParsesConcurrentlyInShortLivedThreads() throws Exception {
+        final String xml = MyIOUtils.getResourceAsString("redmine_1_1_time_entries.xml");
+        final int expectedSize = RedmineXMLParser.parseTimeEntries(xml).size();
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 20; i++) {
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 5; j++) {
+                            assertEquals(expectedSize, RedmineXMLParser.parseTimeEntries(xml).size());
+                        }
+                    } catch (Throwable e) {
+                        errors.add(e);
+                    }
+                }
+            };
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(Collections.<Throwable>emptyList(), errors);
+    }
+
     @Test
     public void testMultilineIssueDescription() throws IOException {
         final String xml = MyIOUtils
@@ -300,6 +330,65 @@ public class RedmineXMLParserTest {
 
     }
 
+    @Test
+    public void cachedUnmarshallersCanBeUsedFromSeveralThreads() throws Exception {
+        final String str = MyIOUtils.getResourceAsString(REDMINE_1_3_0_ISSUE_STATUSES_XML);
+        final List<IssueStatus> expected = RedmineXMLParser.parseObjectsFromXML(IssueStatus.class, str);
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 20; j++) {
+                            assertEquals(expected, RedmineXMLParser.parseObjectsFromXML(IssueStatus.class, str));
+                        }
+                    } catch (Throwable e) {
+                        errors.add(e);
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue("Errors: " + errors, errors.isEmpty());
+    }
+
+    @Test
+    public void issuesPageIsParsedFromStream() throws Exception {
+        String str = MyIOUtils.getResourceAsString("redmine_1_1_issues.xml");
+        List<Issue> expected = RedmineXMLParser.parseObjectsFromXML(Issue.class, str);
+        ObjectsPage<Issue> page = RedmineXMLParser.parseObjectsPage(Issue.class,
+                MyIOUtils.getResourceAsStream("redmine_1_1_issues.xml"));
+        assertEquals(36, page.getTotalCount());
+        assertEquals(expected, page.getObjects());
+    }
+
+    @Test
+    public void statusesPageIsParsedFromStreamWithCastor() throws Exception {
+        String str = MyIOUtils.getResourceAsString(REDMINE_1_3_0_ISSUE_STATUSES_XML);
+        List<IssueStatus> expected = RedmineXMLParser.parseObjectsFromXML(IssueStatus.class, str);
+        ObjectsPage<IssueStatus> page = RedmineXMLParser.parseObjectsPage(IssueStatus.class,
+                MyIOUtils.getResourceAsStream(REDMINE_1_3_0_ISSUE_STATUSES_XML));
+        assertEquals(expected, page.getObjects());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void invalidPageStreamIsRejected() throws IOException {
+        RedmineXMLParser.parseObjectsPage(Issue.class, MyIOUtils.getResourceAsStream("invalid_page.txt"));
+    }
+
+    @Test
+    public void uploadTokenIsParsed() {
+        String response = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<upload>\n  <token>7167.ed1ccdb093229ca1bd0b043618d88743</token>\n</upload>";
+        assertEquals("7167.ed1ccdb093229ca1bd0b043618d88743", RedmineXMLParser.parseUploadToken(response));
+    }
+
     @Test
     public void doesNotFailWithNoNews() {
         // "news" xml with no items in the list should not break the loader.
@@ -0,0 +1,74 @@
+package org.redmine.ta.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import java.net.URI;
+import java.util.Arrays;
+
+import org.apache.http.NameValuePair;
+import org.apache.http.message.BasicNameValuePair;
+
+import org.junit.Test;
+
+public class URIConfiguratorTest {
+
+    @Test
+    public void apiKeyIsAddedToAbsoluteURI() {
+        URIConfigurator configurator = new URIConfigurator("http://redmine.org", "abc");
+        assertEquals("http://redmine.org/attachments/download/5/file%20name.txt?key=abc",
+                configurator.addAPIKey("http://redmine.org/attachments/download/5/file%20name.txt").toString());
+        assertEquals("http://redmine.org/a?b=c&key=abc", configurator.addAPIKey("http://redmine.org/a?b=c").toString());
+        assertEquals("http://Redmine.org:80/a?key=abc", configurator.addAPIKey("http://Redmine.org:80/a").toString());
+    }
+
+    @Test
+    public void originIsNormalized() {
+        assertEquals("http://redmine.org:80", URIConfigurator.getOrigin(URI.create("HTTP://Redmine.org/a")));
+        assertEquals("https://redmine.org:443", URIConfigurator.getOrigin(URI.create("https://redmine.org:443/a")));
+        assertEquals("http://redmine.org:8080", URIConfigurator.getOrigin(URI.create("http://redmine.org:8080")));
+    }
+
+    @Test
+    public void apiKeyIsNotAddedToOtherServers() {
+        URIConfigurator configurator = new URIConfigurator("http://redmine.org", "abc");
+        assertEquals("http://redmine.org:8080/a?b=c", configurator.addAPIKey("http://redmine.org:8080/a?b=c").toString());
+        assertEquals("https://redmine.org/a", configurator.addAPIKey("https://redmine.org/a").toString());
+        assertEquals("http://files.example.com/a", configurator.addAPIKey("http://files.example.com/a").toString());
+    }
+
+    @Test
+    public void apiKeyIsAddedToCreatedURI() {
+        URIConfigurator configurator = new URIConfigurator("http://redmine.org:8080/redmine", "a b");
+        assertEquals("http://redmine.org:8080/redmine/issues.xml?limit=25&project_id=p%261&key=a+b",
+                configurator.createURI("issues.xml", Arrays.<NameValuePair>asList(
+                        new BasicNameValuePair("limit", "25"), new BasicNameValuePair("project_id", "p&1"))).toString());
+        assertEquals("http://redmine.org:8080/redmine/issues/5.xml?key=a+b",
+                configurator.getUpdateURI(org.redmine.ta.beans.Issue.class, "5").toString());
+    }
+
+    @Test
+    public void createdURIHasNoKeyWithoutApiKey() {
+        URIConfigurator configurator = new URIConfigurator("https://redmine.org", null);
+        assertEquals("https://redmine.org/projects.xml?include=trackers",
+                configurator.createURI("projects.xml", new BasicNameValuePair("include", "trackers")).toString());
+        assertEquals("https://redmine.org/users/current.xml?", configurator.createURI("users/current.xml").toString());
+        assertEquals("https://redmine.org/?", configurator.createURI("").toString());
+    }
+
+    @Test
+    public void uriIsNotChangedWithoutApiKey() {
+        URIConfigurator configurator = new URIConfigurator("http://redmine.org", null);
+        assertEquals("http://redmine.org/a?b=c", configurator.addAPIKey("http://redmine.org/a?b=c").toString());
+    }
+
+    @Test
+    public void endpointsAreNamedByObjectType() {
+        assertEquals("GET Issue", URIConfigurator.getEndpointName("GET", URI.create("http://redmine.org/issues.xml?limit=25")));
+        assertEquals("PUT Issue", URIConfigurator.getEndpointName("PUT", URI.create("http://redmine.org/redmine/issues/12.xml")));
+        assertEquals("GET User", URIConfigurator.getEndpointName("GET", URI.create("http://redmine.org/users/current.xml")));
+        assertEquals("POST Version", URIConfigurator.getEndpointName("POST", URI.create("http://redmine.org/projects/3/versions.xml")));
+        assertEquals("GET Attachment", URIConfigurator.getEndpointName("GET", URI.create("http://redmine.org/attachments/download/5/a.txt")));
+        assertEquals("POST uploads", URIConfigurator.getEndpointName("POST", URI.create("http://redmine.org/uploads.xml")));
+        assertEquals("GET /", URIConfigurator.getEndpointName("GET", URI.create("http://redmine.org/")));
+    }
+}
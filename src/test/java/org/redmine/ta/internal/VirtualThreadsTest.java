@@ -0,0 +1,52 @@
+package org.redmine.ta.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import org.junit.Test;
+
+public class VirtualThreadsTest {
+
+    @Test
+    public void executorRunsTasksWhenSupported() throws Exception {
+        assumeTrue(VirtualThreads.isSupported());
+        ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor();
+        try {
+            String threadName = executor.submit(new Callable<String>() {
+                @Override
+                public String call() {
+                    return Thread.currentThread().toString();
+                }
+            }).get();
+            assertEquals(true, threadName.startsWith("VirtualThread"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void executorIsNotCreatedWhenNotSupported() {
+        assumeTrue(!VirtualThreads.isSupported());
+        try {
+            VirtualThreads.newThreadPerTaskExecutor();
+            fail("Must have failed");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void supportDependsOnJavaVersion() {
+        String version = System.getProperty("java.specification.version");
+        if (version.startsWith("1.")) {
+            assertFalse(VirtualThreads.isSupported());
+        } else if (Integer.parseInt(version) >= 21) {
+            assertEquals(true, VirtualThreads.isSupported());
+        }
+    }
+}
@@ -4,12 +4,19 @@ import org.junit.Test;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 
 /**
  * Test case for the {@link LoggerFactory}.
@@ -70,4 +77,28 @@ public class LoggerFactoryTest {
        assertEquals("Logger has wrong log level",logLevel,logger.getLogLevel());
     }
 
+    /**
+     * Tests that concurrent callers get the same logger instance.
+     */
+    @Test
+    public void testGetLoggerConcurrently() throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Logger>> loggers = new ArrayList<Future<Logger>>();
+            for (int i = 0; i < 100; i++) {
+                final String identifier = "Concurrent logger " + (i % 5);
+                loggers.add(threads.submit(new Callable<Logger>() {
+                    @Override
+                    public Logger call() {
+                        return LoggerFactory.getLogger(identifier);
+                    }
+                }));
+            }
+            for (int i = 0; i < loggers.size(); i++) {
+                assertSame(LoggerFactory.getLogger("Concurrent logger " + (i % 5)), loggers.get(i).get());
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+    }
 }